@@ -1,4 +1,6 @@
 import copy
+import struct
+import zipfile
 from collections import OrderedDict
 import pandas as pd
 import numpy as np
@@ -82,3 +84,58 @@ def transform_positions(data, transform_func):
     for datum in data:
         datum["curve_pos"] = transform_func(datum["curve_pos"])
     return data
+
+
+def load_npz(fname, mmap=True):
+    """Loads an .npz archive exported by Kappa.
+
+    Kappa stores the arrays uncompressed and aligned, so by default they are
+    memory-mapped from the file instead of being read and parsed.
+    """
+    arrays = {}
+    with zipfile.ZipFile(fname) as archive, open(fname, "rb") as f:
+        for info in archive.infolist():
+            name = info.filename[:-len(".npy")]
+            if not mmap or info.compress_type != zipfile.ZIP_STORED:
+                with archive.open(info) as member:
+                    arrays[name] = np.lib.format.read_array(member)
+                continue
+
+            # Skips the local zip header to the start of the .npy file
+            f.seek(info.header_offset)
+            header = f.read(30)
+            name_length, extra_length = struct.unpack("<HH", header[26:30])
+            f.seek(info.header_offset + 30 + name_length + extra_length)
+            version = np.lib.format.read_magic(f)
+            if version == (1, 0):
+                shape, fortran_order, dtype = np.lib.format.read_array_header_1_0(f)
+            else:
+                shape, fortran_order, dtype = np.lib.format.read_array_header_2_0(f)
+            if np.prod(shape) == 0:
+                # Empty arrays cannot be memory-mapped
+                arrays[name] = np.zeros(shape, dtype=dtype)
+                continue
+            arrays[name] = np.memmap(f.name, dtype=dtype, mode="r", shape=shape, offset=f.tell(),
+                                     order="F" if fortran_order else "C")
+    return arrays
+
+
+def npz_curves(arrays):
+    """Splits the arrays loaded by `load_npz` into one dict per curve."""
+    sample_names = ["x", "y", "curvature", "red", "green", "blue", "arc_length", "frame"]
+    offsets = arrays["curve_offsets"]
+    keyframe_offsets = arrays["keyframe_offsets"]
+    ctrl_pt_offsets = arrays["ctrl_pt_offsets"]
+
+    curves = []
+    for i in range(len(offsets) - 1):
+        datum = {name: arrays[name][offsets[i]:offsets[i + 1]] for name in sample_names}
+        datum["curveType"] = int(arrays["curve_type"][i])
+        datum["open"] = bool(arrays["curve_open"][i])
+
+        keyframes = range(keyframe_offsets[i], keyframe_offsets[i + 1])
+        datum["keyframes"] = [int(arrays["keyframe_frame"][k]) for k in keyframes]
+        datum["keyframe_pos"] = [arrays["ctrl_pts"][ctrl_pt_offsets[k]:ctrl_pt_offsets[k + 1]]
+                                 for k in keyframes]
+        curves.append(datum)
+    return curves
@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.scijava.Context;
+
+import ij.ImagePlus;
+import ij.process.ByteProcessor;
+import sc.fiji.kappa.gui.KappaFrame;
+
+/**
+ * Synthetic inputs for the benchmarks: a bright sine-shaped filament on a noisy
+ * background, points scattered around it and control points roughly on it. The
+ * same seed always gives the same inputs, so results can be compared between
+ * runs.
+ */
+public final class BenchmarkData {
+
+	public static final long SEED = 42;
+	public static final int WIDTH = 512;
+	public static final int HEIGHT = 512;
+
+	// The filament is y = HEIGHT / 2 + AMPLITUDE * sin(2 pi x / WAVELENGTH)
+	public static final double AMPLITUDE = HEIGHT / 8.0;
+	public static final double WAVELENGTH = WIDTH / 2.0;
+	public static final int MARGIN = 16;
+
+	public static final double FILAMENT_WIDTH = 1.5;
+	public static final double NOISE = 5;
+
+	private BenchmarkData() {
+	}
+
+	public static double sine(double x, double yOffset) {
+		return HEIGHT / 2.0 + yOffset + AMPLITUDE * Math.sin(2 * Math.PI * x / WAVELENGTH);
+	}
+
+	/**
+	 * @return An 8-bit image of the filament with Gaussian noise
+	 */
+	public static ImagePlus sineImage(long seed) {
+		Random random = new Random(seed);
+		byte[] pixels = new byte[WIDTH * HEIGHT];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				double d = y - sine(x, 0);
+				double value = 20 + 200 * Math.exp(-d * d / (2 * FILAMENT_WIDTH * FILAMENT_WIDTH))
+						+ NOISE * random.nextGaussian();
+				pixels[y * WIDTH + x] = (byte) Math.max(0, Math.min(255, (int) Math.round(value)));
+			}
+		}
+		return new ImagePlus("sine", new ByteProcessor(WIDTH, HEIGHT, pixels));
+	}
+
+	/**
+	 * @return n points scattered around the filament, as thresholded pixels would
+	 *         be
+	 */
+	public static List<Point2D> sineDataPoints(int n, long seed) {
+		Random random = new Random(seed);
+		List<Point2D> points = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			double x = MARGIN + random.nextDouble() * (WIDTH - 2 * MARGIN);
+			points.add(new Point2D.Double(x, sine(x, 0) + FILAMENT_WIDTH * random.nextGaussian()));
+		}
+		return points;
+	}
+
+	/**
+	 * @return n control points evenly spread along the filament, shifted
+	 *         vertically by an offset
+	 */
+	public static List<Point2D> sineControlPoints(int n, double yOffset) {
+		List<Point2D> points = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			double x = MARGIN + i * (WIDTH - 2 * MARGIN) / (n - 1.0);
+			points.add(new Point2D.Double(x, sine(x, yOffset)));
+		}
+		return points;
+	}
+
+	public static List<Double> unitWeights(int n) {
+		List<Double> weights = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			weights.add(1.0);
+		}
+		return weights;
+	}
+
+	/**
+	 * Opens a Kappa window with the synthetic image. It is never shown, but it
+	 * still needs a display.
+	 */
+	public static KappaFrame createFrame(Context context) {
+		KappaFrame frame = new KappaFrame(context);
+		frame.getKappaMenubar().openImage(sineImage(SEED));
+		return frame;
+	}
+
+	/**
+	 * Adds curves along copies of the filament, spread vertically over the image
+	 */
+	public static void addSineCurves(KappaFrame frame, int noCurves, int noCtrlPts, int curveType) {
+		int dataRadius = (Integer) frame.getInfoPanel().getThresholdRadiusSpinner().getValue();
+		for (int n = 0; n < noCurves; n++) {
+			double yOffset = (n % 64 - 32) * 2.0;
+			frame.getCurves().addCurve(sineControlPoints(noCtrlPts, yOffset), 1, noCtrlPts, curveType, true,
+					dataRadius);
+		}
+	}
+}
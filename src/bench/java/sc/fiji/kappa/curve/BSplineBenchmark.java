@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+
+import sc.fiji.kappa.BenchmarkData;
+import sc.fiji.kappa.gui.KappaFrame;
+
+/**
+ * Fitting a B-Spline to points scattered around a sine, for a range of data
+ * sizes and control point counts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BSplineBenchmark {
+
+	@Param({ "200", "2000", "20000" })
+	public int noDataPoints;
+
+	@Param({ "4", "8", "16" })
+	public int noCtrlPts;
+
+	@Param({ "Point Distance Minimization", "Squared Distance Minimization" })
+	public String fittingAlgorithm;
+
+	private Context context;
+	private KappaFrame frame;
+	private DataPoints dataPoints;
+	private BSpline curve;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = new Context();
+		frame = BenchmarkData.createFrame(context);
+		frame.setFittingAlgorithm(fittingAlgorithm);
+		dataPoints = new DataPoints(BenchmarkData.sineDataPoints(noDataPoints, BenchmarkData.SEED),
+				BenchmarkData.unitWeights(noDataPoints));
+		curve = createCurve();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		frame.dispose();
+		context.dispose();
+	}
+
+	// Starts off the filament, so the fitting has something to do
+	BSpline createCurve() {
+		return new BSpline(BenchmarkData.sineControlPoints(noCtrlPts, 5), 1, noCtrlPts, "CURVE 1", true,
+				(Integer) frame.getInfoPanel().getThresholdRadiusSpinner().getValue(), frame);
+	}
+
+	/**
+	 * A curve that has not been fitted yet, for every fitting iteration
+	 */
+	@State(Scope.Thread)
+	public static class UnfittedCurve {
+
+		BSpline curve;
+
+		@Setup(Level.Invocation)
+		public void setUp(BSplineBenchmark benchmark) {
+			curve = benchmark.createCurve();
+		}
+	}
+
+	@Benchmark
+	public double fittingIteration(UnfittedCurve unfitted) {
+		return unfitted.curve.fittingIteration(dataPoints, 1);
+	}
+
+	@Benchmark
+	public int[] getFootpoints() {
+		return curve.getFootpoints(dataPoints);
+	}
+
+	@Benchmark
+	public double evaluateGlobalError() {
+		return curve.evaluateGlobalError(dataPoints);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+
+import sc.fiji.kappa.BenchmarkData;
+import sc.fiji.kappa.gui.KappaFrame;
+
+/**
+ * Sampling a Bezier Curve and finding the thresholded pixels around it in the
+ * synthetic image.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BezierCurveBenchmark {
+
+	@Param({ "3", "4", "6" })
+	public int noCtrlPts;
+
+	@Param({ "5", "15", "30" })
+	public int dataRadius;
+
+	private Context context;
+	private KappaFrame frame;
+	private List<Point2D> ctrlPts;
+	private BezierCurve curve;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = new Context();
+		frame = BenchmarkData.createFrame(context);
+		ctrlPts = BenchmarkData.sineControlPoints(noCtrlPts, 0);
+		curve = new BezierCurve(ctrlPts, 1, noCtrlPts, "CURVE 1", dataRadius, frame);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		frame.dispose();
+		context.dispose();
+	}
+
+	@Benchmark
+	public List<BezierPoint> fillPoints() {
+		curve.fillPoints(ctrlPts, 1);
+		return curve.getPoints();
+	}
+
+	@Benchmark
+	public List<Point2D> evaluateThresholdedPixels() {
+		curve.evaluateThresholdedPixels();
+		return curve.getThresholdedPixels();
+	}
+}
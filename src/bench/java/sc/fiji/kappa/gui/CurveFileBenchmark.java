@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.gui;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+
+import sc.fiji.kappa.BenchmarkData;
+
+/**
+ * Loading and saving .kapp files in either format, for a growing number of
+ * B-Spline curves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CurveFileBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int noCurves;
+
+	@Param({ "false", "true" })
+	public boolean binary;
+
+	public static final int NO_CTRL_PTS = 8;
+
+	private Context context;
+	private KappaFrame frame;
+	private File curveFile;
+	private File savedFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		context = new Context();
+		frame = BenchmarkData.createFrame(context);
+		frame.getKappaMenubar().getBinaryCurveFilesMenu().setSelected(binary);
+		BenchmarkData.addSineCurves(frame, noCurves, NO_CTRL_PTS, KappaFrame.B_SPLINE);
+
+		curveFile = File.createTempFile("kappa-benchmark", ".kapp");
+		savedFile = File.createTempFile("kappa-benchmark", ".kapp");
+		frame.getKappaMenubar().saveCurveFile(curveFile);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		frame.dispose();
+		context.dispose();
+		curveFile.delete();
+		savedFile.delete();
+	}
+
+	@Benchmark
+	public long saveCurveFile() {
+		frame.getKappaMenubar().saveCurveFile(savedFile);
+		return savedFile.length();
+	}
+
+	@Benchmark
+	public int loadCurveFile() {
+		frame.getKappaMenubar().loadCurveFile(curveFile);
+		return frame.getCurves().size();
+	}
+}
@@ -28,16 +28,24 @@ package sc.fiji.kappa.curve;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Polygon;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
+import ij.ImagePlus;
 import Jama.Matrix;
+import sc.fiji.kappa.gui.ImageUtils;
 import sc.fiji.kappa.gui.KappaFrame;
 import sc.fiji.kappa.gui.KappaMenuBar;
+import sc.fiji.kappa.io.CsvWriter;
+import sc.fiji.kappa.metrics.FlightRecorder;
+import sc.fiji.kappa.metrics.PerformanceMetrics;
+import sc.fiji.kappa.metrics.Stage;
 
 public class BSpline extends Curve {
 	// We define the knot intervals to be uniform size, ie [0,1], [1,2] etc.
@@ -77,7 +85,6 @@ public class BSpline extends Curve {
 		spline = new BezierCurve[noCurves];
 
 		computeSpline(bsplineCtrlPts, t);
-		evaluateThresholdedPixels();
 	}
 
 	public void computeSpline(List<Point2D> bsplineCtrlPts, int t) {
@@ -123,7 +130,7 @@ public class BSpline extends Curve {
 			}
 			this.noCtrlPts = noCtrlPts + n;
 			fillPoints(this.ctrlPts, t);
-			getKeyframes().add(new BControlPoints(this.ctrlPts, t));
+			addKeyframe(this.ctrlPts, t);
 		}
 	}
 
@@ -161,7 +168,7 @@ public class BSpline extends Curve {
 		}
 		this.isOpen = !this.isOpen;
 		fillPoints(this.ctrlPts, t);
-		getKeyframes().add(new BControlPoints(this.ctrlPts, t));
+		addKeyframe(this.ctrlPts, t);
 	}
 
 	public void convertToClosed(int t) {
@@ -192,7 +199,7 @@ public class BSpline extends Curve {
 		}
 		this.isOpen = !this.isOpen;
 		fillPoints(this.ctrlPts, t);
-		getKeyframes().add(new BControlPoints(this.ctrlPts, t));
+		addKeyframe(this.ctrlPts, t);
 	}
 
 	@Override
@@ -243,6 +250,8 @@ public class BSpline extends Curve {
 	}
 
 	protected void fillPoints(Point2D[] bsplineCtrlPts, int t) {
+		long start = PerformanceMetrics.start();
+
 		// Extraction of the Constituent Bezier Curves using Boehm's Algorithm. Only
 		// works for cubics with this implementation
 		// Derivation is based on the algorithm described in Sederberg's Computer Aided
@@ -284,11 +293,13 @@ public class BSpline extends Curve {
 		}
 		this.bounds = generateOffsetBounds(bounds, THRESHOLD_RADIUS);
 		this.dataFittingBounds = generateOffsetBounds(dataFittingBounds, dataRadius);
+		incrementVersion();
+		PerformanceMetrics.stop(Stage.FILL_POINTS, start, noCurves * BezierCurve.NO_CURVE_POINTS);
 	}
 
-	protected double squaredDistanceErrorTerm(List<Point2D> dataPoints, int datapointIndex, int footpointIndex) {
+	protected double squaredDistanceErrorTerm(DataPoints dataPoints, int datapointIndex, int footpointIndex) {
 		BezierPoint p = this.getSpecificPoint(footpointIndex);
-		Point2D x = dataPoints.get(datapointIndex);
+		Point2D x = dataPoints.getPoint(datapointIndex);
 
 		// (p-x), the subtraction between the curve point and the data point
 		Point2D diff = new Point2D.Double((p.getX() - x.getX()), (p.getY() - x.getY()));
@@ -348,17 +359,40 @@ public class BSpline extends Curve {
 		return x * x;
 	}
 
-	private int[] getFootpoints(List<Point2D> dataPoints) {
+	int[] getFootpoints(List<Point2D> dataPoints) {
+		return getFootpoints(new DataPoints(dataPoints, null));
+	}
+
+	int[] getFootpoints(DataPoints dataPoints) {
+		long start = PerformanceMetrics.start();
+		int[] footpointIndices = findFootpoints(dataPoints);
+		PerformanceMetrics.stop(Stage.FOOTPOINTS, start, dataPoints.size());
+		return footpointIndices;
+	}
+
+	private int[] findFootpoints(DataPoints dataPoints) {
 		if (dataPoints.size() == 0) {
 			return new int[0];
 		}
+
+		// The points of the curve are looked up once rather than for every data point
+		int noPoints = this.getNoPoints();
+		double[] xs = new double[noPoints];
+		double[] ys = new double[noPoints];
+		for (int i = 0; i < noPoints; i++) {
+			BezierPoint p = this.getSpecificPoint(i);
+			xs[i] = p.getX();
+			ys[i] = p.getY();
+		}
+
 		int[] footpointIndices = new int[dataPoints.size()];
 		for (int n = 0; n < dataPoints.size(); n++) {
 			int minIndex = 0;
 			double minDistance = Double.MAX_VALUE;
-			for (int i = 0; i < this.getNoPoints(); i++) {
-				double dist = Math.sqrt(squared(this.getSpecificPoint(i).getX() - dataPoints.get(n).getX())
-						+ squared(this.getSpecificPoint(i).getY() - dataPoints.get(n).getY()));
+			double x = dataPoints.getX(n);
+			double y = dataPoints.getY(n);
+			for (int i = 0; i < noPoints; i++) {
+				double dist = Math.sqrt(squared(xs[i] - x) + squared(ys[i] - y));
 				if (dist < minDistance) {
 					minDistance = dist;
 					minIndex = i;
@@ -386,9 +420,8 @@ public class BSpline extends Curve {
 				int dataIndex = 0;
 				double minDistance = Double.MAX_VALUE;
 				for (int n = 0; n < dataPoints.size(); n++) {
-					double dist = Math
-							.sqrt(squared(this.getSpecificPoint(assignIndex).getX() - dataPoints.get(n).getX())
-									+ squared(this.getSpecificPoint(assignIndex).getY() - dataPoints.get(n).getY()));
+					double dist = Math.sqrt(squared(xs[assignIndex] - dataPoints.getX(n))
+							+ squared(ys[assignIndex] - dataPoints.getY(n)));
 					if (dist < minDistance) {
 						minDistance = dist;
 						dataIndex = n;
@@ -416,10 +449,122 @@ public class BSpline extends Curve {
 	 * @return The error of the fitting.
 	 */
 	public double fittingIteration(List<Point2D> dataPoints, List<Double> weights, int t) {
-		return fittingIteration(dataPoints, getFootpoints(dataPoints), weights, t);
+		return fittingIteration(new DataPoints(dataPoints, weights), t);
 	}
 
 	public double fittingIteration(List<Point2D> dataPoints, int[] footpointIndices, List<Double> weights, int t) {
+		return fittingIteration(new DataPoints(dataPoints, weights), footpointIndices, t, frame.getFittingAlgorithm());
+	}
+
+	/**
+	 * Performs one iteration of the fitting algorithm selected in the UI on data
+	 * points that already carry their weights, such as those from
+	 * {@link #getDataPoints()}.
+	 */
+	public double fittingIteration(DataPoints dataPoints, int t) {
+		return fittingIteration(dataPoints, getFootpoints(dataPoints), t, frame.getFittingAlgorithm());
+	}
+
+	/**
+	 * Performs one iteration of the fitting algorithm with the given algorithm
+	 * rather than the one selected in the UI, so that curves can also be fitted
+	 * without a window.
+	 *
+	 * @param fittingAlgorithm
+	 *            One of KappaFrame.FITTING_ALGORITHMS
+	 */
+	public double fittingIteration(List<Point2D> dataPoints, List<Double> weights, int t, String fittingAlgorithm) {
+		return fittingIteration(new DataPoints(dataPoints, weights), t, fittingAlgorithm);
+	}
+
+	public double fittingIteration(DataPoints dataPoints, int t, String fittingAlgorithm) {
+		return fittingIteration(dataPoints, getFootpoints(dataPoints), t, fittingAlgorithm);
+	}
+
+	double fittingIteration(DataPoints dataPoints, int[] footpointIndices, int t, String fittingAlgorithm) {
+		long start = PerformanceMetrics.start();
+		Object event = FlightRecorder.get().beginFittingIteration(name, t);
+		double error = fit(dataPoints, footpointIndices, t, fittingAlgorithm);
+		FlightRecorder.get().endFittingIteration(event, dataPoints.size(), error);
+		PerformanceMetrics.stop(Stage.FITTING_ITERATION, start, dataPoints.size());
+		return error;
+	}
+
+	/**
+	 * Returns a copy of the B-Spline at frame t with its control points and data
+	 * radius scaled by a factor, such as to fit it on a coarse level of an
+	 * {@link ImagePyramid}. Fitting the copy leaves this curve and its errors
+	 * alone.
+	 */
+	public BSpline scaledCopy(double scaleFactor, int t) {
+		List<Point2D> scaledCtrlPts = new ArrayList<>(noCtrlPts);
+		for (int i = 0; i < noCtrlPts; i++) {
+			scaledCtrlPts.add(new Point2D.Double(ctrlPts.get(i).getX() * scaleFactor, ctrlPts.get(i).getY() *
+					scaleFactor));
+		}
+		return new BSpline(scaledCtrlPts, t, noCtrlPts, name, isOpen, (int) Math.ceil(dataRadius * scaleFactor),
+				frame);
+	}
+
+	/**
+	 * Moves the control points at frame t to those of a copy made with
+	 * {@link #scaledCopy(double, int)}, undoing its scale factor.
+	 */
+	public void setFromScaledCopy(BSpline copy, double scaleFactor, int t) {
+		for (int i = 0; i < noCtrlPts; i++) {
+			Point2D p = copy.ctrlPts.get(i);
+			ctrlPts.set(i, new Point2D.Double(p.getX() / scaleFactor, p.getY() / scaleFactor));
+		}
+		addKeyframe(ctrlPts, t);
+		fillPoints(ctrlPts, t);
+	}
+
+	/**
+	 * Returns a copy of the B-Spline at frame t, with the same minimum errors, to
+	 * be fitted while this curve is still drawn. The result is put back with
+	 * {@link #setFromCopy(BSpline, int)}.
+	 */
+	public BSpline copy(int t) {
+		// A closed B-Spline repeats its first control points at the end, which the
+		// constructor adds again
+		int n = isOpen ? noCtrlPts : noCtrlPts - B_SPLINE_DEGREE;
+		List<Point2D> copiedCtrlPts = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			copiedCtrlPts.add(new Point2D.Double(ctrlPts.get(i).getX(), ctrlPts.get(i).getY()));
+		}
+		BSpline copy = new BSpline(copiedCtrlPts, t, n, name, isOpen, dataRadius, frame);
+		copy.minimumGlobalError = minimumGlobalError;
+		copy.minimumLocalError = minimumLocalError;
+		return copy;
+	}
+
+	/**
+	 * Sets the control points at frame t to those of a copy made with
+	 * {@link #copy(int)}, which may have a different number of them.
+	 */
+	public void setFromCopy(BSpline copy, int t) {
+		this.isOpen = copy.isOpen;
+		this.noCurves = copy.noCurves;
+		this.noCtrlPts = copy.noCtrlPts;
+		this.knotVector = copy.knotVector.clone();
+		this.spline = new BezierCurve[noCurves];
+		List<Point2D> newCtrlPts = new ArrayList<>(copy.ctrlPts.size());
+		for (Point2D p : copy.ctrlPts) {
+			newCtrlPts.add(new Point2D.Double(p.getX(), p.getY()));
+		}
+		this.ctrlPts = newCtrlPts;
+		this.minimumGlobalError = copy.minimumGlobalError;
+		this.minimumLocalError = copy.minimumLocalError;
+		this.oldFootpoints = copy.oldFootpoints;
+		this.dataPointsCopy = copy.dataPointsCopy;
+		addKeyframe(ctrlPts, t);
+		fillPoints(ctrlPts, t);
+		this.boundingBox = getKeyframes().getBounds(t);
+	}
+
+	private double fit(DataPoints dataPoints, int[] footpointIndices, int t, String fittingAlgorithm) {
+		checkCancelled();
+
 		// If we have no datapoints, then there's no point of fitting the curve, hence
 		// we just return.
 		if (dataPoints.size() == 0) {
@@ -428,14 +573,14 @@ public class BSpline extends Curve {
 
 		// If, after fitting, error across the entire spline is the smallest we've seen
 		// yet, we record it.
-		double oldError = evaluateGlobalError(dataPoints, weights);
+		double oldError = evaluateGlobalError(dataPoints);
 		if (oldError / this.getNoPoints() < minimumGlobalError) {
 			minimumGlobalError = oldError / this.getNoPoints();
 		}
 
 		// We also record the smallest observed maximum-local-error.
 		// That is, the curve where the piece with maximum error is the smallest.
-		double oldLocalError = evaluateMaxLocalError(dataPoints, weights);
+		double oldLocalError = evaluateMaxLocalError(dataPoints);
 		if (oldLocalError / BezierCurve.NO_CURVE_POINTS < minimumLocalError) {
 			minimumLocalError = oldLocalError / BezierCurve.NO_CURVE_POINTS;
 		}
@@ -452,7 +597,7 @@ public class BSpline extends Curve {
 			dataPointsCopy = new Point2D[dataPoints.size()];
 			for (int i = 0; i < oldFootpoints.length; i++) {
 				oldFootpoints[i] = footpointIndices[i];
-				dataPointsCopy[i] = dataPoints.get(i);
+				dataPointsCopy[i] = dataPoints.getPoint(i);
 			}
 		}
 
@@ -464,37 +609,29 @@ public class BSpline extends Curve {
 		// Differing values to minimize against depending on whether we desire Point
 		// Distance Minimization or Squared Distance Minimization
 		double weighting;
-		if (frame.getFittingAlgorithm().equals(KappaFrame.FITTING_ALGORITHMS[0])) {
+		if (fittingAlgorithm.equals(KappaFrame.FITTING_ALGORITHMS[0])) {
 			for (int i = 0; i < dataPoints.size(); i++) {
-				if (weights != null) {
-					weighting = Math.sqrt(weights.get(i));
-				} else {
-					weighting = 1;
-				}
-				xvals[i][0] = weighting * (dataPoints.get(i).getX());
-				yvals[i][0] = weighting * (dataPoints.get(i).getY());
+				weighting = Math.sqrt(dataPoints.getWeight(i));
+				xvals[i][0] = weighting * dataPoints.getX(i);
+				yvals[i][0] = weighting * dataPoints.getY(i);
 			}
 		} // Squared Distance Minimization Values. This corresponds to directly minimizing
 			// the Squared Distance Error term.
 			// The canonical minimization algorithm minimizes || P(x) - X ||^2, so if we
 			// choose our X to be P(x) - (sdterm/2)^(1/2),
 			// the minimization will minimize the sdterm.
-		else if (frame.getFittingAlgorithm().equals(KappaFrame.FITTING_ALGORITHMS[1])) {
+		else if (fittingAlgorithm.equals(KappaFrame.FITTING_ALGORITHMS[1])) {
 			for (int i = 0; i < dataPoints.size(); i++) {
-				if (weights != null) {
-					weighting = Math.sqrt(weights.get(i));
-				} else {
-					weighting = 1;
-				}
+				weighting = Math.sqrt(dataPoints.getWeight(i));
 				double sdterm = squaredDistanceErrorTerm(dataPoints, i, footpointIndices[i]);
-				if (this.getSpecificPoint(footpointIndices[i]).getX() < dataPoints.get(i).getX()) {
+				if (this.getSpecificPoint(footpointIndices[i]).getX() < dataPoints.getX(i)) {
 					xvals[i][0] = weighting
 							* (this.getSpecificPoint(footpointIndices[i]).getX() + Math.sqrt(sdterm / 2));
 				} else {
 					xvals[i][0] = weighting
 							* (this.getSpecificPoint(footpointIndices[i]).getX() - Math.sqrt(sdterm / 2));
 				}
-				if (this.getSpecificPoint(footpointIndices[i]).getY() < dataPoints.get(i).getY()) {
+				if (this.getSpecificPoint(footpointIndices[i]).getY() < dataPoints.getY(i)) {
 					yvals[i][0] = weighting
 							* (this.getSpecificPoint(footpointIndices[i]).getY() + Math.sqrt(sdterm / 2));
 				} else {
@@ -520,7 +657,7 @@ public class BSpline extends Curve {
 		for (int r = 0; r < m; r++) {
 			double[] coefficients = evaluateBasisFunction(footpointIndices[r]);
 			for (int c = 0; c < n; c++) {
-				vals[r][c] = Math.sqrt(weights.get(r)) * coefficients[c];
+				vals[r][c] = Math.sqrt(dataPoints.getWeight(r)) * coefficients[c];
 			}
 		}
 
@@ -577,11 +714,11 @@ public class BSpline extends Curve {
 		}
 
 		// Computes the new global and local errors after the curve has been fit
-		double newError = evaluateGlobalError(dataPoints, weights);
+		double newError = evaluateGlobalError(dataPoints);
 		if (newError / this.getNoPoints() < minimumGlobalError) {
 			minimumGlobalError = newError / this.getNoPoints();
 		}
-		double newLocalError = evaluateMaxLocalError(dataPoints, weights);
+		double newLocalError = evaluateMaxLocalError(dataPoints);
 		if (newLocalError / BezierCurve.NO_CURVE_POINTS < minimumLocalError) {
 			minimumLocalError = newLocalError / BezierCurve.NO_CURVE_POINTS;
 		}
@@ -591,15 +728,19 @@ public class BSpline extends Curve {
 		if (newError >= oldError) {
 			this.ctrlPts = oldCtrlPts;
 			fillPoints(ctrlPts, t);
-			getKeyframes().add(new BControlPoints(this.ctrlPts, t));
+			addKeyframe(this.ctrlPts, t);
 			return oldError / this.getNoPoints();
 		}
-		getKeyframes().add(new BControlPoints(this.ctrlPts, t));
+		addKeyframe(this.ctrlPts, t);
 		return newError / this.getNoPoints();
 	}
 
 	// Adjust the control point number to improve the fit
 	public void adjustControlPoints(List<Point2D> dataPoints, List<Double> weights, int t) {
+		adjustControlPoints(new DataPoints(dataPoints, weights), t);
+	}
+
+	public void adjustControlPoints(DataPoints dataPoints, int t) {
 
 		// If we have no datapoints, then there's no point of adjusting the curve, hence
 		// we just return.
@@ -614,6 +755,8 @@ public class BSpline extends Curve {
 
 		// Preliminary control point removal and adjustment.
 		do {
+			checkCancelled();
+
 			// The regions most at risk for redundancy are where the control points are
 			// densely organized.
 			// Scaling by local curvature was tested too, but just using the density seemed
@@ -642,8 +785,8 @@ public class BSpline extends Curve {
 			// Replaces this control point, and the one after it, with an average of the
 			// two.
 			wasReduced = reduceCurve(maxRedundancyIndex, t);
-			globalError = fittingIteration(dataPoints, weights, t);
-			localError = evaluateMaxLocalError(dataPoints, weights) / BezierCurve.NO_CURVE_POINTS;
+			globalError = fittingIteration(dataPoints, t);
+			localError = evaluateMaxLocalError(dataPoints) / BezierCurve.NO_CURVE_POINTS;
 
 			// Repeat until the error has increased by more than a certain scalar multiple
 			// of the minimum error
@@ -663,6 +806,7 @@ public class BSpline extends Curve {
 		// We only consider local errors at this point.
 		boolean changed;
 		do {
+			checkCancelled();
 			changed = false;
 
 			// We attempt to remove every internal control point and see which one has
@@ -684,8 +828,8 @@ public class BSpline extends Curve {
 				}
 
 				// We compute the error of the reduced curve and see if it's increased
-				fittingIteration(dataPoints, weights, t);
-				reducedError = evaluateMaxLocalError(dataPoints, weights) / BezierCurve.NO_CURVE_POINTS;
+				fittingIteration(dataPoints, t);
+				reducedError = evaluateMaxLocalError(dataPoints) / BezierCurve.NO_CURVE_POINTS;
 
 				if (reducedError < minimumError) {
 					minimumError = reducedError;
@@ -699,8 +843,8 @@ public class BSpline extends Curve {
 			// thresholds, we remove it
 			if (minimumErrorIndex != -1 && minimumError < minimumLocalError * (1 + frame.getLocalThreshold())) {
 				reduceCurve(minimumErrorIndex, t);
-				globalError = fittingIteration(dataPoints, weights, t);
-				localError = evaluateMaxLocalError(dataPoints, weights) / BezierCurve.NO_CURVE_POINTS;
+				globalError = fittingIteration(dataPoints, t);
+				localError = evaluateMaxLocalError(dataPoints) / BezierCurve.NO_CURVE_POINTS;
 				changed = true;
 			}
 		} while (changed);
@@ -710,6 +854,14 @@ public class BSpline extends Curve {
 		minimumLocalError = localError;
 	}
 
+	// Fitting runs as a background job, which is cancelled by interrupting its
+	// thread. The curve keeps the shape it had when the cancellation was noticed.
+	private static void checkCancelled() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("Fitting was cancelled");
+		}
+	}
+
 	private double getLocalCtrlPtDensity(int i) {
 		// If we are looking at terminal control points, we don't want them to be
 		// removed, so we bias this
@@ -762,7 +914,7 @@ public class BSpline extends Curve {
 
 		computeSpline(ctrlPts, t);
 		fillPoints(ctrlPts, t);
-		getKeyframes().add(new BControlPoints(this.ctrlPts, t));
+		addKeyframe(this.ctrlPts, t);
 		return true;
 	}
 
@@ -777,30 +929,42 @@ public class BSpline extends Curve {
 
 		computeSpline(ctrlPts, t);
 		fillPoints(ctrlPts, t);
-		getKeyframes().add(new BControlPoints(this.ctrlPts, t));
+		addKeyframe(this.ctrlPts, t);
 	}
 
 	// TODO This and the local error evaluation do the same computation.
 	// Convert the two methods into one that returns an array with both values.
 	public double evaluateGlobalError(List<Point2D> dataPoints, List<Double> weights) {
+		return evaluateGlobalError(new DataPoints(dataPoints, weights));
+	}
+
+	public double evaluateGlobalError(DataPoints dataPoints) {
+		long start = PerformanceMetrics.start();
+
 		// Evaluates the total error after fitting, weighted by intensity.
 		double error = 0;
 		for (int i = 0; i < this.getNoPoints(); i++) {
 			double minDistance = Double.MAX_VALUE;
+			BezierPoint p = this.getSpecificPoint(i);
 			for (int j = 0; j < dataPoints.size(); j++) {
-				double dist = (1 / (weights.get(j) * 1.0))
-						* Math.sqrt(squared(this.getSpecificPoint(i).getX() - dataPoints.get(j).getX())
-								+ squared(this.getSpecificPoint(i).getY() - dataPoints.get(j).getY()));
+				double dist = (1 / dataPoints.getWeight(j))
+						* Math.sqrt(squared(p.getX() - dataPoints.getX(j)) + squared(p.getY() - dataPoints.getY(j)));
 				if (dist < minDistance) {
 					minDistance = dist;
 				}
 			}
 			error += minDistance;
 		}
+		PerformanceMetrics.stop(Stage.ERROR_EVALUATION, start, dataPoints.size());
 		return error;
 	}
 
 	public double evaluateMaxLocalError(List<Point2D> dataPoints, List<Double> weights) {
+		return evaluateMaxLocalError(new DataPoints(dataPoints, weights));
+	}
+
+	public double evaluateMaxLocalError(DataPoints dataPoints) {
+		long start = PerformanceMetrics.start();
 		double maxLocalError = 0;
 		double pieceError;
 
@@ -811,10 +975,10 @@ public class BSpline extends Curve {
 			// Computes the error for a single piece of the curve
 			for (int i = n * BezierCurve.NO_CURVE_POINTS; i < (n + 1) * BezierCurve.NO_CURVE_POINTS; i++) {
 				double minDistance = Double.MAX_VALUE;
+				BezierPoint p = this.getSpecificPoint(i);
 				for (int j = 0; j < dataPoints.size(); j++) {
-					double dist = (1 / (weights.get(j) * 1.0))
-							* Math.sqrt(squared(this.getSpecificPoint(i).getX() - dataPoints.get(j).getX())
-									+ squared(this.getSpecificPoint(i).getY() - dataPoints.get(j).getY()));
+					double dist = (1 / dataPoints.getWeight(j))
+							* Math.sqrt(squared(p.getX() - dataPoints.getX(j)) + squared(p.getY() - dataPoints.getY(j)));
 					if (dist < minDistance) {
 						minDistance = dist;
 					}
@@ -827,7 +991,7 @@ public class BSpline extends Curve {
 				maxLocalError = pieceError;
 			}
 		}
-
+		PerformanceMetrics.stop(Stage.ERROR_EVALUATION, start, dataPoints.size());
 		return maxLocalError;
 	}
 
@@ -888,7 +1052,7 @@ public class BSpline extends Curve {
 				} else {
 					ctrlPts.set(selectedCtrlPtIndex - ctrlPts.size() + B_SPLINE_DEGREE, newCtrlPt);
 				}
-				getKeyframes().add(new BControlPoints(ctrlPts, t));
+				addKeyframe(ctrlPts, t);
 				fillPoints(ctrlPts, t);
 				boundingBox = getKeyframes().getBounds(t);
 			}
@@ -896,32 +1060,47 @@ public class BSpline extends Curve {
 	}
 
 	@Override
-	public void printValues(PrintWriter out, double[][] averaged, boolean exportAllDataPoints) {
-		// Exports in CSV format for import into Excel
-		int i = 0;
+	public void writeValues(CsvWriter out, boolean exportAllDataPoints) throws IOException {
+		// Exports in CSV format for import into Excel. Each Bezier Curve of the spline
+		// has its own rows, labelled with the metrics of the whole spline.
+		double curveLength = this.getApproxCurveLength();
+		double curvature = this.getAverageCurvature();
+		double curvatureStd = this.getCurvatureStdDev();
 		for (BezierCurve c : spline) {
+			c.writeValues(out, name, curveLength, curvature, curvatureStd, exportAllDataPoints);
+		}
+	}
 
-			double curveLength = this.getApproxCurveLength();
-			double curvature = this.getAverageCurvature();
-			double curvatureStd = this.getCurvatureStdDev();
-
-			if (!exportAllDataPoints) {
-
-				out.print(this.name);
+	private static class SplineGeometry extends FrameGeometry {
 
-				out.print("," + curveLength);
-				out.print("," + curvature);
-				out.print("," + curvatureStd);
+		private BezierCurve[] spline;
+	}
 
-				c.printValues(out, averaged, exportAllDataPoints);
+	@Override
+	protected FrameGeometry saveFrameGeometry() {
+		// The Bezier Curves are created anew whenever the spline changes, so they
+		// keep the intensities and thresholded pixels found for this frame. The array
+		// itself is refilled in place, so it is copied.
+		SplineGeometry g = new SplineGeometry();
+		g.spline = spline.clone();
+		return g;
+	}
 
-				out.println();
-			} else {
-				c.printValuesAll(out, curveLength, curvature, curvatureStd);
-			}
+	@Override
+	protected void restoreFrameGeometry(FrameGeometry geometry) {
+		spline = ((SplineGeometry) geometry).spline.clone();
+		for (BezierCurve c : spline) {
+			c.setSelected(selected);
+		}
+	}
 
-			i++;
+	@Override
+	public List<int[]> getIntensities() {
+		List<int[]> intensities = new ArrayList<>(noCurves * BezierCurve.NO_CURVE_POINTS);
+		for (BezierCurve c : spline) {
+			intensities.addAll(c.getIntensities());
 		}
+		return intensities;
 	}
 
 	@Override
@@ -1057,42 +1236,43 @@ public class BSpline extends Curve {
 	}
 
 	@Override
-	public double getAverageCurvature() {
-		// Returns the average curvature across the entire Bezier Spline
-		// This only works because each of the sets are of the same cardinality: they're
-		// the same size (same number of points)
+	protected CurveMetrics computeMetrics() {
+		// The average curvature across the entire Bezier Spline is the average of the
+		// averages of its Bezier Curves. This only works because each of the sets are of
+		// the same cardinality: they're the same size (same number of points)
 		// In the general case, the average of the averages does not equal the global
 		// average. (A weighted average must be obtained)
-		double total = 0;
+		int n = 0;
 		for (BezierCurve c : spline) {
-			total += c.getAverageCurvature();
+			n += c.getMetrics().getNoPoints();
 		}
-		return total / noCurves;
-	}
-
-	@Override
-	public double getApproxCurveLength() {
+		double[] arcLength = new double[n];
 		double length = 0;
+		double total = 0;
+		double max = 0;
+		int i = 0;
 		for (BezierCurve c : spline) {
-			length += c.getApproxCurveLength();
+			CurveMetrics m = c.getMetrics();
+			for (int j = 0; j < m.getNoPoints(); j++) {
+				arcLength[i++] = length + m.getArcLength(j);
+			}
+			length += m.getLength();
+			total += m.getAverageCurvature();
+			max = Math.max(max, m.getMaxCurvature());
 		}
-		return length;
-	}
+		double mu = total / noCurves;
 
-	@Override
-	public double getCurvatureStdDev() {
 		// This standard deviation is slightly off because it double counts the
 		// curvatures values at the junction points between
 		// Bezier Curves in the spline.
 		double variance = 0;
-		double mu = this.getAverageCurvature();
 		for (BezierCurve c : spline) {
-			for (Point2D point : c.getCurveData()) {
-				variance += (point.getY() - mu) * (point.getY() - mu);
+			for (BezierPoint point : c.getPoints()) {
+				variance += (point.k - mu) * (point.k - mu);
 			}
 		}
 		variance /= noCurves * BezierCurve.NO_CURVE_POINTS - 1;
-		return Math.sqrt(variance);
+		return new CurveMetrics(mu, Math.sqrt(variance), max, arcLength);
 	}
 
 	@Override
@@ -1181,6 +1361,7 @@ public class BSpline extends Curve {
 		for (BezierCurve c : spline) {
 			c.updateIntensities();
 		}
+		incrementVersion();
 	}
 
 	@Override
@@ -1274,12 +1455,46 @@ public class BSpline extends Curve {
 
 	@Override
 	public void evaluateThresholdedPixels() {
+		// Setting the radius evaluates the thresholded pixels of each piece
 		for (BezierCurve c : spline) {
 			c.setDataRadius(dataRadius);
-			c.evaluateThresholdedPixels();
 		}
 	}
 
+	@Override
+	public DerivedDataTask createDerivedDataTask() {
+		DerivedDataTask[] pieces = new DerivedDataTask[noCurves];
+		for (int i = 0; i < noCurves; i++) {
+			pieces[i] = spline[i].createDerivedDataTask();
+		}
+		return new DerivedDataTask() {
+
+			@Override
+			public void run() {
+				for (DerivedDataTask piece : pieces) {
+					piece.run();
+				}
+			}
+
+			@Override
+			protected void apply() {
+				for (DerivedDataTask piece : pieces) {
+					piece.install();
+				}
+			}
+		};
+	}
+
+	@Override
+	public boolean isDerivedDataStale() {
+		for (BezierCurve c : spline) {
+			if (c.isDerivedDataStale()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public void drawThresholdedPixels(Graphics2D g, double scale) {
 		for (BezierCurve c : spline) {
@@ -1301,6 +1516,72 @@ public class BSpline extends Curve {
 		return thresholdedPixels;
 	}
 
+	/**
+	 * Gets the data points to fit the curve to, with their weights: the pixels in
+	 * the data region of any of the pieces that pass the threshold, each once. The
+	 * regions of the pieces are marked in a mask over the part of the image they
+	 * cover first, so that every pixel is then read once, to be both thresholded
+	 * and weighed.
+	 */
+	public DataPoints getDataPoints() {
+		long start = PerformanceMetrics.start();
+		Object event = FlightRecorder.get().beginThresholding(name, getCurrentFrame());
+		ImagePlus image = frame.getImageStack();
+		ThresholdParameters parameters = getThresholdParameters();
+
+		// The pixels each piece is scanned for, as in BezierCurve, within the image
+		int[][] boxes = new int[noCurves][];
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = -1, maxY = -1;
+		for (int n = 0; n < noCurves; n++) {
+			Rectangle2D box = spline[n].boundingBox;
+			int radius = spline[n].dataRadius;
+			boxes[n] = new int[] { Math.max(0, (int) box.getX() - radius), Math.max(0, (int) box.getY() - radius),
+					Math.min(image.getWidth() - 1, (int) box.getX() + (int) box.getWidth() + radius),
+					Math.min(image.getHeight() - 1, (int) box.getY() + (int) box.getHeight() + radius) };
+			minX = Math.min(minX, boxes[n][0]);
+			minY = Math.min(minY, boxes[n][1]);
+			maxX = Math.max(maxX, boxes[n][2]);
+			maxY = Math.max(maxY, boxes[n][3]);
+		}
+
+		// Marks the pixels in the region of any of the pieces
+		int width = Math.max(0, maxX - minX + 1);
+		int height = Math.max(0, maxY - minY + 1);
+		boolean[] mask = new boolean[width * height];
+		int noMarked = 0;
+		for (int n = 0; n < noCurves; n++) {
+			Polygon region = new Polygon();
+			for (Point2D p : spline[n].dataFittingBounds) {
+				region.addPoint((int) (p.getX()), (int) (p.getY()));
+			}
+			for (int y = boxes[n][1]; y <= boxes[n][3]; y++) {
+				for (int x = boxes[n][0]; x <= boxes[n][2]; x++) {
+					int i = (y - minY) * width + (x - minX);
+					if (!mask[i] && region.contains((double) x, (double) y)) {
+						mask[i] = true;
+						noMarked++;
+					}
+				}
+			}
+		}
+
+		DataPoints dataPoints = new DataPoints(noMarked);
+		ImageUtils imgUtils = new ImageUtils<>();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (mask[y * width + x]) {
+					int[] rgb = imgUtils.getPixels(image, minX + x, minY + y);
+					if (parameters.accepts(rgb)) {
+						dataPoints.add(minX + x, minY + y, parameters.getWeight(rgb, image.getBitDepth()));
+					}
+				}
+			}
+		}
+		FlightRecorder.get().endThresholding(event, dataPoints.size());
+		PerformanceMetrics.stop(Stage.DATA_POINTS, start, dataPoints.size());
+		return dataPoints;
+	}
+
 	@Override
 	public double getMaximum(double start, double end) {
 		double max = Double.MIN_VALUE;
@@ -28,23 +28,34 @@ package sc.fiji.kappa.curve;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Polygon;
 import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import sc.fiji.kappa.gui.ImageUtils;
 import sc.fiji.kappa.gui.KappaFrame;
 import sc.fiji.kappa.gui.KappaMenuBar;
+import sc.fiji.kappa.io.CsvWriter;
+import sc.fiji.kappa.metrics.FlightRecorder;
+import sc.fiji.kappa.metrics.PerformanceMetrics;
+import sc.fiji.kappa.metrics.Stage;
 
 public class BezierCurve extends Curve {
 
 	private ArrayList<BezierPoint> curvePoints;
 	private ArrayList<BezierPoint> hodographPoints;
-	private ArrayList<int[]> RGBvals;
+	private List<int[]> RGBvals;
 	private Point2D[] hodographCtrlPts;
+	private Path2D.Double boundsPath;
+	private int boundsPathVersion;
+
+	// The threshold settings the thresholded pixels were found with
+	private ThresholdParameters thresholdedPixelsParameters;
 
 	// The range of values sampled around each Bezier Point to determine an average
 	// intensity per Bezier Region
@@ -64,49 +75,82 @@ public class BezierCurve extends Curve {
 	public BezierCurve(List<Point2D> ctrlPts, int t, int noCtrlPts, String name, int dataRadius, KappaFrame frame) {
 		super(ctrlPts, t, noCtrlPts, name, dataRadius, frame);
 		fillPoints(ctrlPts, t);
-		evaluateThresholdedPixels();
 	}
 
 	@Override
-	public void addKeyFrame(Point2D newCtrlPt, int t) {
-		super.addKeyFrame(newCtrlPt, t);
-		evaluateThresholdedPixels();
+	public void writeValues(CsvWriter out, boolean exportAllDataPoints) throws IOException {
+		writeValues(out, name, getApproxCurveLength(), getAverageCurvature(), getCurvatureStdDev(),
+				exportAllDataPoints);
 	}
 
 	@Override
-	public void translateCurve(int t) {
-		super.translateCurve(t);
-		evaluateThresholdedPixels();
+	public List<int[]> getIntensities() {
+		return getRGBvals();
+	}
+
+	private static class BezierGeometry extends FrameGeometry {
+
+		private ArrayList<BezierPoint> curvePoints;
+		private ArrayList<BezierPoint> hodographPoints;
+		private Point2D[] hodographCtrlPts;
+		private List<int[]> RGBvals;
+		private List<Point2D> thresholdedPixels;
+		private ThresholdParameters thresholdedPixelsParameters;
+		private boolean thresholdedPixelsStale;
 	}
 
 	@Override
-	public void printValues(PrintWriter out, double[][] averaged, boolean exportAllDataPoints) {
+	protected FrameGeometry saveFrameGeometry() {
+		BezierGeometry g = new BezierGeometry();
+		g.curvePoints = curvePoints;
+		g.hodographPoints = hodographPoints;
+		g.hodographCtrlPts = hodographCtrlPts;
+		g.RGBvals = RGBvals;
+		g.thresholdedPixels = thresholdedPixels;
+		g.thresholdedPixelsParameters = thresholdedPixelsParameters;
+		g.thresholdedPixelsStale = thresholdedPixelsStale;
+		return g;
+	}
 
-		// We export all the unique pixel data points if this is the case.
-		if (exportAllDataPoints) {
-			// We bin all points on the curve that evaluate to the same pixel coordinate
-			// into one averaged point
+	@Override
+	protected void restoreFrameGeometry(FrameGeometry geometry) {
+		BezierGeometry g = (BezierGeometry) geometry;
+		curvePoints = g.curvePoints;
+		hodographPoints = g.hodographPoints;
+		hodographCtrlPts = g.hodographCtrlPts;
+		RGBvals = g.RGBvals;
+		thresholdedPixels = g.thresholdedPixels;
+		thresholdedPixelsParameters = g.thresholdedPixelsParameters;
+		thresholdedPixelsStale = g.thresholdedPixelsStale;
+	}
+
+	/**
+	 * Writes the rows for this curve, labelled with the name and metrics of the
+	 * curve it is a part of.
+	 */
+	void writeValues(CsvWriter out, String curveName, double curveLength, double curvature, double curvatureStd,
+			boolean exportAllDataPoints) throws IOException {
+		List<int[]> rgb = getRGBvals();
 
+		// We export all the data points if this is the case.
+		if (exportAllDataPoints) {
 			for (int i = 0; i < curvePoints.size() - 1; i++) {
 				BezierPoint p = curvePoints.get(i);
-				double x = p.getX();
-				double y = p.getY();
-				double k = p.k;
-				int sign = p.sign;
-				double red = RGBvals.get(i)[0];
-				double green = RGBvals.get(i)[1];
-				double blue = RGBvals.get(i)[2];
-
-				// Now we print out the averaged point.
-				out.print("," + x * micronPixelFactor);
-				out.print("," + y * micronPixelFactor);
-				out.print("," + k);
-				out.print("," + sign);
-
-				out.print("," + red);
-				out.print("," + green);
-				out.print("," + blue);
+				out.field(curveName);
+
+				out.field(curveLength);
+				out.field(curvature);
+				out.field(curvatureStd);
+
+				out.field(p.x * micronPixelFactor);
+				out.field(p.y * micronPixelFactor);
+				out.field(p.k);
+				out.field(p.sign);
 
+				out.field((double) rgb.get(i)[0]);
+				out.field((double) rgb.get(i)[1]);
+				out.field((double) rgb.get(i)[2]);
+				out.endRow();
 			}
 		} // Otherwise, we only export averages
 		else {
@@ -119,52 +163,28 @@ public class BezierCurve extends Curve {
 
 			for (int i = 0; i < curvePoints.size() - 1; i++) {
 				BezierPoint p = curvePoints.get(i);
-				totalX += p.getX();
-				totalY += p.getY();
+				totalX += p.x;
+				totalY += p.y;
 				totalK += p.sign * p.k;
-				totalRed += RGBvals.get(i)[0];
-				totalGreen += RGBvals.get(i)[1];
-				totalBlue += RGBvals.get(i)[2];
+				totalRed += rgb.get(i)[0];
+				totalGreen += rgb.get(i)[1];
+				totalBlue += rgb.get(i)[2];
 			}
 
-			out.print("," + (totalX / curvePoints.size()) * micronPixelFactor);
-			out.print("," + (totalY / curvePoints.size()) * micronPixelFactor);
-			out.print("," + totalK / curvePoints.size());
-
-			out.print("," + totalRed / curvePoints.size());
-			out.print("," + totalGreen / curvePoints.size());
-			out.print("," + totalBlue / curvePoints.size());
-		}
-	}
-
-	public void printValuesAll(PrintWriter out, double curveLength, double curvature, double curvatureStd) {
-		for (int i = 0; i < curvePoints.size() - 1; i++) {
-			BezierPoint p = curvePoints.get(i);
-			double x = p.getX();
-			double y = p.getY();
-			double k = p.k;
-			int sign = p.sign;
-			double red = RGBvals.get(i)[0];
-			double green = RGBvals.get(i)[1];
-			double blue = RGBvals.get(i)[2];
-
-			out.print(this.name);
-
-			out.print("," + curveLength);
-			out.print("," + curvature);
-			out.print("," + curvatureStd);
+			out.field(curveName);
 
-			// Now we print out the averaged point.
-			out.print("," + x * micronPixelFactor);
-			out.print("," + y * micronPixelFactor);
-			out.print("," + k);
-			out.print("," + sign);
+			out.field(curveLength);
+			out.field(curvature);
+			out.field(curvatureStd);
 
-			out.print("," + red);
-			out.print("," + green);
-			out.print("," + blue);
+			out.field((totalX / curvePoints.size()) * micronPixelFactor);
+			out.field((totalY / curvePoints.size()) * micronPixelFactor);
+			out.field(totalK / curvePoints.size());
 
-			out.println();
+			out.field(totalRed / curvePoints.size());
+			out.field(totalGreen / curvePoints.size());
+			out.field(totalBlue / curvePoints.size());
+			out.endRow();
 		}
 	}
 
@@ -178,50 +198,46 @@ public class BezierCurve extends Curve {
 
 	@Override
 	public void evaluateThresholdedPixels() {
-		int pixelThreshold = frame.getInfoPanel().getDataThresholdSlider().getValue();
-		boolean isBrighter = frame.getInfoPanel().getDataRangeComboBox().getSelectedIndex() == 0;
+		thresholdedPixelsParameters = getThresholdParameters();
+		thresholdedPixels = findThresholdedPixels(boundingBox, dataFittingBounds, dataRadius,
+				thresholdedPixelsParameters, frame.getCurrImage().getWidth(), frame.getCurrImage().getHeight());
+		thresholdedPixelsStale = false;
+	}
 
-		// Finds all pixels nearby the curve that are higher than a threshold intensity.
-		thresholdedPixels = new ArrayList<>();
-		scaledDataBounds.reset();
-		for (Point2D p : dataFittingBounds) {
-			scaledDataBounds.addPoint((int) (p.getX()), (int) (p.getY()));
+	// Finds all pixels within the data fitting region around the curve that pass the
+	// threshold. This only reads its arguments and the image, so it can also run
+	// away from the EDT.
+	private List<Point2D> findThresholdedPixels(Rectangle2D box, List<Point2D> region, int radius,
+			ThresholdParameters parameters, int width, int height) {
+		long start = PerformanceMetrics.start();
+		Object event = FlightRecorder.get().beginThresholding(name, getCurrentFrame());
+		List<Point2D> pixels = new ArrayList<>();
+		Polygon regionPolygon = new Polygon();
+		for (Point2D p : region) {
+			regionPolygon.addPoint((int) (p.getX()), (int) (p.getY()));
 		}
 
 		ImageUtils imgUtils = new ImageUtils<>();
 
-		for (int x = (int) boundingBox.getX() - dataRadius; x <= (int) boundingBox.getX() + (int) boundingBox.getWidth()
-				+ dataRadius; x++) {
-			for (int y = (int) boundingBox.getY() - dataRadius; y <= (int) boundingBox.getY()
-					+ (int) boundingBox.getHeight() + dataRadius; y++) {
-				if (x >= 0 && x < frame.getCurrImage().getWidth() && y >= 0 && y < frame.getCurrImage().getHeight()) {
+		for (int x = (int) box.getX() - radius; x <= (int) box.getX() + (int) box.getWidth() + radius; x++) {
+			for (int y = (int) box.getY() - radius; y <= (int) box.getY() + (int) box.getHeight() + radius; y++) {
+				if (x >= 0 && x < width && y >= 0 && y < height) {
 					int[] rgb = imgUtils.getPixels(frame.getImageStack(), x, y);
-
-					// Checks the correct channel depending on the UI preference
-					int channel = frame.getInfoPanel().getFittingChannelsComboBox().getSelectedIndex();
-					long intensity;
-					if (channel == 0) {
-						intensity = rgb[0];
-					} else if (channel == 1) {
-						intensity = rgb[1];
-					} else if (channel == 2) {
-						intensity = rgb[2];
-					} else {
-						intensity = (rgb[0] + rgb[1] + rgb[2]) / 3;
-					}
-
-					if ((isBrighter && intensity >= pixelThreshold) || (!isBrighter && intensity <= pixelThreshold)) {
-						if (scaledDataBounds.contains(new Point2D.Double(x, y))) {
-							thresholdedPixels.add(new Point2D.Double(x, y));
-						}
+					if (parameters.accepts(rgb) && regionPolygon.contains(new Point2D.Double(x, y))) {
+						pixels.add(new Point2D.Double(x, y));
 					}
 				}
 			}
 		}
+		FlightRecorder.get().endThresholding(event, pixels.size());
+		PerformanceMetrics.stop(Stage.THRESHOLDING, start, pixels.size());
+		return pixels;
 	}
 
 	@Override
 	public void drawThresholdedPixels(Graphics2D g, double scale) {
+		// Draws the pixels that were last found, as finding them again is left to
+		// a derived data task
 		g.setColor(Color.MAGENTA);
 		for (Point2D p : thresholdedPixels) {
 			g.fillRect((int) Math.round(p.getX() * scale), (int) Math.round(p.getY() * scale), (int) Math.round(scale),
@@ -231,10 +247,15 @@ public class BezierCurve extends Curve {
 
 	@Override
 	protected void fillPoints(List<Point2D> ctrlPtsList, int t) {
+		long start = PerformanceMetrics.start();
 		curvePoints = new ArrayList<>(NO_CURVE_POINTS);
-		RGBvals = new ArrayList<>(NO_CURVE_POINTS);
 		hodographPoints = new ArrayList<>(NO_CURVE_POINTS);
 
+		// Intensities and thresholded pixels are only sampled again once they are
+		// needed
+		RGBvals = null;
+		thresholdedPixelsStale = true;
+
 		Point2D[] ctrlPts = new Point2D[noCtrlPts];
 		for (int i = 0; i < ctrlPtsList.size(); i++) {
 			ctrlPts[i] = ctrlPtsList.get(i);
@@ -244,16 +265,10 @@ public class BezierCurve extends Curve {
 		// algorithm for subdivision
 		// Simultaneously calculates the curvature at these points.
 		// We fill in the first two endpoint values manually.
-
-		ImageUtils imgUtils = new ImageUtils<>();
-
 		curvePoints.add(new BezierPoint(ctrlPts[0].getX(), ctrlPts[0].getY(), getCurvature(ctrlPts)));
-		RGBvals.add(imgUtils.getPixels(frame.getImageStack(), (int) ctrlPts[0].getX(), (int) ctrlPts[0].getY()));
-		fillBezierPoints(curvePoints, ctrlPts, noCtrlPts, RECURSE_DEPTH, 0, 1, true);
+		fillBezierPoints(curvePoints, ctrlPts, noCtrlPts, RECURSE_DEPTH, 0, 1);
 		curvePoints.add(new BezierPoint(ctrlPts[noCtrlPts - 1].getX(), ctrlPts[noCtrlPts - 1].getY(),
 				getCurvature(reverse(ctrlPts))));
-		RGBvals.add(imgUtils.getPixels(frame.getImageStack(), (int) ctrlPts[noCtrlPts - 1].getX(),
-				(int) ctrlPts[noCtrlPts - 1].getY()));
 
 		// Generates the hodograph, or first derivative curve for the Bezier Curve. (see
 		// section 2.7 of Sederberg's CAGD text)
@@ -264,11 +279,13 @@ public class BezierCurve extends Curve {
 		}
 		hodographPoints.add(new BezierPoint(hodographCtrlPts[0].getX(), hodographCtrlPts[0].getY(),
 				getCurvature(hodographCtrlPts)));
-		fillBezierPoints(hodographPoints, hodographCtrlPts, noCtrlPts - 1, RECURSE_DEPTH, 0, 1, false);
+		fillBezierPoints(hodographPoints, hodographCtrlPts, noCtrlPts - 1, RECURSE_DEPTH, 0, 1);
 		hodographPoints.add(new BezierPoint(hodographCtrlPts[hodographCtrlPts.length - 1].getX(),
 				hodographCtrlPts[hodographCtrlPts.length - 1].getY(), getCurvature(reverse(hodographCtrlPts))));
 		this.bounds = generateOffsetBounds(bounds, THRESHOLD_RADIUS);
 		this.dataFittingBounds = generateOffsetBounds(dataFittingBounds, dataRadius);
+		incrementVersion();
+		PerformanceMetrics.stop(Stage.FILL_POINTS, start, NO_CURVE_POINTS);
 	}
 
 	protected void generateRightOffsetCurve(List<Point2D> bounds, int radius) {
@@ -381,7 +398,7 @@ public class BezierCurve extends Curve {
 	}
 
 	private void fillBezierPoints(ArrayList<BezierPoint> curvePoints, Point2D[] controlPoints, int noCtrlPts, int depth,
-			double t0, double t2, boolean addRGB) {
+			double t0, double t2) {
 		if (depth == 0) {
 			return;
 		}
@@ -420,15 +437,10 @@ public class BezierCurve extends Curve {
 		// generate will be added to our
 		// list of curve points in order. points [0][noCtrlPts-1] is now the point at
 		// t=t1. We find the curvature at this point
-		fillBezierPoints(curvePoints, firstHalfPoints, noCtrlPts, depth - 1, t0, t1, addRGB);
+		fillBezierPoints(curvePoints, firstHalfPoints, noCtrlPts, depth - 1, t0, t1);
 		curvePoints.add(new BezierPoint(points[0][noCtrlPts - 1].getX(), points[0][noCtrlPts - 1].getY(),
 				getCurvature(secondHalfPoints)));
-		if (addRGB) {
-			ImageUtils imgUtils = new ImageUtils<>();
-			RGBvals.add(imgUtils.getPixels(frame.getImageStack(), (int) points[0][noCtrlPts - 1].getX(),
-					(int) points[0][noCtrlPts - 1].getY()));
-		}
-		fillBezierPoints(curvePoints, secondHalfPoints, noCtrlPts, depth - 1, t1, t2, addRGB);
+		fillBezierPoints(curvePoints, secondHalfPoints, noCtrlPts, depth - 1, t1, t2);
 	}
 
 	/**
@@ -507,7 +519,7 @@ public class BezierCurve extends Curve {
 			if (scaleCurveStrokes) {
 				g.setStroke(new BasicStroke((int) (frame.getStrokeThickness(scale) * 0.75)));
 				g.setColor(Curve.THRESHOLD_DATA_CONTOUR_COLOR);
-				g.drawPolygon(scaledBounds);
+				g.drawPolygon(scaledDataBounds);
 			}
 		}
 
@@ -617,62 +629,60 @@ public class BezierCurve extends Curve {
 				&& curveBounds.getWidth() >= THRESHOLD_RADIUS) {
 			return false;
 		}
-		scaledBounds.reset();
-		for (Point2D v : bounds) {
-			scaledBounds.addPoint((int) (v.getX() * scale), (int) (v.getY() * scale));
+		return getBoundsPath().contains(p.getX() / scale, p.getY() / scale);
+	}
+
+	// The selection band as a shape in image coordinates. It is only rebuilt when the
+	// curve has changed, rather than on every hit test.
+	private Path2D getBoundsPath() {
+		if (boundsPath == null || boundsPathVersion != version) {
+			boundsPath = new Path2D.Double(Path2D.WIND_EVEN_ODD, bounds.size());
+			for (Point2D v : bounds) {
+				if (boundsPath.getCurrentPoint() == null) {
+					boundsPath.moveTo(v.getX(), v.getY());
+				} else {
+					boundsPath.lineTo(v.getX(), v.getY());
+				}
+			}
+			boundsPath.closePath();
+			boundsPathVersion = version;
 		}
-		return scaledBounds.contains(p);
+		return boundsPath;
 	}
 
-	/**
-	 * Gets the Average Curvature along the Bezier Curve
-	 *
-	 * @return The Average Curvature along the Bezier Curve
-	 */
 	@Override
-	public double getAverageCurvature() {
+	protected CurveMetrics computeMetrics() {
+		int n = curvePoints.size();
+		double[] arcLength = new double[n];
 		double total = 0;
-		for (BezierPoint point : curvePoints) {
+		double max = 0;
+		for (int i = 0; i < n; i++) {
+			BezierPoint point = curvePoints.get(i);
 			total += point.k;
+			max = Math.max(max, point.k);
+			if (i > 0) {
+				arcLength[i] = arcLength[i - 1] + curvePoints.get(i - 1).distance(point) * micronPixelFactor;
+			}
+		}
+		double mu = total / n;
+
+		double variance = 0;
+		for (BezierPoint point : curvePoints) {
+			variance += (point.k - mu) * (point.k - mu);
 		}
-		return total / curvePoints.size();
+		variance /= n - 1;
+		return new CurveMetrics(mu, Math.sqrt(variance), max, arcLength);
 	}
 
 	/**
-	 * Gets the approximate curve length of the Bezier Curve, approximated by the
-	 * sum of the line segments lengths between all the points in the curve
+	 * Gets the approximate curve length of the Bezier Curve up to a point
 	 *
 	 * @param segment
 	 *            The point you want to stop at. At most curves.size() - 1
 	 * @return The approximate curve length of the Bezier Curve
 	 */
 	private double getApproxCurveLength(int segment) {
-		double length = 0;
-		for (int i = 0; i < segment; i++) {
-			length += curvePoints.get(i).distance(curvePoints.get(i + 1));
-		}
-		return length * micronPixelFactor;
-	}
-
-	@Override
-	public double getApproxCurveLength() {
-		return getApproxCurveLength(curvePoints.size() - 1);
-	}
-
-	/**
-	 * Returns the Standard Deviation for all the obtained curvature values
-	 *
-	 * @return The Standard Deviation of all curvature values along the Bezier Curve
-	 */
-	@Override
-	public double getCurvatureStdDev() {
-		double variance = 0;
-		double mu = getAverageCurvature();
-		for (BezierPoint point : curvePoints) {
-			variance += (point.k - mu) * (point.k - mu);
-		}
-		variance /= curvePoints.size() - 1;
-		return Math.sqrt(variance);
+		return getMetrics().getArcLength(segment);
 	}
 
 	@Override
@@ -721,13 +731,13 @@ public class BezierCurve extends Curve {
 		for (int i = 0; i < curvePoints.size(); i++) {
 			// Displays curvature with respect to the x-coordinate
 			if (KappaMenuBar.distributionDisplay == 0) {
-				intensityData.add(new Point2D.Double(curvePoints.get(i).x, RGBvals.get(i)[0]));
+				intensityData.add(new Point2D.Double(curvePoints.get(i).x, getRGBvals().get(i)[0]));
 			} // Displays curvature with respect to the arc length
 			else if (KappaMenuBar.distributionDisplay == 1) {
-				intensityData.add(new Point2D.Double(getApproxCurveLength(i), RGBvals.get(i)[0]));
+				intensityData.add(new Point2D.Double(getApproxCurveLength(i), getRGBvals().get(i)[0]));
 			} // Displays curvature with respect to the point index
 			else {
-				intensityData.add(new Point2D.Double(i, RGBvals.get(i)[0]));
+				intensityData.add(new Point2D.Double(i, getRGBvals().get(i)[0]));
 			}
 		}
 		return intensityData;
@@ -739,13 +749,13 @@ public class BezierCurve extends Curve {
 		for (int i = 0; i < curvePoints.size(); i++) {
 			// Displays curvature with respect to the x-coordinate
 			if (KappaMenuBar.distributionDisplay == 0) {
-				intensityData.add(new Point2D.Double(curvePoints.get(i).x, RGBvals.get(i)[1]));
+				intensityData.add(new Point2D.Double(curvePoints.get(i).x, getRGBvals().get(i)[1]));
 			} // Displays curvature with respect to the arc length
 			else if (KappaMenuBar.distributionDisplay == 1) {
-				intensityData.add(new Point2D.Double(getApproxCurveLength(i), RGBvals.get(i)[1]));
+				intensityData.add(new Point2D.Double(getApproxCurveLength(i), getRGBvals().get(i)[1]));
 			} // Displays curvature with respect to the point index
 			else {
-				intensityData.add(new Point2D.Double(i, RGBvals.get(i)[1]));
+				intensityData.add(new Point2D.Double(i, getRGBvals().get(i)[1]));
 			}
 		}
 		return intensityData;
@@ -757,13 +767,13 @@ public class BezierCurve extends Curve {
 		for (int i = 0; i < curvePoints.size(); i++) {
 			// Displays curvature with respect to the x-coordinate
 			if (KappaMenuBar.distributionDisplay == 0) {
-				intensityData.add(new Point2D.Double(curvePoints.get(i).x, RGBvals.get(i)[2]));
+				intensityData.add(new Point2D.Double(curvePoints.get(i).x, getRGBvals().get(i)[2]));
 			} // Displays curvature with respect to the arc length
 			else if (KappaMenuBar.distributionDisplay == 1) {
-				intensityData.add(new Point2D.Double(getApproxCurveLength(i), RGBvals.get(i)[2]));
+				intensityData.add(new Point2D.Double(getApproxCurveLength(i), getRGBvals().get(i)[2]));
 			} // Displays curvature with respect to the point index
 			else {
-				intensityData.add(new Point2D.Double(i, RGBvals.get(i)[2]));
+				intensityData.add(new Point2D.Double(i, getRGBvals().get(i)[2]));
 			}
 		}
 		return intensityData;
@@ -799,12 +809,63 @@ public class BezierCurve extends Curve {
 
 	@Override
 	public void updateIntensities() {
-		RGBvals = new ArrayList<>();
-		int[] pixels;
+		RGBvals = sampleIntensities(curvePoints);
+
+		// The pixels were thresholded in the image as it was
+		thresholdedPixelsStale = true;
+		incrementVersion();
+	}
+
+	// The intensities at each point along the curve, sampled on first use after the
+	// curve has changed
+	private List<int[]> getRGBvals() {
+		if (RGBvals == null) {
+			RGBvals = sampleIntensities(curvePoints);
+		}
+		return RGBvals;
+	}
+
+	private List<int[]> sampleIntensities(List<BezierPoint> points) {
+		List<int[]> intensities = new ArrayList<>(points.size());
 		ImageUtils imgUtils = new ImageUtils<>();
-		for (Point2D p : curvePoints) {
-			pixels = imgUtils.getPixels(frame.getImageStack(), (int) p.getX(), (int) p.getY());
-			RGBvals.add(pixels);
+		for (Point2D p : points) {
+			intensities.add(imgUtils.getPixels(frame.getImageStack(), (int) p.getX(), (int) p.getY()));
+		}
+		return intensities;
+	}
+
+	@Override
+	public DerivedDataTask createDerivedDataTask() {
+		return new BezierDataTask();
+	}
+
+	private class BezierDataTask extends DerivedDataTask {
+
+		// Inputs, captured on the EDT
+		private final List<BezierPoint> points = curvePoints;
+		private final Rectangle2D box = (Rectangle2D) boundingBox.clone();
+		private final List<Point2D> region = dataFittingBounds;
+		private final int radius = dataRadius;
+		private final ThresholdParameters parameters = getThresholdParameters();
+		private final int width = frame.getCurrImage().getWidth();
+		private final int height = frame.getCurrImage().getHeight();
+
+		// Results
+		private List<Point2D> pixels;
+		private List<int[]> intensities;
+
+		@Override
+		public void run() {
+			pixels = findThresholdedPixels(box, region, radius, parameters, width, height);
+			intensities = sampleIntensities(points);
+		}
+
+		@Override
+		protected void apply() {
+			thresholdedPixels = pixels;
+			thresholdedPixelsParameters = parameters;
+			thresholdedPixelsStale = false;
+			RGBvals = intensities;
 		}
 	}
 
@@ -891,9 +952,19 @@ public class BezierCurve extends Curve {
 
 	@Override
 	public List<Point2D> getThresholdedPixels() {
+		if (isDerivedDataStale()) {
+			evaluateThresholdedPixels();
+		}
 		return thresholdedPixels;
 	}
 
+	@Override
+	public boolean isDerivedDataStale() {
+		// Pixels kept from an earlier visit to this frame may have been found with
+		// other threshold settings
+		return thresholdedPixelsStale || !getThresholdParameters().equals(thresholdedPixelsParameters);
+	}
+
 	@Override
 	public double getMaximum(double start, double end) {
 		double max = Double.MIN_VALUE;
@@ -27,9 +27,12 @@ package sc.fiji.kappa.curve;
 
 import java.awt.Graphics2D;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import sc.fiji.kappa.gui.KappaFrame;
 
@@ -38,38 +41,151 @@ public class BezierGroup extends ArrayList<Curve> {
 	private static final long serialVersionUID = 1L;
 	private int noSelected;
 	private int count;
+	private transient CurveIndex index = new CurveIndex();
+
+	// The indices of the selected curves, kept in step with their own flags so
+	// that the selection can be queried without going through all the curves
+	private BitSet selection = new BitSet();
+	private transient Curve[] selectedCurves;
+
+	// The population statistics shown in the info panel, brought up to date with
+	// the curves that changed when they are asked for. The mean point curvature
+	// of the selected curves is kept for the point it was asked for.
+	private transient PopulationStatistics statistics = new PopulationStatistics();
+	private transient double pointCurvature = Double.NaN;
+	private transient int pointCurvaturePoint;
+	private transient int pointCurvatureGeneration;
 
 	protected KappaFrame frame;
 
 	public BezierGroup(KappaFrame frame) {
 		super();
 		this.frame = frame;
-		noSelected = 0;
 		count = 0;
 	}
 
 	@Override
 	public boolean add(Curve curve) {
 		this.setAllUnselected();
-		noSelected = 1;
-		return super.add(curve);
+		super.add(curve);
+		adopt(curve);
+		setSelected(size() - 1, size() - 1, true);
+		return true;
 	}
 
 	public void addCurve(List<Point2D> defPoints, int t, int noCtrlPts, int curveType, boolean isOpen, int dataRadius) {
+		this.add(createCurve(defPoints, t, noCtrlPts, "CURVE " + ++count, curveType, isOpen, dataRadius));
+	}
+
+	/**
+	 * Adds a curve for each list of control points in one go. The curves only
+	 * depend on their own control points, so they are built in parallel, and are
+	 * then appended in order. As with {@link #addCurve}, the last curve is the
+	 * only one left selected. Their thresholded pixels are evaluated once they are
+	 * needed.
+	 *
+	 * @param defPoints
+	 *            The control points of each curve
+	 * @return The number of curves added
+	 */
+	public int addCurves(List<List<Point2D>> defPoints, int t, int curveType, boolean isOpen, int dataRadius) {
+		int first = count;
+		List<Curve> curves = IntStream.range(0, defPoints.size()).parallel()
+				.mapToObj(i -> createCurve(defPoints.get(i), t, defPoints.get(i).size(), "CURVE " + (first + i + 1),
+						curveType, isOpen, dataRadius))
+				.collect(Collectors.toList());
+		if (curves.isEmpty()) {
+			return 0;
+		}
 
+		this.setAllUnselected();
+		for (int i = 0; i < curves.size() - 1; i++) {
+			curves.get(i).setSelected(false);
+		}
+		count += curves.size();
+		super.addAll(curves);
+		for (Curve curve : curves) {
+			adopt(curve);
+		}
+		setSelected(size() - 1, size() - 1, true);
+		return curves.size();
+	}
+
+	private void adopt(Curve curve) {
+		curve.setGroup(this);
+		statistics.curveChanged(curve);
+	}
+
+	private void release(Curve curve) {
+		curve.setGroup(null);
+		curve.clearFrameCache();
+		statistics.curveRemoved(curve);
+	}
+
+	/**
+	 * Called by the curves of the group whenever they change.
+	 */
+	void curveChanged(Curve curve) {
+		statistics.curveChanged(curve);
+	}
+
+	private Curve createCurve(List<Point2D> defPoints, int t, int noCtrlPts, String name, int curveType,
+			boolean isOpen, int dataRadius) {
 		if (curveType == KappaFrame.BEZIER_CURVE) {
-			this.add(new BezierCurve(defPoints, t, noCtrlPts, "CURVE " + ++count, dataRadius, frame));
-		} else if (isOpen) {
-			this.add(new BSpline(defPoints, t, noCtrlPts, "CURVE " + ++count, true, dataRadius, frame));
-		} else {
-			this.add(new BSpline(defPoints, t, noCtrlPts, "CURVE " + ++count, false, dataRadius, frame));
+			return new BezierCurve(defPoints, t, noCtrlPts, name, dataRadius, frame);
 		}
+		return new BSpline(defPoints, t, noCtrlPts, name, isOpen, dataRadius, frame);
 	}
 
 	@Override
 	public Curve remove(int i) {
-		noSelected--;
-		return super.remove(i);
+		Curve curve = super.remove(i);
+		release(curve);
+
+		// Moves the selection of the following curves down by one
+		int length = selection.length();
+		if (i < length) {
+			BitSet following = selection.get(i + 1, Math.max(i + 1, length));
+			selection.clear(i, length);
+			for (int j = following.nextSetBit(0); j >= 0; j = following.nextSetBit(j + 1)) {
+				selection.set(i + j);
+			}
+		}
+		selectionChanged();
+		return curve;
+	}
+
+	/**
+	 * Removes all the selected curves in a single pass.
+	 *
+	 * @return The indices the removed curves had
+	 */
+	public BitSet removeSelected() {
+		BitSet removed = (BitSet) selection.clone();
+		int j = 0;
+		for (int i = 0; i < size(); i++) {
+			if (!removed.get(i)) {
+				super.set(j++, get(i));
+			} else {
+				release(get(i));
+			}
+		}
+		super.removeRange(j, size());
+		selection.clear();
+		selectionChanged();
+		return removed;
+	}
+
+	@Override
+	public void clear() {
+		for (Curve curve : this) {
+			curve.setGroup(null);
+			curve.clearFrameCache();
+		}
+		statistics.invalidate();
+		super.clear();
+		selection.clear();
+		selectionChanged();
 	}
 
 	public void draw(Graphics2D g, double scale, int currentPoint, boolean showBoundingBox, boolean scaleCurveStrokes,
@@ -79,23 +195,39 @@ public class BezierGroup extends ArrayList<Curve> {
 		}
 	}
 
+	/**
+	 * Draws the curves that can be seen in the visible region. Selected curves are
+	 * always drawn, as their tangents and control points may reach into it.
+	 *
+	 * @param visible
+	 *            The visible region, in image coordinates
+	 */
+	public void draw(Graphics2D g, double scale, Rectangle2D visible, int currentPoint, boolean showBoundingBox,
+			boolean scaleCurveStrokes, boolean showTangent, boolean showThresholdedRegion) {
+		for (Curve curve : this) {
+			if (curve.isSelected() || curve.intersects(visible)) {
+				curve.draw(scale, g, currentPoint, showBoundingBox, scaleCurveStrokes, showTangent,
+						showThresholdedRegion);
+			}
+		}
+	}
+
 	/**
 	 * Returns an array of selected Bezier Curves from the group. If none are
 	 * selected, this returns null
 	 *
 	 * @return The Bezier Curves that are selected in this group. Or null if none
-	 *         are selected
+	 *         are selected. The array is shared until the selection changes, so
+	 *         it must not be modified.
 	 */
 	public Curve[] getSelected() {
-		// If only one curve is selected, odds are that it's the last one. (in use)
-		// Hence it's a little more efficient to go down our list.
-		Curve[] selectedCurves = new Curve[noSelected];
-		int n = noSelected;
-		int j = 0;
-		for (int i = this.size() - 1; i >= 0 && n > 0; i--) {
-			if (this.get(i).isSelected()) {
+		// The array is kept until the selection changes, and lists the curves from
+		// the last one, as a single selected curve is usually the one just added.
+		if (selectedCurves == null) {
+			selectedCurves = new Curve[noSelected];
+			int j = 0;
+			for (int i = selection.length() - 1; i >= 0; i = selection.previousSetBit(i - 1)) {
 				selectedCurves[j++] = this.get(i);
-				n--;
 			}
 		}
 		return selectedCurves;
@@ -104,86 +236,138 @@ public class BezierGroup extends ArrayList<Curve> {
 	public void setSelected(int[] selectedIndices) {
 		setAllUnselected();
 		for (int i : selectedIndices) {
-			this.get(i).setSelected(true);
+			select(i, true);
+			selection.set(i);
 		}
-		noSelected = selectedIndices.length;
+		selectionChanged();
 	}
 
-	public double getAvgAverageCurvature(boolean selectedOnly) {
-		double total = 0;
-		for (Curve curve : this) {
-			if ((selectedOnly && curve.isSelected()) || !selectedOnly) {
-				total += curve.getAverageCurvature();
-			}
-		}
-		if (!selectedOnly) {
-			return total / this.size();
+	/**
+	 * Selects or unselects the curves from index0 to index1, both included.
+	 */
+	public void setSelected(int index0, int index1, boolean selected) {
+		for (int i = Math.min(index0, index1); i <= Math.max(index0, index1); i++) {
+			select(i, selected);
 		}
-		return total / this.noSelected;
+		selection.set(Math.min(index0, index1), Math.max(index0, index1) + 1, selected);
+		selectionChanged();
 	}
 
-	public double getAvgApproxCurveLength(boolean selectedOnly) {
-		double length = 0;
-		for (Curve curve : this) {
-			if ((selectedOnly && curve.isSelected()) || !selectedOnly) {
-				length += curve.getApproxCurveLength();
-			}
+	/**
+	 * Replaces the selection with the curves of a set of indices. Only the curves
+	 * whose state changes are visited.
+	 */
+	public void setSelection(BitSet selected) {
+		BitSet changed = (BitSet) selection.clone();
+		changed.xor(selected);
+		for (int i = changed.nextSetBit(0); i >= 0 && i < size(); i = changed.nextSetBit(i + 1)) {
+			select(i, selected.get(i));
 		}
-		if (!selectedOnly) {
-			return length / this.size();
+		selection = (BitSet) selected.clone();
+		if (selection.length() > size()) {
+			selection.clear(size(), selection.length());
 		}
-		return length / this.noSelected;
+		selectionChanged();
+	}
+
+	public boolean isSelected(int i) {
+		return selection.get(i);
+	}
+
+	/**
+	 * Returns a copy of the indices of the selected curves.
+	 */
+	public BitSet getSelection() {
+		return (BitSet) selection.clone();
+	}
+
+	/**
+	 * @return The lowest index of a selected curve, or -1 if none is selected
+	 */
+	public int getMinSelectedIndex() {
+		return selection.nextSetBit(0);
+	}
+
+	/**
+	 * @return The highest index of a selected curve, or -1 if none is selected
+	 */
+	public int getMaxSelectedIndex() {
+		return selection.length() - 1;
+	}
+
+	private void select(int i, boolean selected) {
+		this.get(i).setSelected(selected);
+		statistics.selectionChanged(this.get(i), selected);
+	}
+
+	private void selectionChanged() {
+		noSelected = selection.cardinality();
+		selectedCurves = null;
+		pointCurvature = Double.NaN;
+	}
+
+	private PopulationStatistics getStatistics() {
+		statistics.update(this);
+		return statistics;
+	}
+
+	public double getAvgAverageCurvature(boolean selectedOnly) {
+		return getStatistics().getCurvatures(selectedOnly).getMean();
+	}
+
+	public double getAvgApproxCurveLength(boolean selectedOnly) {
+		return getStatistics().getLengths(selectedOnly).getMean();
 	}
 
 	public double getAvgPointCurvature(int currentPoint, boolean selectedOnly) {
-		double total = 0;
-		for (Curve curve : this) {
-			if ((selectedOnly && curve.isSelected()) || !selectedOnly) {
+		int generation = getStatistics().getGeneration();
+		if (!selectedOnly) {
+			double total = 0;
+			for (Curve curve : this) {
 				total += curve.getPointCurvature(currentPoint);
 			}
-		}
-		if (!selectedOnly) {
 			return total / this.size();
 		}
-		return total / this.noSelected;
+		if (Double.isNaN(pointCurvature) || currentPoint != pointCurvaturePoint
+				|| generation != pointCurvatureGeneration) {
+			double total = 0;
+			for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1)) {
+				total += this.get(i).getPointCurvature(currentPoint);
+			}
+			pointCurvature = total / this.noSelected;
+			pointCurvaturePoint = currentPoint;
+			pointCurvatureGeneration = generation;
+		}
+		return pointCurvature;
 	}
 
 	public double getStdDevOfAvgCurvature(boolean selectedOnly) {
-		double variance = 0;
-		double mu = this.getAvgAverageCurvature(selectedOnly);
-		for (Curve curve : this) {
-			variance += (curve.getAverageCurvature() - mu) * (curve.getAverageCurvature() - mu);
-		}
-		if (selectedOnly) {
-			variance /= this.size() - 1;
-		} else {
-			variance /= noSelected - 1;
-		}
-		return Math.sqrt(variance);
+		return getStatistics().getCurvatures(selectedOnly).getStdDev();
 	}
 
 	public void setSelected(Curve curve) {
-		curve.setSelected(true);
-		noSelected++;
+		int i = indexOf(curve);
+		setSelected(i, i, true);
 	}
 
 	public void setUnselected(Curve curve) {
-		curve.setSelected(false);
-		noSelected--;
+		int i = indexOf(curve);
+		setSelected(i, i, false);
 	}
 
 	public void setAllUnselected() {
-		for (Curve curve : this) {
-			curve.setSelected(false);
+		// Only the selected curves need to be visited
+		for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1)) {
+			select(i, false);
 		}
-		noSelected = 0;
+		selection.clear();
+		selectionChanged();
 	}
 
 	public void setAllSelected() {
-		for (Curve curve : this) {
-			curve.setSelected(true);
+		if (!isEmpty()) {
+			setSelected(0, size() - 1, true);
 		}
-		noSelected = this.size();
 	}
 
 	public void updateIntensities() {
@@ -198,12 +382,27 @@ public class BezierGroup extends ArrayList<Curve> {
 		}
 	}
 
+	public void clearFrameCaches() {
+		for (Curve curve : this) {
+			curve.clearFrameCache();
+		}
+	}
+
 	public void recalculateCurvature(int t) {
 		for (Curve curve : this) {
 			curve.recalculateCurvature(t);
 		}
 	}
 
+	/**
+	 * Returns the spatial index of the curves, brought up to date with any curves
+	 * that were added, removed or changed since the last call.
+	 */
+	public CurveIndex getIndex() {
+		index.update(this);
+		return index;
+	}
+
 	public int getNoSelected() {
 		return noSelected;
 	}
@@ -239,7 +438,15 @@ public class BezierGroup extends ArrayList<Curve> {
 				}
 			}
 		}
+		// The rebuilt curves keep the selection of the ones they replace
+		BitSet oldSelection = getSelection();
 		this.clear();
 		this.addAll(newCurves);
+		for (int i = 0; i < size(); i++) {
+			this.get(i).setGroup(this);
+			this.get(i).setSelected(oldSelection.get(i));
+		}
+		selection = oldSelection;
+		selectionChanged();
 	}
 }
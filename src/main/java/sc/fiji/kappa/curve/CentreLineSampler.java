@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import java.util.List;
+
+import sc.fiji.kappa.metrics.PerformanceMetrics;
+import sc.fiji.kappa.metrics.Stage;
+
+/**
+ * Reduces the data points around a curve to one point per intensity profile
+ * across it. The profiles are sampled along the normals of the curve, at least
+ * a pixel apart, out to the data radius on either side. Each profile collapses to
+ * the weighted centroid of its samples, which carries their summed weight. A
+ * filament thus gives one data point per pixel of its length rather than one
+ * per pixel of its area, and each lies on its centre-line with sub-pixel
+ * precision.
+ */
+public class CentreLineSampler {
+
+	// The smallest distance between the profiles along the curve, and the
+	// distance between the samples of a profile, in pixels
+	public static final double PROFILE_SPACING = 1;
+	public static final double SAMPLE_SPACING = 0.5;
+
+	private final float[] pixelWeights;
+	private final int width;
+	private final int height;
+
+	/**
+	 * @param pixelWeights
+	 *            The weight of every pixel of the frame, row by row, and 0 for the
+	 *            pixels that are not data points
+	 */
+	public CentreLineSampler(float[] pixelWeights, int width, int height) {
+		this.pixelWeights = pixelWeights;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Samples the profiles across a curve and collapses each to a data point.
+	 *
+	 * @param radius
+	 *            The data radius, the length of the profiles on either side of the
+	 *            curve
+	 * @return The data points with their weights, one for each profile that
+	 *         crosses any data
+	 */
+	public DataPoints getDataPoints(Curve curve, double radius) {
+		long start = PerformanceMetrics.start();
+		List<BezierPoint> points = curve.getPoints();
+		DataPoints dataPoints = new DataPoints(0);
+		int noSamples = (int) Math.floor(radius / SAMPLE_SPACING);
+		double distance = PROFILE_SPACING;
+		for (int i = 0; i < points.size(); i++) {
+			BezierPoint p = points.get(i);
+			if (i > 0) {
+				distance += p.distance(points.get(i - 1));
+			}
+			if (distance < PROFILE_SPACING) {
+				continue;
+			}
+
+			// The normal is taken from the neighbouring points of the curve
+			BezierPoint previous = points.get(Math.max(0, i - 1));
+			BezierPoint next = points.get(Math.min(points.size() - 1, i + 1));
+			double tx = next.getX() - previous.getX();
+			double ty = next.getY() - previous.getY();
+			double norm = Math.sqrt(tx * tx + ty * ty);
+			if (norm == 0) {
+				continue;
+			}
+			double nx = -ty / norm;
+			double ny = tx / norm;
+
+			double sum = 0, sumX = 0, sumY = 0;
+			for (int k = -noSamples; k <= noSamples; k++) {
+				double x = p.getX() + k * SAMPLE_SPACING * nx;
+				double y = p.getY() + k * SAMPLE_SPACING * ny;
+				double weight = getWeight(x, y);
+				if (weight > 0) {
+					sum += weight;
+					sumX += weight * x;
+					sumY += weight * y;
+				}
+			}
+			if (sum > 0) {
+				// The weight is scaled to the area the profile stands for, so that the data
+				// weigh about as much as the pixels they replace
+				dataPoints.add(sumX / sum, sumY / sum, sum * SAMPLE_SPACING * distance);
+			}
+			distance = 0;
+		}
+		PerformanceMetrics.stop(Stage.CENTRE_LINE, start, dataPoints.size());
+		return dataPoints;
+	}
+
+	// The weight at a point between pixels, interpolated bilinearly
+	private double getWeight(double x, double y) {
+		int x0 = (int) Math.floor(x);
+		int y0 = (int) Math.floor(y);
+		double fx = x - x0;
+		double fy = y - y0;
+		return (1 - fx) * (1 - fy) * getPixelWeight(x0, y0) + fx * (1 - fy) * getPixelWeight(x0 + 1, y0)
+				+ (1 - fx) * fy * getPixelWeight(x0, y0 + 1) + fx * fy * getPixelWeight(x0 + 1, y0 + 1);
+	}
+
+	private double getPixelWeight(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return 0;
+		}
+		return pixelWeights[y * width + x];
+	}
+}
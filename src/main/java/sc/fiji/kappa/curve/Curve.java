@@ -31,12 +31,15 @@ import java.awt.Graphics2D;
 import java.awt.Polygon;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import sc.fiji.kappa.gui.KappaFrame;
+import sc.fiji.kappa.gui.KappaMenuBar;
+import sc.fiji.kappa.io.CsvWriter;
+import sc.fiji.kappa.io.CurveSamples;
 
 public abstract class Curve {
 
@@ -73,7 +76,7 @@ public abstract class Curve {
 	protected int hoveredCtrlPt;
 	protected int dataRadius;
 	protected boolean selected;
-	protected BArrayList keyframes;
+	protected KeyframeStore keyframes;
 	protected Rectangle2D boundingBox;
 	protected List<Point2D> bounds;
 	protected Polygon scaledBounds;
@@ -82,6 +85,49 @@ public abstract class Curve {
 	protected List<Point2D> thresholdedPixels;
 	protected int t;
 
+	// Set when the geometry changed since the thresholded pixels were evaluated.
+	// They are then evaluated again on first use.
+	protected boolean thresholdedPixelsStale = true;
+
+	// Incremented whenever the geometry or the sampled intensities of the curve
+	// change, so that anything derived from the curve can tell when it is out of
+	// date.
+	protected int version;
+
+	// The group the curve is in, told whenever the version changes
+	private transient BezierGroup group;
+
+	// The distributions shown in the info panel charts, indexed by the PROFILE_
+	// constants. They are dropped when the curve, the x-axis mode or the um/pixel
+	// factor changes.
+	public static final int PROFILE_CURVATURE = 0;
+	public static final int PROFILE_RED = 1;
+	public static final int PROFILE_GREEN = 2;
+	public static final int PROFILE_BLUE = 3;
+	private final Profile[] profiles = new Profile[4];
+	private int profilesVersion = -1;
+	private int profilesDisplay;
+	private double profilesMicronPixelFactor;
+
+	// The length and curvature statistics, for the version and um/pixel factor they
+	// were computed at
+	private CurveMetrics metrics;
+	private int metricsVersion;
+	private double metricsMicronPixelFactor;
+
+	// The control points interpolated between keyframes, x and y interleaved,
+	// reused on every frame change
+	private double[] interpolatedCtrlPts;
+
+	// The geometry of the frames shown most recently is kept in the FrameCache, so
+	// that going back to one of them, or looping over a range of frames, does not
+	// compute it again. The cache is shared by all the curves, and holds at most
+	// this many sampled points.
+	public static final int DEFAULT_FRAME_CACHE_BUDGET = FrameCache.DEFAULT_BUDGET;
+
+	// The frame the current geometry was computed for
+	private int geometryFrame;
+
 	// um/pixel conversion factor
 	protected static double micronPixelFactor = DEFAULT_MICRON_PIXEL_FACTOR;
 
@@ -98,11 +144,12 @@ public abstract class Curve {
 		this.selectedCtrlPtIndex = -1;
 		this.noCtrlPts = noCtrlPts;
 		this.hoveredCtrlPt = -1;
-		setKeyframes(new BArrayList());
-		getKeyframes().add(new BControlPoints(this.ctrlPts, t));
+		setKeyframes(new KeyframeStore());
+		addKeyframe(this.ctrlPts, t);
 		this.boundingBox = getKeyframes().getBounds(t);
 		this.dataRadius = dataRadius;
 		this.t = t;
+		this.geometryFrame = t;
 
 		this.bounds = new ArrayList<>();
 		this.scaledBounds = new Polygon();
@@ -111,158 +158,127 @@ public abstract class Curve {
 		this.thresholdedPixels = new ArrayList<>();
 	}
 
-	public class BArrayList extends ArrayList<BControlPoints> {
-
-		private static final long serialVersionUID = 1L;
-
-		@Override
-		public boolean add(BControlPoints element) {
-			// Adds in sorted order
-			int index = Collections.binarySearch(this, element.t);
-			if (index < 0) {
-				this.add(-1 * (index + 1), element);
-				return true;
-			}
-
-			// If an element at the same t already exists, we just exchange it with
-			// the new
-			// one.
-			this.set(index, element);
-			return true;
-		}
-
-		public BControlPoints getInclusivePrev(int t) {
-			// Finds the previous defined keyframe. If no previous defined keyframe
-			// exists,
-			// it'll return the first one.
-			// Returns the current keyframe if it is one.
-			int index = Collections.binarySearch(this, t);
-			if (index < 0) {
-				index = -1 * (index + 1);
-				if (index == 0) {
-					return this.get(index);
-				}
-				return this.get(index - 1);
-			}
-			else {
-				return this.get(index);
+	/**
+	 * Translates the curve points with respect to the previous and subsequent
+	 * keyframes
+	 *
+	 * @param t The layer we are currently at
+	 */
+	public void translateCurve(int t) {
+		// Keeps the geometry of the frame we are leaving, and reuses the geometry of
+		// the new frame if it was shown before with the same keyframes and settings
+		if (FrameCache.getBudget() > 0) {
+			FrameGeometry current = saveFrameGeometry();
+			current.ctrlPts = new double[2 * ctrlPts.size()];
+			for (int i = 0; i < ctrlPts.size(); i++) {
+				current.ctrlPts[2 * i] = ctrlPts.get(i).getX();
+				current.ctrlPts[2 * i + 1] = ctrlPts.get(i).getY();
 			}
+			current.boundingBox = boundingBox;
+			current.bounds = bounds;
+			current.dataFittingBounds = dataFittingBounds;
+			FrameCache.put(this, new FrameKey(geometryFrame), current, getNoPoints());
 		}
-
-		public BControlPoints getInclusiveNext(int t) {
-			// Finds the next defined keyframe. Returns the current keyframe if it is
-			// one.
-			int index = Collections.binarySearch(this, t);
-			if (index < 0) {
-				index = -1 * (index + 1);
-				if (index == this.size()) {
-					return this.get(index - 1);
-				}
-				return this.get(index);
-			}
-			else {
-				return this.get(index);
+		geometryFrame = t;
+		FrameGeometry cached = FrameCache.get(this, new FrameKey(t));
+		if (cached != null) {
+			int n = Math.min(ctrlPts.size(), cached.ctrlPts.length / 2);
+			for (int i = 0; i < n; i++) {
+				ctrlPts.get(i).setLocation(cached.ctrlPts[2 * i], cached.ctrlPts[2 * i + 1]);
 			}
+			this.boundingBox = cached.boundingBox;
+			this.bounds = cached.bounds;
+			this.dataFittingBounds = cached.dataFittingBounds;
+			restoreFrameGeometry(cached);
+			incrementVersion();
+			return;
 		}
 
-		/**
-		 * Gets the Bounds for a certain time t by translating keyframe layers
-		 *
-		 * @param t The time t we are interested in
-		 * @return The bounds at that time t.
-		 */
-		public Rectangle2D.Double getBounds(int t) {
-			// If the previous value is the same as the next value, then we're at a
-			// keyframe.
-			// Then we return these bounds, with the thresholding
-			BControlPoints prev = getKeyframes().getInclusivePrev(t);
-			BControlPoints next = getKeyframes().getInclusiveNext(t);
-			if (prev.t == next.t) {
-				return new Rectangle2D.Double(prev.minX, prev.minY, prev.maxX - prev.minX, prev.maxY -
-					prev.minY);
-			}
-
-			// Our scale factor is t1-t0/(t2 - t0), where t1 = t, and t0 and t2 are
-			// the
-			// preceding and succeeding keyframe times
-			double scaleFactor = (t - prev.t) / ((next.t - prev.t) * 1.0);
-			return new Rectangle2D.Double(prev.minX + (next.minX - prev.minX) * scaleFactor, prev.minY +
-				(next.minY - prev.minY) * scaleFactor, scaleFactor * (next.maxX - next.minX) - (prev.maxX -
-					prev.minX) * (scaleFactor - 1), scaleFactor * (next.maxY - next.minY) - (prev.maxY -
-						prev.minY) * (scaleFactor - 1));
+		// Interpolates the control points from the previous and subsequent keyframes.
+		// If this is a keyframe, (or any region past or before a defined keyframe),
+		// these are the keyframe control points. The keyframes hold copies of the
+		// coordinates, so the control points can be moved in place.
+		interpolatedCtrlPts = getKeyframes().interpolate(t, interpolatedCtrlPts);
+		int n = Math.min(noCtrlPts, getKeyframes().getNoPoints(getKeyframes().indexAtOrBefore(t)));
+		for (int i = 0; i < n; i++) {
+			ctrlPts.get(i).setLocation(interpolatedCtrlPts[2 * i], interpolatedCtrlPts[2 * i + 1]);
 		}
+		fillPoints(ctrlPts, t);
+		this.boundingBox = getKeyframes().getBounds(t);
 	}
 
-	// We use this class to keep track of sets of points that define keyframes
-	public class BControlPoints implements Comparable<Integer> {
+	/**
+	 * Identifies the geometry of the curve at a frame by the keyframes and the
+	 * um/pixel factor it was computed with
+	 */
+	private final class FrameKey {
 
-		public Point2D[] defPoints;
-		public double minX, maxX, minY, maxY;
-		public int t;
+		private final int t;
+		private final int keyframesVersion = getKeyframes().getVersion();
+		private final double factor = micronPixelFactor;
 
-		public BControlPoints(List<Point2D> ctrlPoints, int t) {
-			this.defPoints = new Point2D[noCtrlPts];
-			for (int i = 0; i < noCtrlPts; i++) {
-				defPoints[i] = ctrlPoints.get(i);
-			}
+		FrameKey(int t) {
 			this.t = t;
+		}
 
-			minX = maxX = defPoints[0].getX();
-			minY = maxY = defPoints[0].getY();
-			for (int i = 1; i < defPoints.length; i++) {
-				if (defPoints[i].getX() < minX) {
-					minX = defPoints[i].getX();
-				}
-				else if (defPoints[i].getX() > maxX) {
-					maxX = defPoints[i].getX();
-				}
-				if (defPoints[i].getY() < minY) {
-					minY = defPoints[i].getY();
-				}
-				else if (defPoints[i].getY() > maxY) {
-					maxY = defPoints[i].getY();
-				}
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof FrameKey)) {
+				return false;
 			}
+			FrameKey k = (FrameKey) o;
+			return t == k.t && keyframesVersion == k.keyframesVersion && factor == k.factor;
 		}
 
 		@Override
-		public int compareTo(Integer t) {
-			return this.t - t;
+		public int hashCode() {
+			return t * 31 + keyframesVersion;
 		}
 	}
 
 	/**
-	 * Translates the curve points with respect to the previous and subsequent
-	 * keyframes
-	 *
-	 * @param t The layer we are currently at
+	 * The geometry of a curve at one frame. Subclasses extend it with their own
+	 * sampled points, which are never modified in place once computed, so they can
+	 * be shared with the curve.
 	 */
-	public void translateCurve(int t) {
-		// Obtains the previous and subsequent keyframes for the Bezier Curve
-		BControlPoints prev = getKeyframes().getInclusivePrev(t);
-		BControlPoints next = getKeyframes().getInclusiveNext(t);
+	protected static class FrameGeometry {
 
-		// If this is a keyframe, (or any region past or before a defined keyframe),
-		// this will set the control points to
-		// the keyframe control points.
-		if (prev.t == next.t) {
-			for (int i = 0; i < noCtrlPts; i++) {
-				ctrlPts.set(i, new Point2D.Double(prev.defPoints[i].getX(), prev.defPoints[i].getY()));
-			}
-			fillPoints(ctrlPts, t);
-			return;
-		}
+		private double[] ctrlPts;
+		private Rectangle2D boundingBox;
+		private List<Point2D> bounds;
+		private List<Point2D> dataFittingBounds;
+	}
 
-		// Our scale factor is t1-t0/(t2 - t0), where t1 = t, and t0 and t2 are the
-		// preceding and succeeding keyframe times
-		double scaleFactor = (t - prev.t) / ((next.t - prev.t) * 1.0);
-		for (int i = 0; i < noCtrlPts; i++) {
-			ctrlPts.set(i, new Point2D.Double(prev.defPoints[i].getX() + ((next.defPoints[i].getX() -
-				prev.defPoints[i].getX()) * scaleFactor), prev.defPoints[i].getY() + ((next.defPoints[i]
-					.getY() - prev.defPoints[i].getY()) * scaleFactor)));
-		}
-		fillPoints(ctrlPts, t);
-		this.boundingBox = getKeyframes().getBounds(t);
+	/**
+	 * @return The current sampled geometry of the curve, along with its intensities
+	 *         and thresholded pixels if they have been found. Nothing in it may
+	 *         be changed afterwards by the curve.
+	 */
+	protected abstract FrameGeometry saveFrameGeometry();
+
+	/**
+	 * Puts back geometry from {@link #saveFrameGeometry()}.
+	 */
+	protected abstract void restoreFrameGeometry(FrameGeometry geometry);
+
+	/**
+	 * Forgets the geometry kept for the frames shown before, for instance when the
+	 * image they were sampled from is replaced.
+	 */
+	public void clearFrameCache() {
+		FrameCache.clear(this);
+	}
+
+	/**
+	 * Sets the number of sampled points whose geometry is kept over all the
+	 * curves, whatever frames they are at. 0 turns the cache off.
+	 */
+	public static void setFrameCacheBudget(int noPoints) {
+		FrameCache.setBudget(noPoints);
+	}
+
+	public static int getFrameCacheBudget() {
+		return FrameCache.getBudget();
 	}
 
 	public void addKeyFrame(Point2D newCtrlPt, int t) {
@@ -271,7 +287,7 @@ public abstract class Curve {
 			return;
 		}
 		ctrlPts.set(selectedCtrlPtIndex, newCtrlPt);
-		getKeyframes().add(new BControlPoints(ctrlPts, t));
+		addKeyframe(ctrlPts, t);
 		fillPoints(ctrlPts, t);
 		boundingBox = getKeyframes().getBounds(t);
 
@@ -281,16 +297,31 @@ public abstract class Curve {
 	}
 
 	public void addKeyframe(List<Point2D> newCtrlPts, int t) {
-		getKeyframes().add(new BControlPoints(ctrlPts, t));
+		getKeyframes().add(newCtrlPts, noCtrlPts, t);
 	}
 
-	public int[] getKeyframeLayers() {
-		int[] keyframeLayers = new int[getKeyframes().size()];
-		int i = 0;
-		for (BControlPoints p : getKeyframes()) {
-			keyframeLayers[i++] = p.t;
+	/**
+	 * Replaces all the keyframes of the curve. The curve is expected to already be
+	 * at its position for frame t, so its geometry is not computed again.
+	 *
+	 * @param keyframePoints
+	 *            The control points of each keyframe
+	 * @param frames
+	 *            The frame of each keyframe
+	 * @param t
+	 *            The frame the curve is at
+	 */
+	public void replaceKeyframes(List<List<Point2D>> keyframePoints, int[] frames, int t) {
+		KeyframeStore newKeyframes = new KeyframeStore();
+		setKeyframes(newKeyframes);
+		for (int k = 0; k < frames.length; k++) {
+			newKeyframes.add(keyframePoints.get(k), noCtrlPts, frames[k]);
 		}
-		return keyframeLayers;
+		this.boundingBox = newKeyframes.getBounds(t);
+	}
+
+	public int[] getKeyframeLayers() {
+		return getKeyframes().getFrames();
 	}
 
 	public int controlPointIndex(Point2D p, int t, double scale, boolean clicked) {
@@ -354,14 +385,8 @@ public abstract class Curve {
 
 	public abstract boolean isPointOnCurve(Point2D p, int t, double scale);
 
-	public abstract double getAverageCurvature();
-
-	public abstract double getApproxCurveLength();
-
 	public abstract double getPointCurvature(int n);
 
-	public abstract double getCurvatureStdDev();
-
 	public abstract List<Point2D> getIntensityDataRed();
 
 	public abstract List<Point2D> getIntensityDataGreen();
@@ -374,6 +399,12 @@ public abstract class Curve {
 
 	public abstract List<BezierPoint> getPoints();
 
+	/**
+	 * @return The intensities at each of the points from getPoints(), sampled
+	 *         from the image if they are not known yet
+	 */
+	public abstract List<int[]> getIntensities();
+
 	public abstract List<BezierPoint> getDigitizedPoints();
 
 	public abstract Point2D.Double getPoint(int n);
@@ -386,6 +417,50 @@ public abstract class Curve {
 
 	public abstract void evaluateThresholdedPixels();
 
+	/**
+	 * Captures what the thresholded pixels and the intensities of the curve depend
+	 * on, so that they can be computed away from the EDT. Must be called on the EDT.
+	 *
+	 * @return A task that computes the data when run
+	 */
+	public abstract DerivedDataTask createDerivedDataTask();
+
+	/**
+	 * @return Whether the thresholded pixels no longer match the curve or the
+	 *         threshold settings, and should be computed again
+	 */
+	public abstract boolean isDerivedDataStale();
+
+	/**
+	 * Computes the thresholded pixels and intensities of a curve from a snapshot of
+	 * its geometry. {@link #run()} may be called on any thread, {@link #install()}
+	 * then has to be called on the EDT.
+	 */
+	public abstract class DerivedDataTask implements Runnable {
+
+		private final int version = Curve.this.version;
+
+		/**
+		 * Applies the computed data to the curve, unless the curve has changed since
+		 * the task was created.
+		 *
+		 * @return true if the data was applied, false if it was out of date
+		 */
+		public boolean install() {
+			if (version != Curve.this.version) {
+				return false;
+			}
+			apply();
+			return true;
+		}
+
+		protected abstract void apply();
+	}
+
+	protected ThresholdParameters getThresholdParameters() {
+		return frame.getThresholdParameters();
+	}
+
 	public abstract void updateIntensities();
 
 	public abstract List<Point2D> getThresholdedPixels();
@@ -396,8 +471,63 @@ public abstract class Curve {
 
 	public abstract int getSign(int footpointIndex);
 
-	public abstract void printValues(PrintWriter out, double[][] averaged,
-		boolean exportAllDataPoints);
+	/**
+	 * Writes the CSV rows exported for the curve.
+	 *
+	 * @param exportAllDataPoints
+	 *            Whether to write a row for every point along the curve, rather
+	 *            than averages
+	 */
+	public abstract void writeValues(CsvWriter out, boolean exportAllDataPoints) throws IOException;
+
+	/**
+	 * Adds the sample points of the curve to a set of exported samples, leaving
+	 * out the same points as the CSV export of all data points: the last point of
+	 * each Bezier Curve, which is the first point of the next one in a B-Spline.
+	 */
+	public void addSamples(CurveSamples samples) {
+		List<BezierPoint> points = getPoints();
+		List<int[]> intensities = getIntensities();
+		CurveMetrics m = getMetrics();
+		for (int i = 0; i < points.size(); i++) {
+			if ((i + 1) % BezierCurve.NO_CURVE_POINTS == 0) {
+				continue;
+			}
+			BezierPoint p = points.get(i);
+			int[] rgb = intensities.get(i);
+			samples.add(p.x, p.y, p.sign * p.k, rgb[0], rgb[1], rgb[2], m.getArcLength(i));
+		}
+	}
+
+	/**
+	 * Adds samples at a fixed arc-length spacing along the curve, starting at its
+	 * first point. The position, curvature and intensities are interpolated
+	 * linearly between the sample points on either side.
+	 *
+	 * @param spacing
+	 *            The arc length between the samples, in um
+	 */
+	public void addResampledSamples(CurveSamples samples, double spacing) {
+		if (!(spacing > 0)) {
+			throw new IllegalArgumentException("The spacing must be positive");
+		}
+		List<BezierPoint> points = getPoints();
+		List<int[]> intensities = getIntensities();
+		CurveMetrics m = getMetrics();
+		int last = points.size() - 1;
+		for (int j = 0; j * spacing <= m.getLength(); j++) {
+			double s = j * spacing;
+			double index = m.getIndexAtArcLength(s);
+			int i = Math.min((int) index, last);
+			int next = Math.min(i + 1, last);
+			double f = index - i;
+
+			BezierPoint p = points.get(i), q = points.get(next);
+			int[] a = intensities.get(i), b = intensities.get(next);
+			samples.add(p.x + f * (q.x - p.x), p.y + f * (q.y - p.y), p.sign * p.k + f * (q.sign * q.k - p.sign
+				* p.k), a[0] + f * (b[0] - a[0]), a[1] + f * (b[1] - a[1]), a[2] + f * (b[2] - a[2]), s);
+		}
+	}
 
 	public abstract double getMaximum(double start, double end);
 
@@ -405,6 +535,13 @@ public abstract class Curve {
 		return name;
 	}
 
+	/**
+	 * @return The frame the current geometry of the curve was computed for
+	 */
+	public int getCurrentFrame() {
+		return geometryFrame;
+	}
+
 	public void resetControlPointSelection() {
 		selectedCtrlPtIndex = -1;
 	}
@@ -417,6 +554,29 @@ public abstract class Curve {
 		return micronPixelFactor;
 	}
 
+	/**
+	 * Checks whether the curve, its threshold region or its control points can
+	 * reach into a rectangle. Bezier curves and B-Splines lie within the convex
+	 * hull of their control points, so the bounds of the control points are a safe
+	 * test.
+	 *
+	 * @param r
+	 *            The rectangle, in image coordinates
+	 * @return false if nothing of the curve is drawn in the rectangle
+	 */
+	public boolean intersects(Rectangle2D r) {
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (Point2D p : ctrlPts) {
+			minX = Math.min(minX, p.getX());
+			minY = Math.min(minY, p.getY());
+			maxX = Math.max(maxX, p.getX());
+			maxY = Math.max(maxY, p.getY());
+		}
+		double margin = Math.max(dataRadius, THRESHOLD_RADIUS) + 1.5 * frame.getSelectedCtrlPointSize() + 1;
+		return r.intersects(minX - margin, minY - margin, maxX - minX + 2 * margin, maxY - minY + 2 * margin);
+	}
+
 	public Rectangle2D.Double getScaledBounds(Rectangle2D rect, double imageScale) {
 		return new Rectangle2D.Double(rect.getX() * imageScale, rect.getY() * imageScale, rect
 			.getWidth() * imageScale, rect.getHeight() * imageScale);
@@ -446,6 +606,130 @@ public abstract class Curve {
 		this.dataRadius = radius;
 		this.dataFittingBounds = generateOffsetBounds(dataFittingBounds, dataRadius);
 		this.evaluateThresholdedPixels();
+		incrementVersion();
+
+		// The data fitting bounds of the frames kept are for the old radius
+		clearFrameCache();
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Marks the curve as changed, for anything derived from it, including the
+	 * statistics of its group.
+	 */
+	protected void incrementVersion() {
+		version++;
+		BezierGroup g = group;
+		if (g != null) {
+			g.curveChanged(this);
+		}
+	}
+
+	BezierGroup getGroup() {
+		return group;
+	}
+
+	void setGroup(BezierGroup group) {
+		this.group = group;
+	}
+
+	/**
+	 * Returns the length and curvature statistics of the curve, computing them only
+	 * if the curve has changed since they were last asked for.
+	 */
+	public CurveMetrics getMetrics() {
+		if (metrics == null || metricsVersion != version || metricsMicronPixelFactor != micronPixelFactor) {
+			metrics = computeMetrics();
+			metricsVersion = version;
+			metricsMicronPixelFactor = micronPixelFactor;
+		}
+		return metrics;
+	}
+
+	protected abstract CurveMetrics computeMetrics();
+
+	/**
+	 * Gets the average curvature along the curve
+	 *
+	 * @return The average curvature along the curve
+	 */
+	public double getAverageCurvature() {
+		return getMetrics().getAverageCurvature();
+	}
+
+	/**
+	 * Gets the approximate length of the curve, approximated by the sum of the line
+	 * segment lengths between all the points in the curve
+	 *
+	 * @return The approximate curve length, in um
+	 */
+	public double getApproxCurveLength() {
+		return getMetrics().getLength();
+	}
+
+	/**
+	 * Returns the standard deviation of all the curvature values along the curve
+	 *
+	 * @return The standard deviation of all curvature values along the curve
+	 */
+	public double getCurvatureStdDev() {
+		return getMetrics().getCurvatureStdDev();
+	}
+
+	/**
+	 * Returns one of the distributions along the curve that the info panel
+	 * charts, computing it only if the curve has changed since it was last asked
+	 * for.
+	 *
+	 * @param type
+	 *            One of PROFILE_CURVATURE, PROFILE_RED, PROFILE_GREEN and
+	 *            PROFILE_BLUE
+	 * @return The profile, with respect to the current x-axis mode
+	 */
+	public Profile getProfile(int type) {
+		if (profilesVersion != version || profilesDisplay != KappaMenuBar.distributionDisplay
+			|| profilesMicronPixelFactor != micronPixelFactor)
+		{
+			Arrays.fill(profiles, null);
+			profilesVersion = version;
+			profilesDisplay = KappaMenuBar.distributionDisplay;
+			profilesMicronPixelFactor = micronPixelFactor;
+		}
+		if (profiles[type] == null) {
+			switch (type) {
+				case PROFILE_RED:
+					profiles[type] = new Profile(getIntensityDataRed());
+					break;
+				case PROFILE_GREEN:
+					profiles[type] = new Profile(getIntensityDataGreen());
+					break;
+				case PROFILE_BLUE:
+					profiles[type] = new Profile(getIntensityDataBlue());
+					break;
+				default:
+					profiles[type] = new Profile(getCurveData());
+			}
+		}
+		return profiles[type];
+	}
+
+	/**
+	 * Returns the bounding box of the selection band around the curve, in image
+	 * coordinates. The box is empty if the band has not been generated yet.
+	 */
+	public Rectangle2D getBandBounds() {
+		Rectangle2D.Double band = new Rectangle2D.Double();
+		if (bounds.isEmpty()) {
+			return band;
+		}
+		band.setRect(bounds.get(0).getX(), bounds.get(0).getY(), 0, 0);
+		for (Point2D p : bounds) {
+			band.add(p);
+		}
+		return band;
 	}
 
 	public int getDataRadius() {
@@ -460,12 +744,13 @@ public abstract class Curve {
 		return ctrlPts;
 	}
 
-	public BArrayList getKeyframes() {
+	public KeyframeStore getKeyframes() {
 		return keyframes;
 	}
 
-	public void setKeyframes(BArrayList keyframes) {
+	public void setKeyframes(KeyframeStore keyframes) {
 		this.keyframes = keyframes;
+		clearFrameCache();
 	}
 
 }
@@ -0,0 +1,235 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package sc.fiji.kappa.curve;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over the curves of a {@link BezierGroup}, in image coordinates.
+ * Each curve is filed under the cells covered by the bounding box of its
+ * selection band and under the cells of its control points, so hit-testing only
+ * has to look at the curves close to a point instead of all of them.
+ *
+ * Entries remember the version of the curve they were built from and are
+ * refreshed by {@link #update(List)} when a curve changes. They also remember
+ * the position of the curve in the list, so the curves found can be turned
+ * back into list indices without searching the list.
+ */
+public class CurveIndex {
+
+	// Edge length of a grid cell, in image pixels
+	public static final double CELL_SIZE = 64;
+
+	private final Map<Long, List<Curve>> bandCells = new HashMap<>();
+	private final Map<Long, List<Curve>> pointCells = new HashMap<>();
+	private final Map<Curve, Entry> entries = new IdentityHashMap<>();
+	private int generation;
+
+	private class Entry {
+		int version;
+		int generation;
+		int position;
+		Rectangle2D band;
+		List<Long> bandKeys = new ArrayList<>();
+		List<Long> pointKeys = new ArrayList<>();
+	}
+
+	/**
+	 * Brings the index up to date with a list of curves. Curves whose version did
+	 * not change since the last update are left alone, and curves that are no
+	 * longer in the list are dropped.
+	 *
+	 * @param curves
+	 *            All curves that should be indexed
+	 */
+	public void update(List<Curve> curves) {
+		generation++;
+		int position = 0;
+		for (Curve c : curves) {
+			Entry e = entries.get(c);
+			if (e == null || e.version != c.getVersion()) {
+				if (e != null) {
+					unfile(c, e);
+				}
+				e = file(c);
+				entries.put(c, e);
+			}
+			e.generation = generation;
+			e.position = position++;
+		}
+		if (entries.size() > curves.size()) {
+			List<Curve> removed = new ArrayList<>();
+			for (Map.Entry<Curve, Entry> e : entries.entrySet()) {
+				if (e.getValue().generation != generation) {
+					removed.add(e.getKey());
+				}
+			}
+			for (Curve c : removed) {
+				unfile(c, entries.remove(c));
+			}
+		}
+	}
+
+	/**
+	 * Returns the position of a curve in the list of the last update, or -1 if
+	 * it was not in that list.
+	 */
+	public int indexOf(Curve c) {
+		Entry e = entries.get(c);
+		return e == null || e.generation != generation ? -1 : e.position;
+	}
+
+	/**
+	 * Returns the curves whose selection band might contain a point. The caller
+	 * still has to do the exact test.
+	 */
+	public List<Curve> getCurvesAt(Point2D p) {
+		List<Curve> cell = bandCells.get(key(cell(p.getX()), cell(p.getY())));
+		if (cell == null) {
+			return Collections.emptyList();
+		}
+		List<Curve> found = new ArrayList<>();
+		for (Curve c : cell) {
+			if (entries.get(c).band.contains(p)) {
+				found.add(c);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the curves with a control point within a distance of a point, in
+	 * each direction.
+	 */
+	public List<Curve> getCurvesWithControlPointsNear(Point2D p, double radius) {
+		List<Curve> found = new ArrayList<>();
+		for (int x = cell(p.getX() - radius); x <= cell(p.getX() + radius); x++) {
+			for (int y = cell(p.getY() - radius); y <= cell(p.getY() + radius); y++) {
+				List<Curve> cell = pointCells.get(key(x, y));
+				if (cell == null) {
+					continue;
+				}
+				for (Curve c : cell) {
+					if (found.contains(c)) {
+						continue;
+					}
+					for (Point2D ctrlPt : c.getCtrlPts()) {
+						if (Math.abs(ctrlPt.getX() - p.getX()) <= radius && Math.abs(ctrlPt.getY() - p.getY()) <= radius) {
+							found.add(c);
+							break;
+						}
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the curves whose selection band intersects a rectangle.
+	 */
+	public List<Curve> getCurvesIn(Rectangle2D r) {
+		List<Curve> found = new ArrayList<>();
+		Map<Curve, Boolean> seen = new IdentityHashMap<>();
+		for (int x = cell(r.getMinX()); x <= cell(r.getMaxX()); x++) {
+			for (int y = cell(r.getMinY()); y <= cell(r.getMaxY()); y++) {
+				List<Curve> cell = bandCells.get(key(x, y));
+				if (cell == null) {
+					continue;
+				}
+				for (Curve c : cell) {
+					if (seen.put(c, Boolean.TRUE) == null && entries.get(c).band.intersects(r)) {
+						found.add(c);
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	private Entry file(Curve c) {
+		Entry e = new Entry();
+		e.version = c.getVersion();
+		e.band = c.getBandBounds();
+		if (!e.band.isEmpty()) {
+			for (int x = cell(e.band.getMinX()); x <= cell(e.band.getMaxX()); x++) {
+				for (int y = cell(e.band.getMinY()); y <= cell(e.band.getMaxY()); y++) {
+					e.bandKeys.add(add(bandCells, key(x, y), c));
+				}
+			}
+		}
+		for (Point2D p : c.getCtrlPts()) {
+			long key = key(cell(p.getX()), cell(p.getY()));
+			if (!e.pointKeys.contains(key)) {
+				e.pointKeys.add(add(pointCells, key, c));
+			}
+		}
+		return e;
+	}
+
+	private void unfile(Curve c, Entry e) {
+		for (long key : e.bandKeys) {
+			remove(bandCells, key, c);
+		}
+		for (long key : e.pointKeys) {
+			remove(pointCells, key, c);
+		}
+	}
+
+	private static long add(Map<Long, List<Curve>> cells, long key, Curve c) {
+		cells.computeIfAbsent(key, k -> new ArrayList<>(2)).add(c);
+		return key;
+	}
+
+	private static void remove(Map<Long, List<Curve>> cells, long key, Curve c) {
+		List<Curve> cell = cells.get(key);
+		for (int i = 0; i < cell.size(); i++) {
+			if (cell.get(i) == c) {
+				cell.remove(i);
+				break;
+			}
+		}
+		if (cell.isEmpty()) {
+			cells.remove(key);
+		}
+	}
+
+	private static int cell(double coordinate) {
+		return (int) Math.floor(coordinate / CELL_SIZE);
+	}
+
+	private static long key(int x, int y) {
+		return ((long) x << 32) | (y & 0xffffffffL);
+	}
+}
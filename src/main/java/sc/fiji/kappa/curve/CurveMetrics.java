@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+/**
+ * The summary values of a curve at one version of its geometry, computed in a
+ * single pass over its points. Lengths are in um and curvatures in um-1.
+ */
+public class CurveMetrics {
+
+	private final double length;
+	private final double averageCurvature;
+	private final double curvatureStdDev;
+	private final double maxCurvature;
+
+	// The arc length from the start of the curve to each of its points
+	private final double[] arcLength;
+
+	CurveMetrics(double averageCurvature, double curvatureStdDev, double maxCurvature,
+		double[] arcLength)
+	{
+		this.length = arcLength.length == 0 ? 0 : arcLength[arcLength.length - 1];
+		this.averageCurvature = averageCurvature;
+		this.curvatureStdDev = curvatureStdDev;
+		this.maxCurvature = maxCurvature;
+		this.arcLength = arcLength;
+	}
+
+	public double getLength() {
+		return length;
+	}
+
+	public double getAverageCurvature() {
+		return averageCurvature;
+	}
+
+	public double getCurvatureStdDev() {
+		return curvatureStdDev;
+	}
+
+	public double getMaxCurvature() {
+		return maxCurvature;
+	}
+
+	/**
+	 * @param n
+	 *            The index of a point, as in Curve.getPoints()
+	 * @return The arc length from the start of the curve to the point
+	 */
+	public double getArcLength(int n) {
+		return arcLength[n];
+	}
+
+	/**
+	 * Finds where along the points of the curve an arc length is reached, by a
+	 * binary search of the arc-length table.
+	 *
+	 * @param s
+	 *            The arc length from the start of the curve, in um
+	 * @return The index of the point at or before the arc length, plus the
+	 *         fraction of the way to the next point. Arc lengths outside the
+	 *         curve are clamped to its ends.
+	 */
+	public double getIndexAtArcLength(double s) {
+		if (arcLength.length < 2 || s <= 0) {
+			return 0;
+		}
+		if (s >= length) {
+			return arcLength.length - 1;
+		}
+
+		// The last point whose arc length is at most s
+		int low = 0, high = arcLength.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (arcLength[mid] <= s) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		double segment = arcLength[low + 1] - arcLength[low];
+		return segment > 0 ? low + (s - arcLength[low]) / segment : low;
+	}
+
+	public int getNoPoints() {
+		return arcLength.length;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The data points a curve is fitted to and their weights, kept in parallel
+ * primitive arrays rather than as boxed points and weights.
+ */
+public final class DataPoints {
+
+	private double[] xs;
+	private double[] ys;
+	private double[] weights;
+	private int size;
+
+	/**
+	 * @param capacity
+	 *            The number of data points expected. More can be added.
+	 */
+	public DataPoints(int capacity) {
+		xs = new double[capacity];
+		ys = new double[capacity];
+		weights = new double[capacity];
+	}
+
+	/**
+	 * @param weights
+	 *            The weight of each of the points, or null to weigh them all as 1
+	 */
+	public DataPoints(List<Point2D> points, List<Double> weights) {
+		this(points.size());
+		for (int i = 0; i < points.size(); i++) {
+			add(points.get(i).getX(), points.get(i).getY(), weights == null ? 1 : weights.get(i));
+		}
+	}
+
+	public void add(double x, double y, double weight) {
+		if (size == xs.length) {
+			int capacity = Math.max(16, 2 * size);
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+			weights = Arrays.copyOf(weights, capacity);
+		}
+		xs[size] = x;
+		ys[size] = y;
+		weights[size] = weight;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getX(int i) {
+		return xs[i];
+	}
+
+	public double getY(int i) {
+		return ys[i];
+	}
+
+	public double getWeight(int i) {
+		return weights[i];
+	}
+
+	public Point2D.Double getPoint(int i) {
+		return new Point2D.Double(xs[i], ys[i]);
+	}
+}
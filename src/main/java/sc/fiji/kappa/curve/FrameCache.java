@@ -0,0 +1,159 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import sc.fiji.kappa.curve.Curve.FrameGeometry;
+
+/**
+ * The geometry of the frames the curves were shown at most recently, shared by
+ * all the curves so that its size is bounded however many curves there are.
+ * Each entry costs the number of points sampled along its curve, and the least
+ * recently used entries, of whichever curves, are dropped once the total is
+ * over the budget.
+ */
+final class FrameCache {
+
+	// The points, hodograph points and intensities of a frame take in the order
+	// of 100 bytes per sampled point
+	static final int DEFAULT_BUDGET = 500000;
+
+	private static int budget = DEFAULT_BUDGET;
+	private static long cost;
+
+	// All the entries in the order they were last used, and the entries of each
+	// curve, so that a curve can drop its own without going through the others
+	private static final LinkedHashMap<Entry, FrameGeometry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private static final Map<Curve, Map<Object, Entry>> curveEntries = new IdentityHashMap<>();
+
+	private FrameCache() {}
+
+	private static final class Entry {
+
+		private final Curve curve;
+		private final Object key;
+		private final int cost;
+
+		Entry(Curve curve, Object key, int cost) {
+			this.curve = curve;
+			this.key = key;
+			this.cost = cost;
+		}
+	}
+
+	/**
+	 * Keeps the geometry of a curve under a key, replacing what was kept under
+	 * the same key, and drops the least recently used entries if that takes the
+	 * cache over its budget.
+	 *
+	 * @param noPoints
+	 *            The number of points sampled along the curve
+	 */
+	static synchronized void put(Curve curve, Object key, FrameGeometry geometry, int noPoints) {
+		Map<Object, Entry> keys = curveEntries.get(curve);
+		if (keys == null) {
+			keys = new HashMap<>();
+			curveEntries.put(curve, keys);
+		}
+		Entry entry = new Entry(curve, key, noPoints);
+		Entry old = keys.put(key, entry);
+		if (old != null) {
+			entries.remove(old);
+			cost -= old.cost;
+		}
+		entries.put(entry, geometry);
+		cost += noPoints;
+		trim();
+	}
+
+	/**
+	 * @return The geometry kept for a curve under a key, or null
+	 */
+	static synchronized FrameGeometry get(Curve curve, Object key) {
+		Map<Object, Entry> keys = curveEntries.get(curve);
+		if (keys == null) {
+			return null;
+		}
+		Entry entry = keys.get(key);
+		return entry == null ? null : entries.get(entry);
+	}
+
+	/**
+	 * Drops all the geometry kept for a curve.
+	 */
+	static synchronized void clear(Curve curve) {
+		Map<Object, Entry> keys = curveEntries.remove(curve);
+		if (keys == null) {
+			return;
+		}
+		for (Entry e : keys.values()) {
+			entries.remove(e);
+			cost -= e.cost;
+		}
+	}
+
+	/**
+	 * Sets the number of sampled points the cache keeps over all the curves, and
+	 * drops the least recently used entries beyond it. 0 turns the cache off.
+	 */
+	static synchronized void setBudget(int noPoints) {
+		budget = noPoints;
+		trim();
+	}
+
+	// Drops the least recently used entries until the cache is within its budget
+	private static void trim() {
+		Iterator<Entry> eldest = entries.keySet().iterator();
+		while (cost > budget) {
+			Entry e = eldest.next();
+			eldest.remove();
+			cost -= e.cost;
+			Map<Object, Entry> keys = curveEntries.get(e.curve);
+			keys.remove(e.key);
+			if (keys.isEmpty()) {
+				curveEntries.remove(e.curve);
+			}
+		}
+	}
+
+	static synchronized int getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return The number of sampled points kept over all the curves
+	 */
+	static synchronized long getCost() {
+		return cost;
+	}
+}
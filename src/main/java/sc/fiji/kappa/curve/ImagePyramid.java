@@ -0,0 +1,218 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+import sc.fiji.kappa.metrics.PerformanceMetrics;
+import sc.fiji.kappa.metrics.Stage;
+
+/**
+ * Downsampled copies of the data points of a frame, for fitting curves coarse
+ * to fine. Level 0 is the frame itself, and every level halves the resolution
+ * of the one below it. A pixel of a coarse level stands for the data points in
+ * the block of pixels it covers: its weight is the sum of their weights, and it
+ * lies at their weighted centroid. A weighted least squares fit at a coarse
+ * level thus approximates the fit at full resolution with far fewer data
+ * points. Coordinates at a level are full resolution coordinates divided by the
+ * scale of the level.
+ */
+public class ImagePyramid {
+
+	// The smallest data radius, in pixels of a level, that a level is fitted with.
+	// Below that, a coarse level has too few data points across a filament.
+	public static final double MIN_DATA_RADIUS = 2;
+	public static final int MAX_LEVELS = 4;
+
+	private final int[] widths;
+	private final int[] heights;
+	private final float[][] weights;
+
+	// The centroids of the pixels of each coarse level. They are not kept for
+	// level 0, where they are the pixel coordinates.
+	private final float[][] xs;
+	private final float[][] ys;
+
+	/**
+	 * @param pixelWeights
+	 *            The weight of every pixel of the frame, row by row, and 0 for the
+	 *            pixels that are not data points
+	 * @param noLevels
+	 *            The number of coarse levels. Fewer are built if the frame gets
+	 *            down to a single pixel row or column first.
+	 */
+	public ImagePyramid(float[] pixelWeights, int width, int height, int noLevels) {
+		long start = PerformanceMetrics.start();
+		int n = 0;
+		for (int w = width, h = height; n < noLevels && w > 1 && h > 1; n++) {
+			w = (w + 1) / 2;
+			h = (h + 1) / 2;
+		}
+		widths = new int[n + 1];
+		heights = new int[n + 1];
+		weights = new float[n + 1][];
+		xs = new float[n + 1][];
+		ys = new float[n + 1][];
+		widths[0] = width;
+		heights[0] = height;
+		weights[0] = pixelWeights;
+		for (int level = 1; level <= n; level++) {
+			downsample(level);
+		}
+		PerformanceMetrics.stop(Stage.IMAGE_PYRAMID, start, pixelWeights.length);
+	}
+
+	/**
+	 * Returns the number of coarse levels that a curve can be fitted on
+	 *
+	 * @param dataRadius
+	 *            The data radius of the curve at full resolution
+	 */
+	public static int getNoLevels(int dataRadius) {
+		int n = 0;
+		while (n < MAX_LEVELS && dataRadius / getScale(n + 1) >= MIN_DATA_RADIUS) {
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @return The factor by which a level is smaller than the frame
+	 */
+	public static double getScale(int level) {
+		return 1 << level;
+	}
+
+	// Builds a level from the one below it, each pixel from a block of 2x2 pixels
+	private void downsample(int level) {
+		int fineWidth = widths[level - 1];
+		int fineHeight = heights[level - 1];
+		int width = (fineWidth + 1) / 2;
+		int height = (fineHeight + 1) / 2;
+		float[] w = new float[width * height];
+		float[] x = new float[width * height];
+		float[] y = new float[width * height];
+		IntStream.range(0, height).parallel().forEach(row -> {
+			for (int col = 0; col < width; col++) {
+				double sum = 0, sumX = 0, sumY = 0;
+				for (int fineRow = 2 * row; fineRow < Math.min(2 * row + 2, fineHeight); fineRow++) {
+					for (int fineCol = 2 * col; fineCol < Math.min(2 * col + 2, fineWidth); fineCol++) {
+						int i = fineRow * fineWidth + fineCol;
+						double weight = weights[level - 1][i];
+						if (weight > 0) {
+							sum += weight;
+							sumX += weight * getX(level - 1, i);
+							sumY += weight * getY(level - 1, i);
+						}
+					}
+				}
+				int i = row * width + col;
+				w[i] = (float) sum;
+				if (sum > 0) {
+					x[i] = (float) (sumX / sum / 2);
+					y[i] = (float) (sumY / sum / 2);
+				}
+			}
+		});
+		widths[level] = width;
+		heights[level] = height;
+		weights[level] = w;
+		xs[level] = x;
+		ys[level] = y;
+	}
+
+	private double getX(int level, int i) {
+		return level == 0 ? i % widths[0] : xs[level][i];
+	}
+
+	private double getY(int level, int i) {
+		return level == 0 ? i / widths[0] : ys[level][i];
+	}
+
+	/**
+	 * Collects the data points of a level that are within a radius of a curve.
+	 *
+	 * @param curve
+	 *            The curve, in the coordinates of the level
+	 * @param radius
+	 *            The data radius, in pixels of the level
+	 * @return The data points with their weights, in the coordinates of the level
+	 */
+	public DataPoints getDataPoints(int level, Curve curve, double radius) {
+		int width = widths[level];
+		int height = heights[level];
+		DataPoints dataPoints = new DataPoints(0);
+		BitSet added = new BitSet(width * height);
+
+		// The centroid of a pixel lies within the pixel, so the pixels around each
+		// point of the curve are enough to find all the data points near it
+		for (BezierPoint p : curve.getPoints()) {
+			int x0 = Math.max(0, (int) Math.floor(p.getX() - radius));
+			int x1 = Math.min(width - 1, (int) Math.ceil(p.getX() + radius));
+			int y0 = Math.max(0, (int) Math.floor(p.getY() - radius));
+			int y1 = Math.min(height - 1, (int) Math.ceil(p.getY() + radius));
+			for (int row = y0; row <= y1; row++) {
+				for (int col = x0; col <= x1; col++) {
+					int i = row * width + col;
+					if (weights[level][i] > 0 && !added.get(i)) {
+						double x = getX(level, i);
+						double y = getY(level, i);
+						if (p.distanceSq(x, y) <= radius * radius) {
+							added.set(i);
+							dataPoints.add(x, y, weights[level][i]);
+						}
+					}
+				}
+			}
+		}
+		return dataPoints;
+	}
+
+	/**
+	 * @return The number of coarse levels, not counting the frame itself
+	 */
+	public int getNoLevels() {
+		return weights.length - 1;
+	}
+
+	public int getWidth(int level) {
+		return widths[level];
+	}
+
+	public int getHeight(int level) {
+		return heights[level];
+	}
+
+	/**
+	 * @return The summed weight of the data points of a pixel of a level
+	 */
+	public double getWeight(int level, int x, int y) {
+		return weights[level][y * widths[level] + x];
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The keyframes of a curve, kept sorted by frame. The control points of all
+ * keyframes are packed into one array, x and y interleaved, and the bounding box
+ * of each keyframe is computed once when it is added, so that moving between
+ * frames of a long time-lapse only reads from flat arrays.
+ */
+public class KeyframeStore {
+
+	private int size;
+
+	// Incremented whenever a keyframe is added or removed
+	private int version;
+
+	private int[] frames = new int[4];
+
+	// offsets[k] is the index of the first control point of keyframe k, and
+	// offsets[size] the total number of control points
+	private int[] offsets = new int[5];
+	private double[] coords = new double[32];
+
+	// minX, minY, maxX and maxY of each keyframe
+	private double[] bounds = new double[16];
+
+	/**
+	 * Adds a keyframe, replacing any keyframe already at the same frame.
+	 *
+	 * @param ctrlPts
+	 *            The control points of the curve
+	 * @param noPoints
+	 *            The number of control points to store
+	 * @param t
+	 *            The frame of the keyframe
+	 */
+	public void add(List<Point2D> ctrlPts, int noPoints, int t) {
+		version++;
+		int k = Arrays.binarySearch(frames, 0, size, t);
+		if (k >= 0) {
+			remove(k);
+		} else {
+			k = -(k + 1);
+		}
+
+		// Makes room for the keyframe and its control points
+		if (size == frames.length) {
+			frames = Arrays.copyOf(frames, 2 * size);
+			offsets = Arrays.copyOf(offsets, 2 * size + 1);
+			bounds = Arrays.copyOf(bounds, 8 * size);
+		}
+		int total = offsets[size];
+		if (2 * (total + noPoints) > coords.length) {
+			coords = Arrays.copyOf(coords, Math.max(2 * coords.length, 2 * (total + noPoints)));
+		}
+		int start = offsets[k];
+		System.arraycopy(coords, 2 * start, coords, 2 * (start + noPoints), 2 * (total - start));
+		System.arraycopy(frames, k, frames, k + 1, size - k);
+		System.arraycopy(bounds, 4 * k, bounds, 4 * (k + 1), 4 * (size - k));
+		for (int j = size; j >= k; j--) {
+			offsets[j + 1] = offsets[j] + noPoints;
+		}
+		size++;
+
+		frames[k] = t;
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < noPoints; i++) {
+			Point2D p = ctrlPts.get(i);
+			coords[2 * (start + i)] = p.getX();
+			coords[2 * (start + i) + 1] = p.getY();
+			minX = Math.min(minX, p.getX());
+			minY = Math.min(minY, p.getY());
+			maxX = Math.max(maxX, p.getX());
+			maxY = Math.max(maxY, p.getY());
+		}
+		bounds[4 * k] = minX;
+		bounds[4 * k + 1] = minY;
+		bounds[4 * k + 2] = maxX;
+		bounds[4 * k + 3] = maxY;
+	}
+
+	private void remove(int k) {
+		int start = offsets[k];
+		int n = offsets[k + 1] - start;
+		System.arraycopy(coords, 2 * (start + n), coords, 2 * start, 2 * (offsets[size] - start - n));
+		System.arraycopy(frames, k + 1, frames, k, size - k - 1);
+		System.arraycopy(bounds, 4 * (k + 1), bounds, 4 * k, 4 * (size - k - 1));
+		for (int j = k; j < size; j++) {
+			offsets[j] = offsets[j + 1] - n;
+		}
+		size--;
+	}
+
+	public void clear() {
+		size = 0;
+		version++;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getFrame(int k) {
+		return frames[k];
+	}
+
+	/**
+	 * @return The frames of the keyframes, in increasing order
+	 */
+	public int[] getFrames() {
+		return Arrays.copyOf(frames, size);
+	}
+
+	public int getNoPoints(int k) {
+		return offsets[k + 1] - offsets[k];
+	}
+
+	public double getX(int k, int i) {
+		return coords[2 * (offsets[k] + i)];
+	}
+
+	public double getY(int k, int i) {
+		return coords[2 * (offsets[k] + i) + 1];
+	}
+
+	/**
+	 * Finds the keyframe at frame t, or else the previous keyframe. If no previous
+	 * keyframe exists, it returns the first one.
+	 */
+	public int indexAtOrBefore(int t) {
+		int k = Arrays.binarySearch(frames, 0, size, t);
+		if (k >= 0) {
+			return k;
+		}
+		return Math.max(-(k + 1) - 1, 0);
+	}
+
+	/**
+	 * Finds the keyframe at frame t, or else the next keyframe. If no next keyframe
+	 * exists, it returns the last one.
+	 */
+	public int indexAtOrAfter(int t) {
+		int k = Arrays.binarySearch(frames, 0, size, t);
+		if (k >= 0) {
+			return k;
+		}
+		return Math.min(-(k + 1), size - 1);
+	}
+
+	/**
+	 * Interpolates the control points at frame t linearly between the surrounding
+	 * keyframes. Before the first and after the last keyframe, the control points
+	 * of that keyframe are used, as they are between keyframes that do not have the
+	 * same number of control points.
+	 *
+	 * @param buffer
+	 *            The array to write the coordinates to, x and y interleaved
+	 * @return The buffer, or a larger one if it was too small for the control
+	 *         points. Their number is given by getNoPoints(indexAtOrBefore(t)).
+	 */
+	public double[] interpolate(int t, double[] buffer) {
+		int prev = indexAtOrBefore(t);
+		int next = indexAtOrAfter(t);
+		int n = getNoPoints(prev);
+		if (buffer == null || buffer.length < 2 * n) {
+			buffer = new double[2 * n];
+		}
+
+		int a = 2 * offsets[prev];
+		if (prev == next || getNoPoints(next) != n) {
+			System.arraycopy(coords, a, buffer, 0, 2 * n);
+			return buffer;
+		}
+
+		// Our scale factor is t1-t0/(t2 - t0), where t1 = t, and t0 and t2 are the
+		// preceding and succeeding keyframe times
+		double scaleFactor = (t - frames[prev]) / ((frames[next] - frames[prev]) * 1.0);
+		int b = 2 * offsets[next];
+		for (int i = 0; i < 2 * n; i++) {
+			buffer[i] = coords[a + i] + (coords[b + i] - coords[a + i]) * scaleFactor;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Gets the Bounds for a certain time t by translating keyframe layers
+	 *
+	 * @param t
+	 *            The time t we are interested in
+	 * @return The bounds at that time t.
+	 */
+	public Rectangle2D.Double getBounds(int t) {
+		int prev = 4 * indexAtOrBefore(t);
+		int next = 4 * indexAtOrAfter(t);
+		double scaleFactor = prev == next ? 0 : (t - frames[prev / 4]) / ((frames[next / 4] - frames[prev / 4]) * 1.0);
+		double minX = bounds[prev] + (bounds[next] - bounds[prev]) * scaleFactor;
+		double minY = bounds[prev + 1] + (bounds[next + 1] - bounds[prev + 1]) * scaleFactor;
+		double maxX = bounds[prev + 2] + (bounds[next + 2] - bounds[prev + 2]) * scaleFactor;
+		double maxY = bounds[prev + 3] + (bounds[next + 3] - bounds[prev + 3]) * scaleFactor;
+		return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The running statistics of the average curvature and the length of the curves
+ * of a {@link BezierGroup}, over all of them and over the selected ones. Each
+ * curve is counted with the values it had when it was last seen. Curves tell
+ * the statistics when they change, possibly from a fitting thread, and are only
+ * counted again once the statistics are asked for.
+ */
+class PopulationStatistics {
+
+	// The values a curve is counted with, and whether it is counted as selected
+	private static class Contribution {
+		private double averageCurvature;
+		private double length;
+		private boolean selected;
+	}
+
+	private final RunningStatistics allCurvatures = new RunningStatistics();
+	private final RunningStatistics allLengths = new RunningStatistics();
+	private final RunningStatistics selectedCurvatures = new RunningStatistics();
+	private final RunningStatistics selectedLengths = new RunningStatistics();
+
+	private final Map<Curve, Contribution> contributions = new HashMap<>();
+	private final Set<Curve> changedCurves = ConcurrentHashMap.newKeySet();
+
+	// Set when every curve has to be counted again, such as when the um/pixel
+	// factor changes
+	private boolean stale = true;
+	private double micronPixelFactor;
+
+	// Incremented whenever the statistics change
+	private int generation;
+
+	void curveChanged(Curve curve) {
+		changedCurves.add(curve);
+	}
+
+	void curveRemoved(Curve curve) {
+		changedCurves.remove(curve);
+		Contribution c = contributions.remove(curve);
+		if (c != null) {
+			remove(c);
+			generation++;
+		}
+	}
+
+	void selectionChanged(Curve curve, boolean selected) {
+		Contribution c = contributions.get(curve);
+		if (c != null && c.selected != selected) {
+			c.selected = selected;
+			if (selected) {
+				selectedCurvatures.add(c.averageCurvature);
+				selectedLengths.add(c.length);
+			} else {
+				selectedCurvatures.remove(c.averageCurvature);
+				selectedLengths.remove(c.length);
+			}
+			generation++;
+		}
+	}
+
+	void invalidate() {
+		stale = true;
+	}
+
+	/**
+	 * Counts again the curves that changed since the last call, or all of them if
+	 * the statistics are stale.
+	 *
+	 * @param curves
+	 *            All the curves of the group
+	 */
+	void update(List<Curve> curves) {
+		if (stale || micronPixelFactor != Curve.getMicronPixelFactor()) {
+			changedCurves.clear();
+			contributions.clear();
+			allCurvatures.clear();
+			allLengths.clear();
+			selectedCurvatures.clear();
+			selectedLengths.clear();
+			for (Curve curve : curves) {
+				count(curve);
+			}
+			stale = false;
+			micronPixelFactor = Curve.getMicronPixelFactor();
+			generation++;
+		} else if (!changedCurves.isEmpty()) {
+			for (Curve curve : changedCurves) {
+				changedCurves.remove(curve);
+				Contribution c = contributions.remove(curve);
+				if (c != null) {
+					remove(c);
+				}
+
+				// A curve may have changed just as it was removed
+				if (curve.getGroup() == curves) {
+					count(curve);
+				}
+			}
+			generation++;
+		}
+	}
+
+	private void count(Curve curve) {
+		Contribution c = new Contribution();
+		c.averageCurvature = curve.getAverageCurvature();
+		c.length = curve.getApproxCurveLength();
+		c.selected = curve.isSelected();
+		contributions.put(curve, c);
+		allCurvatures.add(c.averageCurvature);
+		allLengths.add(c.length);
+		if (c.selected) {
+			selectedCurvatures.add(c.averageCurvature);
+			selectedLengths.add(c.length);
+		}
+	}
+
+	private void remove(Contribution c) {
+		allCurvatures.remove(c.averageCurvature);
+		allLengths.remove(c.length);
+		if (c.selected) {
+			selectedCurvatures.remove(c.averageCurvature);
+			selectedLengths.remove(c.length);
+		}
+	}
+
+	RunningStatistics getCurvatures(boolean selectedOnly) {
+		return selectedOnly ? selectedCurvatures : allCurvatures;
+	}
+
+	RunningStatistics getLengths(boolean selectedOnly) {
+		return selectedOnly ? selectedLengths : allLengths;
+	}
+
+	int getGeneration() {
+		return generation;
+	}
+}
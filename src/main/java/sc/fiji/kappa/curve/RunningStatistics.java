@@ -0,0 +1,94 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+/**
+ * The mean and variance of a set of values that values can be added to and
+ * removed from, using Welford's updates. Removing a value that was never added
+ * leaves the statistics meaningless.
+ */
+public class RunningStatistics {
+
+	private long n;
+	private double mean;
+
+	// The sum of the squared differences from the mean
+	private double m2;
+
+	public void add(double x) {
+		n++;
+		double d = x - mean;
+		mean += d / n;
+		m2 += d * (x - mean);
+	}
+
+	public void remove(double x) {
+		if (n <= 1) {
+			clear();
+			return;
+		}
+		double oldMean = mean;
+		n--;
+		mean -= (x - mean) / n;
+		m2 -= (x - mean) * (x - oldMean);
+
+		// Rounding may leave a tiny negative sum once most values are gone
+		if (m2 < 0) {
+			m2 = 0;
+		}
+	}
+
+	public void clear() {
+		n = 0;
+		mean = 0;
+		m2 = 0;
+	}
+
+	public long getCount() {
+		return n;
+	}
+
+	/**
+	 * @return The mean of the values, or NaN if there are none
+	 */
+	public double getMean() {
+		return n == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * @return The sample variance of the values, or NaN if there are fewer than
+	 *         two
+	 */
+	public double getVariance() {
+		return n < 2 ? Double.NaN : m2 / (n - 1);
+	}
+
+	public double getStdDev() {
+		return Math.sqrt(getVariance());
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package sc.fiji.kappa.curve;
+
+/**
+ * The user settings that decide which pixels around a curve count as data
+ * points: the intensity threshold, whether pixels have to be brighter or darker
+ * than it, and the channel that is compared.
+ */
+public final class ThresholdParameters {
+
+	private final int threshold;
+	private final boolean brighter;
+	private final int channel;
+
+	public ThresholdParameters(int threshold, boolean brighter, int channel) {
+		this.threshold = threshold;
+		this.brighter = brighter;
+		this.channel = channel;
+	}
+
+	/**
+	 * Checks a pixel against the threshold
+	 *
+	 * @param rgb
+	 *            The intensities of the pixel in each channel
+	 * @return true if the pixel is a data point
+	 */
+	public boolean accepts(int[] rgb) {
+		long intensity = getIntensity(rgb);
+		return (brighter && intensity >= threshold) || (!brighter && intensity <= threshold);
+	}
+
+	/**
+	 * Gets the weight of a data point, so that the pixels the curve should follow
+	 * weigh the most: its intensity, or how much darker it is than the brightest
+	 * possible pixel when looking for darker pixels.
+	 *
+	 * @param rgb
+	 *            The intensities of the pixel in each channel
+	 * @param bitDepth
+	 *            The bit depth of the image, 24 for RGB colour
+	 */
+	public double getWeight(int[] rgb, int bitDepth) {
+		long intensity = getIntensity(rgb);
+		if (brighter) {
+			return intensity;
+		}
+		if (bitDepth == 24) {
+			return 256 - intensity;
+		}
+		// Grayscale, then 2^bitdepth is the max intensity
+		return (int) (Math.pow(2, bitDepth) - intensity);
+	}
+
+	private long getIntensity(int[] rgb) {
+		if (channel == 0) {
+			return rgb[0];
+		} else if (channel == 1) {
+			return rgb[1];
+		} else if (channel == 2) {
+			return rgb[2];
+		}
+		return (rgb[0] + rgb[1] + rgb[2]) / 3;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	public boolean isBrighter() {
+		return brighter;
+	}
+
+	public int getChannel() {
+		return channel;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof ThresholdParameters)) {
+			return false;
+		}
+		ThresholdParameters p = (ThresholdParameters) o;
+		return threshold == p.threshold && brighter == p.brighter && channel == p.channel;
+	}
+
+	@Override
+	public int hashCode() {
+		return (threshold * 31 + channel) * 2 + (brighter ? 1 : 0);
+	}
+}
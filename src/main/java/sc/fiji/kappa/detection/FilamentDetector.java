@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.detection;
+
+import java.awt.Point;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import sc.fiji.kappa.metrics.PerformanceMetrics;
+import sc.fiji.kappa.metrics.Stage;
+
+/**
+ * Finds bright filaments in an image and places initial B-Spline control points
+ * along them. The ridges of the image are found with a {@link HessianRidgeFilter},
+ * kept where they are strong enough, thinned to centre-lines and traced with a
+ * {@link Skeleton}, splitting them where filaments cross or branch. The control
+ * points are then spread evenly along each centre-line, ready to be refined by
+ * fitting.
+ */
+public class FilamentDetector {
+
+	public static final double DEFAULT_SIGMA = 2;
+	public static final double DEFAULT_THRESHOLD = 0.2;
+	public static final int DEFAULT_MIN_LENGTH = 15;
+	public static final double DEFAULT_CTRL_PT_SPACING = 12;
+
+	// The number of pixels on each side averaged to smooth the steps of the
+	// traced centre-lines
+	private static final int SMOOTHING_RADIUS = 2;
+
+	// The ridge strength, as a fraction of the range of intensities, below which
+	// nothing is considered a ridge
+	private static final double MIN_RELATIVE_STRENGTH = 0.01;
+
+	private double sigma = DEFAULT_SIGMA;
+	private double threshold = DEFAULT_THRESHOLD;
+	private int minLength = DEFAULT_MIN_LENGTH;
+	private double ctrlPtSpacing = DEFAULT_CTRL_PT_SPACING;
+
+	/**
+	 * @param image
+	 *            The intensities of the frame, row by row, with the filaments
+	 *            brighter than the background
+	 * @return The control points of each filament found, in pixels
+	 */
+	public List<List<Point2D>> detect(float[] image, int width, int height) {
+		long start = PerformanceMetrics.start();
+		float[] strength = new HessianRidgeFilter(sigma).filter(image, width, height);
+		float max = 0;
+		for (float s : strength) {
+			max = Math.max(max, s);
+		}
+
+		// Ridges are also ignored when they are faint compared to the range of
+		// intensities, so that a flat image does not turn its rounding errors
+		// into filaments
+		float low = Float.MAX_VALUE, high = -Float.MAX_VALUE;
+		for (float v : image) {
+			low = Math.min(low, v);
+			high = Math.max(high, v);
+		}
+		float cutoff = (float) Math.max(threshold * max, MIN_RELATIVE_STRENGTH * (high - low));
+		boolean[] mask = new boolean[strength.length];
+		for (int i = 0; i < mask.length && high > low; i++) {
+			mask[i] = strength[i] > cutoff;
+		}
+
+		List<List<Point>> traces = Skeleton.thin(mask, width, height).trace(Math.max(minLength, 2));
+		List<List<Point2D>> curves = traces.parallelStream().map(this::toControlPoints).collect(Collectors.toList());
+		PerformanceMetrics.stop(Stage.DETECT_FILAMENTS, start, curves.size());
+		return curves;
+	}
+
+	/**
+	 * Spreads control points evenly along a traced centre-line, at least 4 of them
+	 * so that it makes a cubic B-Spline.
+	 */
+	List<Point2D> toControlPoints(List<Point> trace) {
+		int n = trace.size();
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		for (int i = 0; i < n; i++) {
+			int a = Math.max(i - SMOOTHING_RADIUS, 0);
+			int b = Math.min(i + SMOOTHING_RADIUS, n - 1);
+			for (int j = a; j <= b; j++) {
+				xs[i] += trace.get(j).x;
+				ys[i] += trace.get(j).y;
+			}
+			xs[i] /= b - a + 1;
+			ys[i] /= b - a + 1;
+		}
+
+		double[] arcLength = new double[n];
+		for (int i = 1; i < n; i++) {
+			arcLength[i] = arcLength[i - 1] + Math.hypot(xs[i] - xs[i - 1], ys[i] - ys[i - 1]);
+		}
+		double length = arcLength[n - 1];
+		int noCtrlPts = Math.max(4, (int) Math.round(length / ctrlPtSpacing) + 1);
+
+		List<Point2D> ctrlPts = new ArrayList<>(noCtrlPts);
+		int i = 0;
+		for (int k = 0; k < noCtrlPts; k++) {
+			double s = length * k / (noCtrlPts - 1);
+			while (i < n - 2 && arcLength[i + 1] < s) {
+				i++;
+			}
+			double segment = arcLength[i + 1] - arcLength[i];
+			double f = segment > 0 ? Math.min(Math.max((s - arcLength[i]) / segment, 0), 1) : 0;
+			ctrlPts.add(new Point2D.Double(xs[i] + f * (xs[i + 1] - xs[i]), ys[i] + f * (ys[i + 1] - ys[i])));
+		}
+		return ctrlPts;
+	}
+
+	public double getSigma() {
+		return sigma;
+	}
+
+	/**
+	 * @param sigma
+	 *            The scale the ridges are looked for at, close to the half-width
+	 *            of the filaments, in pixels
+	 */
+	public void setSigma(double sigma) {
+		this.sigma = sigma;
+	}
+
+	public double getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * @param threshold
+	 *            The fraction of the strongest ridge below which ridges are ignored
+	 */
+	public void setThreshold(double threshold) {
+		this.threshold = threshold;
+	}
+
+	public int getMinLength() {
+		return minLength;
+	}
+
+	/**
+	 * @param minLength
+	 *            The length, in pixels, below which traced centre-lines are
+	 *            dropped
+	 */
+	public void setMinLength(int minLength) {
+		this.minLength = minLength;
+	}
+
+	public double getCtrlPtSpacing() {
+		return ctrlPtSpacing;
+	}
+
+	/**
+	 * @param ctrlPtSpacing
+	 *            The distance aimed for between control points, in pixels
+	 */
+	public void setCtrlPtSpacing(double ctrlPtSpacing) {
+		this.ctrlPtSpacing = ctrlPtSpacing;
+	}
+}
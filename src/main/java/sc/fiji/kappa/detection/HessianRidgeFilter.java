@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.detection;
+
+import java.util.stream.IntStream;
+
+/**
+ * Measures how much each pixel of an image looks like the centre of a bright
+ * line, from the eigenvalues of the Hessian of the image smoothed at a given
+ * scale. Across a bright line the intensity curves down sharply, so the most
+ * negative eigenvalue is large in magnitude, while along the line it stays
+ * flat. The convolutions are separable and run in parallel over rows and
+ * columns.
+ */
+public class HessianRidgeFilter {
+
+	private final double sigma;
+	private final float[] g;
+	private final float[] dg;
+	private final float[] ddg;
+
+	/**
+	 * @param sigma
+	 *            The scale of the Gaussian derivatives, in pixels. It should be
+	 *            close to the half-width of the lines.
+	 */
+	public HessianRidgeFilter(double sigma) {
+		if (sigma <= 0) {
+			throw new IllegalArgumentException("The scale must be positive");
+		}
+		this.sigma = sigma;
+		int radius = (int) Math.ceil(3 * sigma);
+		g = new float[2 * radius + 1];
+		dg = new float[2 * radius + 1];
+		ddg = new float[2 * radius + 1];
+		double norm = 1 / (Math.sqrt(2 * Math.PI) * sigma);
+		for (int i = -radius; i <= radius; i++) {
+			double v = norm * Math.exp(-i * i / (2 * sigma * sigma));
+			g[i + radius] = (float) v;
+			dg[i + radius] = (float) (-i / (sigma * sigma) * v);
+			ddg[i + radius] = (float) ((i * i - sigma * sigma) / (sigma * sigma * sigma * sigma) * v);
+		}
+	}
+
+	public double getSigma() {
+		return sigma;
+	}
+
+	/**
+	 * @param image
+	 *            The intensities, row by row
+	 * @return The ridge strength of each pixel, row by row. It is the magnitude of
+	 *         the most negative eigenvalue of the Hessian, scaled by sigma^2 so
+	 *         that it does not depend on the scale, or 0 where there is none.
+	 */
+	public float[] filter(float[] image, int width, int height) {
+		float[] smoothX = convolveRows(image, width, height, g);
+		float[] derivX = convolveRows(image, width, height, dg);
+		float[] secondX = convolveRows(image, width, height, ddg);
+		float[] lxx = convolveColumns(secondX, width, height, g);
+		float[] lxy = convolveColumns(derivX, width, height, dg);
+		float[] lyy = convolveColumns(smoothX, width, height, ddg);
+
+		float[] strength = new float[width * height];
+		double scale = sigma * sigma;
+		IntStream.range(0, height).parallel().forEach(y -> {
+			for (int i = y * width; i < (y + 1) * width; i++) {
+				double mean = (lxx[i] + lyy[i]) / 2;
+				double diff = (lxx[i] - lyy[i]) / 2;
+				double lowest = mean - Math.sqrt(diff * diff + lxy[i] * lxy[i]);
+				strength[i] = lowest < 0 ? (float) (-lowest * scale) : 0;
+			}
+		});
+		return strength;
+	}
+
+	// The edges of the image are extended by repeating the border pixels
+	private static float[] convolveRows(float[] image, int width, int height, float[] kernel) {
+		float[] out = new float[width * height];
+		int radius = kernel.length / 2;
+		IntStream.range(0, height).parallel().forEach(y -> {
+			int row = y * width;
+			for (int x = 0; x < width; x++) {
+				float sum = 0;
+				for (int k = -radius; k <= radius; k++) {
+					int xx = Math.min(Math.max(x - k, 0), width - 1);
+					sum += kernel[k + radius] * image[row + xx];
+				}
+				out[row + x] = sum;
+			}
+		});
+		return out;
+	}
+
+	private static float[] convolveColumns(float[] image, int width, int height, float[] kernel) {
+		float[] out = new float[width * height];
+		int radius = kernel.length / 2;
+		IntStream.range(0, height).parallel().forEach(y -> {
+			int row = y * width;
+			for (int k = -radius; k <= radius; k++) {
+				int yy = Math.min(Math.max(y - k, 0), height - 1) * width;
+				float w = kernel[k + radius];
+				for (int x = 0; x < width; x++) {
+					out[row + x] += w * image[yy + x];
+				}
+			}
+		});
+		return out;
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.detection;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Thins a binary mask down to lines one pixel wide, and traces those lines into
+ * ordered lists of pixels, split wherever lines meet.
+ */
+public class Skeleton {
+
+	// The 8 neighbours in clockwise order, starting above
+	private static final int[] DX = { 0, 1, 1, 1, 0, -1, -1, -1 };
+	private static final int[] DY = { -1, -1, 0, 1, 1, 1, 0, -1 };
+
+	private final boolean[] pixels;
+	private final int width;
+	private final int height;
+
+	private Skeleton(boolean[] pixels, int width, int height) {
+		this.pixels = pixels;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Thins a mask with the Zhang-Suen algorithm. Each sub-iteration finds the
+	 * pixels to remove in parallel over the rows, then removes them.
+	 *
+	 * @param mask
+	 *            The pixels of the objects, row by row. It is left unchanged.
+	 */
+	public static Skeleton thin(boolean[] mask, int width, int height) {
+		boolean[] pixels = mask.clone();
+		boolean[] remove = new boolean[pixels.length];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int pass = 0; pass < 2; pass++) {
+				int p = pass;
+				boolean any = IntStream.range(0, height).parallel().mapToObj(y -> {
+					boolean found = false;
+					for (int x = 0; x < width; x++) {
+						int i = y * width + x;
+						remove[i] = pixels[i] && isRemovable(pixels, width, height, x, y, p);
+						found |= remove[i];
+					}
+					return found;
+				}).reduce(false, Boolean::logicalOr);
+				if (any) {
+					for (int i = 0; i < pixels.length; i++) {
+						if (remove[i]) {
+							pixels[i] = false;
+						}
+					}
+					changed = true;
+				}
+			}
+		}
+		return new Skeleton(pixels, width, height);
+	}
+
+	private static boolean isRemovable(boolean[] pixels, int width, int height, int x, int y, int pass) {
+		boolean[] n = neighbours(pixels, width, height, x, y);
+		int count = 0;
+		for (boolean b : n) {
+			if (b) {
+				count++;
+			}
+		}
+		if (count < 2 || count > 6 || transitions(n) != 1) {
+			return false;
+		}
+
+		// n[0] is above, n[2] right, n[4] below and n[6] left
+		if (pass == 0) {
+			return !(n[0] && n[2] && n[4]) && !(n[2] && n[4] && n[6]);
+		}
+		return !(n[0] && n[2] && n[6]) && !(n[0] && n[4] && n[6]);
+	}
+
+	private static boolean[] neighbours(boolean[] pixels, int width, int height, int x, int y) {
+		boolean[] n = new boolean[8];
+		for (int k = 0; k < 8; k++) {
+			int xx = x + DX[k], yy = y + DY[k];
+			n[k] = xx >= 0 && xx < width && yy >= 0 && yy < height && pixels[yy * width + xx];
+		}
+		return n;
+	}
+
+	// The number of changes from background to object going around the
+	// neighbours. It is 1 at the end of a line, 2 along it, and 3 or more where
+	// lines meet.
+	private static int transitions(boolean[] n) {
+		int t = 0;
+		for (int k = 0; k < 8; k++) {
+			if (!n[k] && n[(k + 1) % 8]) {
+				t++;
+			}
+		}
+		return t;
+	}
+
+	public boolean[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * Traces the lines of the skeleton. The pixels where three or more lines meet
+	 * are left out, and a line stops at the first pixel next to one, so each line
+	 * ends at the junctions it reaches. Lines are followed from their ends;
+	 * closed loops, which have none, are then followed from any of their pixels.
+	 *
+	 * @param minLength
+	 *            The number of pixels below which lines are dropped
+	 * @return The pixels of each line, in order
+	 */
+	public List<List<Point>> trace(int minLength) {
+		boolean[] lines = pixels.clone();
+		boolean[] nearJunction = new boolean[pixels.length];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (pixels[y * width + x] && transitions(neighbours(pixels, width, height, x, y)) >= 3) {
+					lines[y * width + x] = false;
+					for (int k = 0; k < 8; k++) {
+						int xx = x + DX[k], yy = y + DY[k];
+						if (xx >= 0 && xx < width && yy >= 0 && yy < height) {
+							nearJunction[yy * width + xx] = true;
+						}
+					}
+				}
+			}
+		}
+
+		List<List<Point>> traces = new ArrayList<>();
+		boolean[] visited = new boolean[lines.length];
+		for (int ends = 1; ends >= 0; ends--) {
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					int i = y * width + x;
+					if (lines[i] && !visited[i] && (ends == 0 || nearJunction[i]
+							|| transitions(neighbours(lines, width, height, x, y)) <= 1)) {
+						List<Point> trace = follow(lines, nearJunction, visited, x, y);
+						if (trace.size() >= minLength) {
+							traces.add(trace);
+						}
+					}
+				}
+			}
+		}
+		return traces;
+	}
+
+	// Follows a line until it runs out of pixels not yet visited, or reaches a
+	// junction. Direct neighbours are taken before diagonal ones, so the corners
+	// of staircase lines are not skipped.
+	private List<Point> follow(boolean[] lines, boolean[] nearJunction, boolean[] visited, int x, int y) {
+		List<Point> trace = new ArrayList<>();
+		while (true) {
+			visited[y * width + x] = true;
+			trace.add(new Point(x, y));
+			if (trace.size() > 1 && nearJunction[y * width + x]) {
+				return trace;
+			}
+			int next = -1;
+			for (int k = 0; k < 8 && (next < 0 || next % 2 == 1); k++) {
+				int xx = x + DX[k], yy = y + DY[k];
+				if (xx >= 0 && xx < width && yy >= 0 && yy < height && lines[yy * width + xx]
+						&& !visited[yy * width + xx] && (next < 0 || k % 2 == 0)) {
+					next = k;
+				}
+			}
+			if (next < 0) {
+				return trace;
+			}
+			x += DX[next];
+			y += DY[next];
+		}
+	}
+}
@@ -32,13 +32,23 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.geom.Point2D;
+import java.util.Arrays;
 import java.util.List;
 
+import sc.fiji.kappa.curve.Profile;
+
 public class Chart extends Component {
 
 	private static final long serialVersionUID = 1L;
 	private List<Point2D> data;
 
+	// The data reduced to what can be told apart on screen, kept for the chart area
+	// it was computed for until the data or the axis bounds change
+	private int[] polylineX = new int[0];
+	private int[] polylineY = new int[0];
+	private int polylineLength;
+	private Rectangle polylineArea;
+
 	private double minX, minY, maxX, maxY;
 	private boolean minXFixed, minYFixed, maxXFixed, maxYFixed;
 	private double[] tickX;
@@ -53,19 +63,8 @@ public class Chart extends Component {
 	public static final int TICK_SIZE = 2;
 	public static final int DATA_PT_SIZE = 3;
 
-	Point2D[] getMappedPoints(List<Point2D> data, int x, int y, int width, int height) {
-		Point2D[] mappedPoints = new Point2D.Double[data.size()];
-		for (int i = 0; i < data.size(); i++) {
-			if (maxX - minX != 0) {
-				mappedPoints[i] = new Point2D.Double(x + ((data.get(i).getX() - minX) / ((maxX - minX) * 1.0)) * width,
-						y + (1 - (data.get(i).getY() - minY) / ((maxY - minY) * 1.0)) * height);
-			} else {
-				mappedPoints[i] = new Point2D.Double(x,
-						y + (1 - (data.get(i).getY() - minY) / ((maxY - minY) * 1.0)) * height);
-			}
-		}
-		return mappedPoints;
-	}
+	// Above this many points per pixel column, the data is reduced to an envelope
+	public static final double DECIMATION_THRESHOLD = 2;
 
 	public void setData(List<Point2D> data) {
 		// Finds maximal and minimal x and y values
@@ -100,6 +99,37 @@ public class Chart extends Component {
 				}
 			}
 		}
+		fillTicks();
+	}
+
+	/**
+	 * Sets the data from a profile, whose extent is already known, so that the
+	 * data does not need to be scanned again.
+	 *
+	 * @param profile
+	 *            The profile to display
+	 */
+	public void setData(Profile profile) {
+		this.data = profile.getData();
+		if (!profile.isEmpty()) {
+			if (!minXFixed) {
+				minX = profile.getMinX();
+			}
+			if (!maxXFixed) {
+				maxX = profile.getMaxX();
+			}
+			if (!minYFixed) {
+				minY = 0;
+			}
+			if (!maxYFixed) {
+				maxY = profile.getMaxY();
+			}
+		}
+		fillTicks();
+	}
+
+	private void fillTicks() {
+		polylineArea = null;
 
 		// Fills in tick bounds
 		double incY = (maxY - minY) / (NO_TICKS_Y - 1);
@@ -145,36 +175,108 @@ public class Chart extends Component {
 
 			// Draws all the points.
 			if (data.size() != 0) {
-				// Gets the coordinate values for each data point to draw on the graph, and
-				// draws the line segments too.
-				Point2D[] mappedPoints = getMappedPoints(data, c.x, c.y, c.width, c.height);
-				g.setColor(color);
-				for (int i = 0; i < mappedPoints.length - 1; i++) {
-					g.drawLine((int) mappedPoints[i].getX(), (int) mappedPoints[i].getY(),
-							(int) mappedPoints[i + 1].getX(), (int) mappedPoints[i + 1].getY());
+				// Draws the data as a single polyline, which is reduced to per pixel column
+				// envelopes when there is more data than pixels.
+				if (!c.equals(polylineArea)) {
+					fillPolyline(c);
 				}
+				g.setColor(color);
+				g.drawPolyline(polylineX, polylineY, polylineLength);
 				g.setColor(Color.BLACK);
 			}
 		}
 	}
 
+	/**
+	 * Maps the data into the chart area. Long data is decimated: consecutive
+	 * points that fall in the same pixel column are reduced to the first, lowest,
+	 * highest and last of them, which draws the same envelope as the full data.
+	 *
+	 * @param c
+	 *            The area the data is drawn in
+	 */
+	private void fillPolyline(Rectangle c) {
+		boolean decimate = data.size() > DECIMATION_THRESHOLD * Math.max(c.width, 1);
+		if (polylineX.length < data.size()) {
+			polylineX = new int[data.size()];
+			polylineY = new int[data.size()];
+		}
+		polylineLength = 0;
+
+		int column = Integer.MIN_VALUE;
+		int first = 0, min = 0, max = 0, last = 0;
+		for (int i = 0; i < data.size(); i++) {
+			Point2D p = data.get(i);
+			int x = c.x;
+			if (maxX - minX != 0) {
+				x = (int) (c.x + ((p.getX() - minX) / ((maxX - minX) * 1.0)) * c.width);
+			}
+			int y = (int) (c.y + (1 - (p.getY() - minY) / ((maxY - minY) * 1.0)) * c.height);
+
+			if (!decimate) {
+				addPolylinePoint(x, y);
+			} else if (x == column) {
+				min = Math.min(min, y);
+				max = Math.max(max, y);
+				last = y;
+			} else {
+				if (column != Integer.MIN_VALUE) {
+					addColumn(column, first, min, max, last);
+				}
+				column = x;
+				first = min = max = last = y;
+			}
+		}
+		if (decimate && column != Integer.MIN_VALUE) {
+			addColumn(column, first, min, max, last);
+		}
+		polylineArea = new Rectangle(c);
+	}
+
+	private void addColumn(int x, int first, int min, int max, int last) {
+		addPolylinePoint(x, first);
+		if (min != first) {
+			addPolylinePoint(x, min);
+		}
+		if (max != min) {
+			addPolylinePoint(x, max);
+		}
+		if (last != max) {
+			addPolylinePoint(x, last);
+		}
+	}
+
+	private void addPolylinePoint(int x, int y) {
+		if (polylineLength == polylineX.length) {
+			polylineX = Arrays.copyOf(polylineX, 2 * polylineLength + 1);
+			polylineY = Arrays.copyOf(polylineY, 2 * polylineLength + 1);
+		}
+		polylineX[polylineLength] = x;
+		polylineY[polylineLength] = y;
+		polylineLength++;
+	}
+
 	public void setMinX(double minX) {
 		this.minX = minX;
 		minXFixed = true;
+		polylineArea = null;
 	}
 
 	public void setMaxX(double maxX) {
 		this.maxX = maxX;
 		maxXFixed = true;
+		polylineArea = null;
 	}
 
 	public void setMinY(double minY) {
 		this.minY = minY;
 		minYFixed = true;
+		polylineArea = null;
 	}
 
 	public void setMaxY(double maxY) {
 		this.maxY = maxY;
 		maxYFixed = true;
+		polylineArea = null;
 	}
 }
@@ -896,6 +896,13 @@ public class ContrastAdjuster extends PlugInFrame
 		}
 		minSliderValue = maxSliderValue = brightnessValue = contrastValue = -1;
 		doReset = doAutoAdjust = doSet = doApplyLut = false;
+
+		// The image is left alone while curves are being fitted to it
+		if (frame.isFittingRunning()) {
+			IJ.beep();
+			IJ.showStatus("Fitting in progress");
+			return;
+		}
 		imp = frame.getDisplayedImageStack();
 		if (imp == null) {
 			IJ.beep();
@@ -951,6 +958,9 @@ public class ContrastAdjuster extends PlugInFrame
 		frame.setScaledImage(frame.getControlPanel().getScaleSlider().getValue() / 100.0);
 		frame.drawImageOverlay();
 
+		// The intensities and thresholded pixels kept for the other frames were read
+		// from the image as it was
+		frame.getCurves().clearFrameCaches();
 		frame.getCurves().updateIntensities();
 		frame.updateDisplayed();
 	}
@@ -36,6 +36,7 @@ import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
+import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JSeparator;
@@ -50,11 +51,6 @@ import sc.fiji.kappa.curve.Curve;
 
 public class ControlPanel extends JPanel {
 	// Scaling Constants
-	// MAX_AVG_PIXEL_DIM is a maximal average of an image's height and width. It's
-	// used to determine
-	// how much an image can be zoomed into (without running into heap issues)
-
-	public static final int MAX_AVG_PIXEL_DIM = 2000;
 	public static final int MIN_SCALE = 25;
 	public static final int MAX_SCALE = 800;
 	public static final int DEFAULT_SCALE = 100;
@@ -74,6 +70,9 @@ public class ControlPanel extends JPanel {
 	private JSlider scaleSlider;
 	private JSlider currentLayerSlider;
 
+	// Stops a running fit
+	private JButton cancelFittingButton;
+
 	// Buttons for the image channels to be displayed.
 	private JToggleButton[] channelButtons = new JToggleButton[3];
 	final static String[] CHANNEL_TOOLTIPS = { "Display Red Channel", "Display Green Channel", "Display Blue Channel" };
@@ -109,6 +108,17 @@ public class ControlPanel extends JPanel {
 		this.add(Box.createRigidArea(new Dimension(8, 0)));
 		this.add(layerLabel);
 
+		cancelFittingButton = new JButton("Cancel Fitting");
+		cancelFittingButton.setEnabled(false);
+		cancelFittingButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				frame.cancelFitting();
+			}
+		});
+		this.add(Box.createRigidArea(new Dimension(8, 0)));
+		this.add(cancelFittingButton);
+
 		// Creates the toggle buttons for the image channels
 		for (int i = 0; i < channelButtons.length; i++) {
 			ImageIcon channelIcon = new ImageIcon(Panel.class.getResource("/icons/" + CHANNEL_FILENAMES[i]));
@@ -212,11 +222,16 @@ public class ControlPanel extends JPanel {
 		@Override
 		public void stateChanged(ChangeEvent ce) {
 			scaleLabel.setText(frame.formatNumber(getScaleSlider().getValue(), DIGITS_MAX_SCALE) + "%");
-			frame.setScaledImage(getScaleSlider().getValue() / 100.0);
+
+			// The image tiles are cached per zoom level, so there is nothing to rebuild
 			frame.drawImageOverlay();
 		}
 	}
 
+	public JButton getCancelFittingButton() {
+		return cancelFittingButton;
+	}
+
 	public JToggleButton[] getChannelButtons() {
 		return channelButtons;
 	}
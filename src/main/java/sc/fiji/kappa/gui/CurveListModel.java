@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.gui;
+
+import java.util.BitSet;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * Lists the curves of a {@link KappaFrame} by reading them straight from its
+ * {@link sc.fiji.kappa.curve.BezierGroup}. Whoever adds or removes curves tells
+ * the model which indices changed, so the list only updates those.
+ */
+public class CurveListModel extends AbstractListModel<String> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final KappaFrame frame;
+
+	public CurveListModel(KappaFrame frame) {
+		this.frame = frame;
+	}
+
+	@Override
+	public int getSize() {
+		return frame.getCurves().size();
+	}
+
+	@Override
+	public String getElementAt(int index) {
+		return "  " + frame.getCurves().get(index).getName();
+	}
+
+	/**
+	 * Called once curves were added from index0 to index1, both included.
+	 */
+	public void curvesAdded(int index0, int index1) {
+		if (index0 <= index1) {
+			fireIntervalAdded(this, index0, index1);
+		}
+	}
+
+	/**
+	 * Called once the curves from index0 to index1, both included, were removed.
+	 */
+	public void curvesRemoved(int index0, int index1) {
+		if (index0 <= index1) {
+			fireIntervalRemoved(this, index0, index1);
+		}
+	}
+
+	/**
+	 * Called once the curves at the given indices were removed. One event is sent
+	 * for each run of removed curves, starting from the end of the list so that
+	 * the indices of the other runs still hold.
+	 */
+	public void curvesRemoved(BitSet removed) {
+		int last = removed.length() - 1;
+		while (last >= 0) {
+			int first = removed.previousClearBit(last) + 1;
+			fireIntervalRemoved(this, first, last);
+			last = removed.previousSetBit(first - 1);
+		}
+	}
+
+	/**
+	 * Called once the curves from index0 to index1, both included, changed.
+	 */
+	public void curvesChanged(int index0, int index1) {
+		if (index0 <= index1) {
+			fireContentsChanged(this, index0, index1);
+		}
+	}
+}
@@ -0,0 +1,326 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.gui;
+
+import java.util.BitSet;
+
+import javax.swing.ListSelectionModel;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+
+import sc.fiji.kappa.curve.BezierGroup;
+
+/**
+ * The selection of the curve list. It keeps no state of its own, but reads and
+ * changes the selection of the curves of a {@link KappaFrame}, so the list and
+ * the curves can't disagree. Listeners are told about the range of indices that
+ * may have changed. As with the default model, each change made while the
+ * value is adjusting sends an adjusting event, so the list keeps up with a
+ * drag, and one final event covering all of them is sent once the adjusting
+ * ends. A whole selection can be replaced with a single event through
+ * {@link #setSelection(BitSet)}.
+ */
+public class CurveSelectionModel implements ListSelectionModel {
+
+	private final KappaFrame frame;
+	private final EventListenerList listeners = new EventListenerList();
+
+	private int selectionMode = MULTIPLE_INTERVAL_SELECTION;
+	private int anchorIndex = -1;
+	private int leadIndex = -1;
+	private boolean valueIsAdjusting;
+
+	// The range of indices changed while the value is adjusting
+	private int firstChangedIndex = Integer.MAX_VALUE;
+	private int lastChangedIndex = -1;
+
+	public CurveSelectionModel(KappaFrame frame) {
+		this.frame = frame;
+	}
+
+	private BezierGroup curves() {
+		return frame.getCurves();
+	}
+
+	@Override
+	public void setSelectionInterval(int index0, int index1) {
+		if (index0 == -1 || index1 == -1) {
+			return;
+		}
+		if (selectionMode == SINGLE_SELECTION) {
+			index0 = index1;
+		}
+		if (!inRange(index0, index1)) {
+			return;
+		}
+		int first = Math.min(index0, index1);
+		int last = Math.max(index0, index1);
+		if (curves().isCurveSelected()) {
+			first = Math.min(first, curves().getMinSelectedIndex());
+			last = Math.max(last, curves().getMaxSelectedIndex());
+		}
+		curves().setAllUnselected();
+		curves().setSelected(Math.min(index0, index1), Math.min(Math.max(index0, index1), curves().size() - 1),
+				true);
+		updateLeadAnchorIndices(index0, index1);
+		fireValueChanged(first, last);
+	}
+
+	@Override
+	public void addSelectionInterval(int index0, int index1) {
+		if (index0 == -1 || index1 == -1) {
+			return;
+		}
+		if (selectionMode != MULTIPLE_INTERVAL_SELECTION) {
+			setSelectionInterval(index0, index1);
+			return;
+		}
+		if (!inRange(index0, index1)) {
+			return;
+		}
+		curves().setSelected(Math.min(index0, index1), Math.min(Math.max(index0, index1), curves().size() - 1),
+				true);
+		updateLeadAnchorIndices(index0, index1);
+		fireValueChanged(Math.min(index0, index1), Math.max(index0, index1));
+	}
+
+	@Override
+	public void removeSelectionInterval(int index0, int index1) {
+		if (index0 == -1 || index1 == -1) {
+			return;
+		}
+		int last = Math.min(Math.max(index0, index1), curves().size() - 1);
+		if (last >= 0) {
+			curves().setSelected(Math.min(index0, index1), last, false);
+		}
+		updateLeadAnchorIndices(index0, index1);
+		fireValueChanged(Math.min(index0, index1), Math.max(index0, index1));
+	}
+
+	/**
+	 * Replaces the selection with the curves of a set of indices, and tells the
+	 * listeners once about the range that covers both the old and the new
+	 * selection. The lead and the anchor move to the highest selected index.
+	 */
+	public void setSelection(BitSet selected) {
+		int first = selected.nextSetBit(0);
+		int last = selected.length() - 1;
+		if (curves().isCurveSelected()) {
+			first = first == -1 ? curves().getMinSelectedIndex() : Math.min(first, curves().getMinSelectedIndex());
+			last = Math.max(last, curves().getMaxSelectedIndex());
+		}
+		curves().setSelection(selected);
+		if (!selected.isEmpty()) {
+			updateLeadAnchorIndices(selected.length() - 1, selected.length() - 1);
+		}
+		if (last >= 0) {
+			fireValueChanged(first, last);
+		}
+	}
+
+	private boolean inRange(int index0, int index1) {
+		return Math.min(index0, index1) < curves().size();
+	}
+
+	@Override
+	public int getMinSelectionIndex() {
+		return curves().getMinSelectedIndex();
+	}
+
+	@Override
+	public int getMaxSelectionIndex() {
+		return curves().getMaxSelectedIndex();
+	}
+
+	@Override
+	public boolean isSelectedIndex(int index) {
+		return index >= 0 && index < curves().size() && curves().isSelected(index);
+	}
+
+	@Override
+	public int getAnchorSelectionIndex() {
+		return anchorIndex;
+	}
+
+	@Override
+	public void setAnchorSelectionIndex(int index) {
+		anchorIndex = index;
+	}
+
+	@Override
+	public int getLeadSelectionIndex() {
+		return leadIndex;
+	}
+
+	@Override
+	public void setLeadSelectionIndex(int index) {
+		// As for the default model, the selection between the anchor and the lead
+		// follows the state of the anchor
+		if (anchorIndex == -1 || index == -1) {
+			if (anchorIndex == -1) {
+				leadIndex = index;
+			}
+			return;
+		}
+		if (leadIndex == -1) {
+			leadIndex = index;
+		}
+		boolean select = isSelectedIndex(anchorIndex);
+		int oldFirst = Math.min(anchorIndex, leadIndex);
+		int oldLast = Math.max(anchorIndex, leadIndex);
+		int newFirst = Math.min(anchorIndex, index);
+		int newLast = Math.max(anchorIndex, index);
+		leadIndex = index;
+
+		int last = Math.min(Math.max(oldLast, newLast), curves().size() - 1);
+		for (int i = Math.min(oldFirst, newFirst); i <= last; i++) {
+			boolean inNew = i >= newFirst && i <= newLast;
+			boolean inOld = i >= oldFirst && i <= oldLast;
+			if (select && inNew) {
+				curves().setSelected(i, i, true);
+			} else if (select && inOld) {
+				curves().setSelected(i, i, false);
+			} else if (!select && inNew) {
+				curves().setSelected(i, i, false);
+			} else if (!select && inOld) {
+				curves().setSelected(i, i, true);
+			}
+		}
+		fireValueChanged(Math.min(oldFirst, newFirst), Math.max(oldLast, newLast));
+	}
+
+	@Override
+	public void clearSelection() {
+		if (!curves().isCurveSelected()) {
+			return;
+		}
+		int first = curves().getMinSelectedIndex();
+		int last = curves().getMaxSelectedIndex();
+		curves().setAllUnselected();
+		fireValueChanged(first, last);
+	}
+
+	@Override
+	public boolean isSelectionEmpty() {
+		return !curves().isCurveSelected();
+	}
+
+	@Override
+	public void insertIndexInterval(int index, int length, boolean before) {
+		// The curves have already moved their selection, so only the anchor and
+		// the lead have to follow
+		int inserted = before ? index : index + 1;
+		if (anchorIndex >= inserted) {
+			anchorIndex += length;
+		}
+		if (leadIndex >= inserted) {
+			leadIndex += length;
+		}
+	}
+
+	@Override
+	public void removeIndexInterval(int index0, int index1) {
+		int first = Math.min(index0, index1);
+		int last = Math.max(index0, index1);
+		anchorIndex = removeIndex(anchorIndex, first, last);
+		leadIndex = removeIndex(leadIndex, first, last);
+	}
+
+	private static int removeIndex(int index, int first, int last) {
+		if (index > last) {
+			return index - (last - first + 1);
+		}
+		return index >= first ? first - 1 : index;
+	}
+
+	@Override
+	public void setValueIsAdjusting(boolean valueIsAdjusting) {
+		if (this.valueIsAdjusting == valueIsAdjusting) {
+			return;
+		}
+		this.valueIsAdjusting = valueIsAdjusting;
+		if (!valueIsAdjusting && lastChangedIndex >= 0) {
+			int first = firstChangedIndex;
+			int last = lastChangedIndex;
+			firstChangedIndex = Integer.MAX_VALUE;
+			lastChangedIndex = -1;
+			fireValueChanged(first, last, false);
+		}
+	}
+
+	@Override
+	public boolean getValueIsAdjusting() {
+		return valueIsAdjusting;
+	}
+
+	@Override
+	public void setSelectionMode(int selectionMode) {
+		this.selectionMode = selectionMode;
+	}
+
+	@Override
+	public int getSelectionMode() {
+		return selectionMode;
+	}
+
+	@Override
+	public void addListSelectionListener(ListSelectionListener listener) {
+		listeners.add(ListSelectionListener.class, listener);
+	}
+
+	@Override
+	public void removeListSelectionListener(ListSelectionListener listener) {
+		listeners.remove(ListSelectionListener.class, listener);
+	}
+
+	private void updateLeadAnchorIndices(int anchorIndex, int leadIndex) {
+		this.anchorIndex = anchorIndex;
+		this.leadIndex = leadIndex;
+	}
+
+	/**
+	 * Tells the listeners that the selection of the curves from firstIndex to
+	 * lastIndex may have changed. This is also for code that changes the
+	 * selection of the curves directly, such as when they are replaced.
+	 */
+	public void fireValueChanged(int firstIndex, int lastIndex) {
+		if (valueIsAdjusting) {
+			firstChangedIndex = Math.min(firstChangedIndex, firstIndex);
+			lastChangedIndex = Math.max(lastChangedIndex, lastIndex);
+		}
+		fireValueChanged(firstIndex, lastIndex, valueIsAdjusting);
+	}
+
+	private void fireValueChanged(int firstIndex, int lastIndex, boolean isAdjusting) {
+		ListSelectionEvent event = new ListSelectionEvent(this, firstIndex, lastIndex, isAdjusting);
+		for (ListSelectionListener listener : listeners.getListeners(ListSelectionListener.class)) {
+			listener.valueChanged(event);
+		}
+	}
+}
@@ -25,27 +25,37 @@
  */
 package sc.fiji.kappa.gui;
 
+import java.awt.GridLayout;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import javax.swing.JCheckBox;
 import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import org.apache.commons.io.FilenameUtils;
 
-import com.opencsv.CSVWriter;
-
 import ij.io.FileInfo;
 import sc.fiji.kappa.curve.BezierGroup;
 import sc.fiji.kappa.curve.Curve;
+import sc.fiji.kappa.io.CsvWriter;
+import sc.fiji.kappa.io.CurveRecord;
+import sc.fiji.kappa.io.CurveSamples;
+import sc.fiji.kappa.io.NpzWriter;
+import sc.fiji.kappa.metrics.PerformanceMetrics;
+import sc.fiji.kappa.metrics.Stage;
 
 public class CurvesExporter {
 
+	// The default arc length between resampled points, in um
+	public static final double DEFAULT_RESAMPLE_SPACING = 0.1;
+
 	private KappaFrame frame;
 
 	public CurvesExporter(KappaFrame frame) {
@@ -73,14 +83,45 @@ public class CurvesExporter {
 			}
 		}
 
+		FileNameExtensionFilter npzFilter = new FileNameExtensionFilter("NumPy Archive (.npz)", "npz");
+		kappaExport.addChoosableFileFilter(new FileNameExtensionFilter("Compressed CSV File (.csv.gz)", "gz"));
+		if (!exportAveragePerCurve) {
+			kappaExport.addChoosableFileFilter(npzFilter);
+		}
 		kappaExport.setFileFilter(new FileNameExtensionFilter("CSV File", "csv"));
 		kappaExport.setDialogTitle("Export Curve Data");
 
+		// When exporting all points, they can instead be resampled at a fixed spacing
+		JCheckBox resampleBox = new JCheckBox("Resample Points");
+		JTextField spacingField = new JTextField(Double.toString(DEFAULT_RESAMPLE_SPACING));
+		if (!exportAveragePerCurve) {
+			JPanel resamplePanel = new JPanel(new GridLayout(3, 1));
+			resamplePanel.add(resampleBox);
+			resamplePanel.add(new JLabel("Spacing (um):"));
+			resamplePanel.add(spacingField);
+			kappaExport.setAccessory(resamplePanel);
+		}
+
 		// Handles export button action.
 		int returnVal = kappaExport.showSaveDialog(frame);
 		if (returnVal == JFileChooser.APPROVE_OPTION) {
 			File file = kappaExport.getSelectedFile();
-			exportToFile(file, exportAveragePerCurve);
+			double spacing = 0;
+			if (resampleBox.isSelected()) {
+				try {
+					spacing = Double.parseDouble(spacingField.getText());
+				} catch (NumberFormatException e) {
+					spacing = 0;
+				}
+				if (!(spacing > 0)) {
+					throw new IOException("The resampling spacing must be a positive number of um");
+				}
+			}
+			if (kappaExport.getFileFilter() == npzFilter || file.getName().toLowerCase().endsWith(".npz")) {
+				exportToNpz(file, spacing);
+			} else {
+				exportToFile(file, exportAveragePerCurve, spacing);
+			}
 		}
 	}
 
@@ -89,54 +130,185 @@ public class CurvesExporter {
 	}
 
 	public void exportToFile(File file, boolean exportAveragePerCurve) throws IOException {
+		exportToFile(file, exportAveragePerCurve, 0);
+	}
 
+	/**
+	 * Exports the curves to a CSV file.
+	 *
+	 * @param exportAveragePerCurve
+	 *            Whether to write one row per curve rather than one per point
+	 * @param resampleSpacing
+	 *            If positive, the points of each curve are resampled at this
+	 *            arc-length spacing in um, rather than written as they are fitted.
+	 *            Only used when exporting all points.
+	 */
+	public void exportToFile(File file, boolean exportAveragePerCurve, double resampleSpacing) throws IOException {
+		long start = PerformanceMetrics.start();
 		BezierGroup curves = frame.getCurves();
 
-		// Appends a .csv
-		if (!file.getPath().toLowerCase().endsWith(".csv")) {
+		// Appends a .csv, unless a gzip compressed .csv.gz file was chosen
+		String path = file.getPath().toLowerCase();
+		if (!path.endsWith(".csv") && !path.endsWith(".csv.gz")) {
 			file = new File(file.getPath() + ".csv");
 		}
 
-		CSVWriter writer = new CSVWriter(new FileWriter(file.getAbsoluteFile()));
+		// The rows are written out as they are produced by the curves
+		try (CsvWriter writer = CsvWriter.open(file.getAbsoluteFile())) {
+			// Write headers
+			writer.field("Curve Name");
 
-		// Write headers
-		List<String> headers = new ArrayList<>();
-		headers.add("Curve Name");
+			writer.field("Curve Length (um)");
+			writer.field("Average Curvature (um-1)");
+			writer.field("Curvature Std (um-1)");
 
-		headers.add("Curve Length (um)");
-		headers.add("Average Curvature (um-1)");
-		headers.add("Curvature Std (um-1)");
+			writer.field("X-Coordinate (um)");
+			writer.field("Y-Coordinate (um)");
+			writer.field("Point Curvature (um-1)");
+			writer.field("Point Curvature Sign");
 
-		headers.add("X-Coordinate (um)");
-		headers.add("Y-Coordinate (um)");
-		headers.add("Point Curvature (um-1)");
-		headers.add("Point Curvature Sign");
+			writer.field("Red Intensity");
+			writer.field("Green Intensity");
+			writer.field("Blue Intensity");
+			writer.endRow();
 
-		headers.add("Red Intensity");
-		headers.add("Green Intensity");
-		headers.add("Blue Intensity");
-		writer.writeNext(headers.stream().toArray(String[]::new));
+			for (Curve c : curves) {
+				if (!exportAveragePerCurve && resampleSpacing > 0) {
+					writeResampledValues(writer, c, resampleSpacing);
+				} else {
+					c.writeValues(writer, !exportAveragePerCurve);
+				}
+			}
+		}
+		PerformanceMetrics.stop(Stage.EXPORT, start, curves.size());
+	}
+
+	/**
+	 * Writes one row per resampled point of a curve, with the same columns as the
+	 * export of all data points.
+	 */
+	private void writeResampledValues(CsvWriter writer, Curve c, double spacing) throws IOException {
+		CurveSamples samples = new CurveSamples(Curve.getMicronPixelFactor());
+		samples.startCurve();
+		c.addResampledSamples(samples, spacing);
 
-		// Not used anymore
-		int w = frame.getCurrImage().getWidth();
-		int h = frame.getCurrImage().getHeight();
-		double[][] averaged = new double[w][h];
+		double[] x = samples.getX();
+		double[] y = samples.getY();
+		double[] k = samples.getCurvature();
+		double[] red = samples.getRed();
+		double[] green = samples.getGreen();
+		double[] blue = samples.getBlue();
+		for (int i = 0; i < samples.size(); i++) {
+			writer.field(c.getName());
 
-		for (Curve c : curves) {
-			StringWriter out = new StringWriter();
-			PrintWriter printWriter = new PrintWriter(out);
+			writer.field(c.getApproxCurveLength());
+			writer.field(c.getAverageCurvature());
+			writer.field(c.getCurvatureStdDev());
 
-			c.printValues(printWriter, averaged, !exportAveragePerCurve);
-			writer.flush();
-			String[] lines = out.toString().split("\n");
+			writer.field(x[i]);
+			writer.field(y[i]);
+			writer.field(Math.abs(k[i]));
+			writer.field(k[i] < 0 ? -1 : 1);
+
+			writer.field(red[i]);
+			writer.field(green[i]);
+			writer.field(blue[i]);
+			writer.endRow();
+		}
+	}
 
-			for (String line : lines) {
-				writer.writeNext(line.split(","));
+	/**
+	 * Exports the sample points and the keyframes of all curves as arrays in a
+	 * NumPy .npz archive, which pykappa.io.load_npz memory-maps. The samples of
+	 * all curves are concatenated, with curve_offsets giving the index of the
+	 * first sample of each curve. Keyframes are stored the same way, with
+	 * keyframe_offsets into keyframe_frame and ctrl_pt_offsets into ctrl_pts.
+	 */
+	public void exportToNpz(File file) throws IOException {
+		exportToNpz(file, 0);
+	}
+
+	/**
+	 * Exports the curves to a NumPy .npz archive.
+	 *
+	 * @param resampleSpacing
+	 *            If positive, the samples of each curve are taken at this
+	 *            arc-length spacing in um, rather than at the fitted points
+	 */
+	public void exportToNpz(File file, double resampleSpacing) throws IOException {
+		long start = PerformanceMetrics.start();
+		BezierGroup curves = frame.getCurves();
+		int t = frame.getControlPanel().getCurrentLayerSlider().getValue();
+
+		// Appends a .npz
+		if (!file.getPath().toLowerCase().endsWith(".npz")) {
+			file = new File(file.getPath() + ".npz");
+		}
+
+		CurveSamples samples = new CurveSamples(Curve.getMicronPixelFactor());
+		int[] curveType = new int[curves.size()];
+		byte[] curveOpen = new byte[curves.size()];
+		long[] keyframeOffsets = new long[curves.size() + 1];
+		List<CurveRecord> records = new ArrayList<>(curves.size());
+		int noKeyframes = 0, noCtrlPts = 0;
+		for (int n = 0; n < curves.size(); n++) {
+			Curve c = curves.get(n);
+			samples.startCurve();
+			if (resampleSpacing > 0) {
+				c.addResampledSamples(samples, resampleSpacing);
+			} else {
+				c.addSamples(samples);
+			}
+
+			CurveRecord record = CurveRecord.of(c);
+			records.add(record);
+			curveType[n] = record.getType();
+			curveOpen[n] = (byte) (record.isOpen() ? 1 : 0);
+			keyframeOffsets[n] = noKeyframes;
+			noKeyframes += record.getNoKeyframes();
+			noCtrlPts += record.getNoKeyframes() * record.getNoCtrlPts();
+		}
+		keyframeOffsets[curves.size()] = noKeyframes;
+
+		// The control points of each keyframe, in pixels, as in .kapp files
+		int[] keyframeFrame = new int[noKeyframes];
+		long[] ctrlPtOffsets = new long[noKeyframes + 1];
+		double[] ctrlPts = new double[2 * noCtrlPts];
+		int k = 0, i = 0;
+		for (CurveRecord record : records) {
+			for (int j = 0; j < record.getNoKeyframes(); j++) {
+				keyframeFrame[k] = record.getFrame(j);
+				ctrlPtOffsets[k++] = i / 2;
 			}
+			System.arraycopy(record.getCoords(), 0, ctrlPts, i, record.getCoords().length);
+			i += record.getCoords().length;
 		}
+		ctrlPtOffsets[noKeyframes] = noCtrlPts;
+
+		int[] sampleFrame = new int[samples.size()];
+		Arrays.fill(sampleFrame, t);
 
-		// close the writer
-		writer.close();
+		try (NpzWriter out = NpzWriter.open(file)) {
+			out.write("x", samples.getX());
+			out.write("y", samples.getY());
+			out.write("curvature", samples.getCurvature());
+			out.write("red", samples.getRed());
+			out.write("green", samples.getGreen());
+			out.write("blue", samples.getBlue());
+			out.write("arc_length", samples.getArcLength());
+			out.write("frame", sampleFrame);
+			out.write("curve_offsets", samples.getCurveOffsets());
+
+			out.write("curve_type", curveType);
+			out.write("curve_open", curveOpen);
+			out.write("keyframe_offsets", keyframeOffsets);
+			out.write("keyframe_frame", keyframeFrame);
+			out.write("ctrl_pt_offsets", ctrlPtOffsets);
+			out.write("ctrl_pts", ctrlPts, noCtrlPts, 2);
+
+			out.write("micron_pixel_factor", new double[] { Curve.getMicronPixelFactor() });
+		}
+		PerformanceMetrics.stop(Stage.EXPORT, start, curves.size());
 	}
 
 }
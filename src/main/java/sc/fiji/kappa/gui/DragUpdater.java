@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package sc.fiji.kappa.gui;
+
+import java.awt.geom.Point2D;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import sc.fiji.kappa.curve.Curve;
+
+/**
+ * Moves a dragged control point. Drag events are coalesced so that only the
+ * latest mouse position is applied, and only the geometry of the curve is
+ * updated on the EDT. The thresholded pixels, intensities and histograms follow
+ * from a background thread; results for a position the curve has since moved
+ * away from are dropped. The same thread also brings up to date the data of
+ * curves that changed otherwise, see {@link #refresh(Curve)}.
+ */
+public class DragUpdater {
+
+	private KappaFrame frame;
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "Kappa drag updater");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// The latest requested task, so that older queued ones can be skipped
+	private final AtomicInteger latestTask = new AtomicInteger();
+
+	// Only accessed on the EDT
+	private Curve curve;
+	private Point2D pendingPoint;
+	private int pendingLayer;
+	private boolean updateScheduled;
+	private final Set<Curve> refreshing = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	public DragUpdater(KappaFrame frame) {
+		this.frame = frame;
+	}
+
+	/**
+	 * Requests the selected control point of a curve to be moved. Must be called on
+	 * the EDT.
+	 *
+	 * @param curve
+	 *            The curve being edited
+	 * @param p
+	 *            The new position of the control point, in image coordinates
+	 * @param layer
+	 *            The current layer, where the keyframe is set
+	 */
+	public void dragTo(Curve curve, Point2D p, int layer) {
+		if (this.curve != null && this.curve != curve) {
+			update();
+		}
+		this.curve = curve;
+		this.pendingPoint = p;
+		this.pendingLayer = layer;
+		if (!updateScheduled) {
+			updateScheduled = true;
+			SwingUtilities.invokeLater(this::update);
+		}
+	}
+
+	/**
+	 * Applies the last requested position right away, e.g. when the mouse is
+	 * released.
+	 */
+	public void finish() {
+		update();
+		curve = null;
+	}
+
+	/**
+	 * Computes the derived data of a curve in the background if it is out of
+	 * date, and redraws the curves once it is installed. Curves that are being
+	 * dragged or already waiting are left alone. Must be called on the EDT.
+	 */
+	public void refresh(Curve curve) {
+		if (curve == this.curve || !curve.isDerivedDataStale() || !refreshing.add(curve)) {
+			return;
+		}
+		Curve.DerivedDataTask task = curve.createDerivedDataTask();
+		worker.execute(() -> {
+			task.run();
+			SwingUtilities.invokeLater(() -> {
+				refreshing.remove(curve);
+				if (task.install()) {
+					frame.drawImageOverlay();
+				}
+			});
+		});
+	}
+
+	private void update() {
+		updateScheduled = false;
+		if (pendingPoint == null) {
+			return;
+		}
+		curve.addKeyFrame(pendingPoint, pendingLayer);
+		pendingPoint = null;
+		frame.getInfoPanel().repaint();
+		frame.drawImageOverlay();
+
+		Curve.DerivedDataTask task = curve.createDerivedDataTask();
+		int taskNumber = latestTask.incrementAndGet();
+		worker.execute(() -> {
+			if (taskNumber != latestTask.get()) {
+				return;
+			}
+			task.run();
+			SwingUtilities.invokeLater(() -> {
+				if (task.install()) {
+					frame.getInfoPanel().updateHistograms();
+					frame.drawImageOverlay();
+				}
+			});
+		});
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.gui;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+import javax.swing.SwingUtilities;
+
+import sc.fiji.kappa.curve.BSpline;
+import sc.fiji.kappa.curve.CentreLineSampler;
+import sc.fiji.kappa.curve.DataPoints;
+import sc.fiji.kappa.curve.ImagePyramid;
+import sc.fiji.kappa.metrics.FlightRecorder;
+import sc.fiji.kappa.metrics.PerformanceMetrics;
+import sc.fiji.kappa.metrics.Stage;
+
+/**
+ * Fits a set of B-Splines one after the other, each until its error stops
+ * decreasing. The job is meant to run away from the EDT, see
+ * {@link KappaFrame#startFitting(Listener)}. It is cancelled by interrupting its
+ * thread, which the fitting checks for between iterations.
+ * <p>
+ * Each curve is fitted as a copy, away from the curve the EDT draws and hit-tests.
+ * Once the copy is fitted, it is handed back to the curve on the EDT. A curve
+ * whose fit is cancelled keeps the shape it had before the job.
+ * <p>
+ * With coarse-to-fine fitting, downsampled copies of the frame are built once
+ * for the job, in an {@link ImagePyramid}. Each curve is then first fitted on
+ * the coarse levels, from the coarsest one on, and only refined at full
+ * resolution once it is roughly in place.
+ * <p>
+ * With centre-line data, the thresholded pixels around a curve are not fitted
+ * directly. A {@link CentreLineSampler} reduces them to one point per profile
+ * across the curve instead.
+ */
+public class FittingJob implements Callable<Map<BSpline, Double>> {
+
+	/**
+	 * Receives the progress of a job, on the thread that runs the job.
+	 */
+	public interface Listener {
+
+		void progress(FittingProgress progress);
+	}
+
+	private final KappaFrame frame;
+	private final List<BSpline> curves;
+	private final int t;
+	private final boolean adjustControlPoints;
+	private final boolean coarseToFine;
+	private final boolean centreLine;
+	private final Listener listener;
+
+	/**
+	 * @param t
+	 *            The frame to fit the curves in
+	 * @param adjustControlPoints
+	 *            Whether to remove the control points that are not needed once a
+	 *            curve is fitted
+	 * @param coarseToFine
+	 *            Whether to fit the curves on downsampled copies of the frame
+	 *            first
+	 * @param centreLine
+	 *            Whether to reduce the data points around each curve to points on
+	 *            its centre-line
+	 */
+	public FittingJob(KappaFrame frame, List<BSpline> curves, int t, boolean adjustControlPoints,
+			boolean coarseToFine, boolean centreLine, Listener listener) {
+		this.frame = frame;
+		this.curves = curves;
+		this.t = t;
+		this.adjustControlPoints = adjustControlPoints;
+		this.coarseToFine = coarseToFine;
+		this.centreLine = centreLine;
+		this.listener = listener;
+	}
+
+	/**
+	 * @return The final error of every curve that was fitted
+	 */
+	@Override
+	public Map<BSpline, Double> call() {
+		long start = PerformanceMetrics.start();
+		// The data points of the whole frame are read once for the job
+		float[] pixelWeights = coarseToFine || centreLine ? frame.getFrameDataWeights() : null;
+		ImagePyramid pyramid = coarseToFine ? buildPyramid(pixelWeights) : null;
+		CentreLineSampler sampler = centreLine ? new CentreLineSampler(pixelWeights, getWidth(), getHeight())
+				: null;
+		Map<BSpline, Double> errors = new LinkedHashMap<>();
+		for (int i = 0; i < curves.size(); i++) {
+			checkCancelled();
+			errors.put(curves.get(i), fit(curves.get(i), i, pyramid, sampler));
+		}
+		PerformanceMetrics.stop(Stage.FIT_CURVES, start, curves.size());
+		return Collections.unmodifiableMap(errors);
+	}
+
+	// The pyramid has as many levels as the curve with the largest data radius
+	// can use, or is null if none of the curves can use a coarse level
+	private ImagePyramid buildPyramid(float[] pixelWeights) {
+		int noLevels = 0;
+		for (BSpline c : curves) {
+			noLevels = Math.max(noLevels, ImagePyramid.getNoLevels(c.getDataRadius()));
+		}
+		if (noLevels == 0) {
+			return null;
+		}
+		return new ImagePyramid(pixelWeights, getWidth(), getHeight(), noLevels);
+	}
+
+	private int getWidth() {
+		return frame.getDisplayedImageStack().getWidth();
+	}
+
+	private int getHeight() {
+		return frame.getDisplayedImageStack().getHeight();
+	}
+
+	private double fit(BSpline c, int index, ImagePyramid pyramid, CentreLineSampler sampler) {
+		double error = Double.MAX_VALUE;
+		double oldError;
+		DataPoints dataPoints;
+
+		// The EDT keeps drawing the curve while it is fitted, so a copy of it is
+		// fitted instead, and only the result is handed back
+		BSpline fitted = c.copy(t);
+
+		// Sets the x and y coordinate to (x-1, y-1), because the image is
+		// zero-indexed in java, we want to 'de-shift' it when we fit the curve
+		fitted.deshiftControlPoints(t);
+
+		// Converts it to an open B-Spline for fitting if it was originally a closed
+		// spline
+		boolean wasOpen = fitted.isOpen();
+		if (!wasOpen) {
+			fitted.convertToOpen(t);
+		}
+		Object event = FlightRecorder.get().beginCurveFit(c.getName(), t);
+		int iterations = 0;
+		if (pyramid != null) {
+			iterations = fitCoarse(fitted, index, pyramid);
+		}
+		do {
+			oldError = error;
+			iterations++;
+			if (sampler != null) {
+				dataPoints = sampler.getDataPoints(fitted, fitted.getDataRadius());
+			} else {
+				dataPoints = fitted.getDataPoints();
+			}
+			error = fitted.fittingIteration(dataPoints, t);
+			progress(c, index, FittingProgress.Phase.FITTING, iterations, Math.min(error, oldError));
+		}
+		while (oldError > error);
+		error = oldError;
+		FlightRecorder.get().endCurveFit(event, iterations, error);
+
+		// Once the fitting has been done, we remove unnecessary control points.
+		if (adjustControlPoints) {
+			progress(c, index, FittingProgress.Phase.ADJUSTING_CONTROL_POINTS, iterations, error);
+			fitted.adjustControlPoints(dataPoints, t);
+		}
+		if (!wasOpen) {
+			fitted.convertToClosed(t);
+		}
+
+		// Sets the x and y coordinate to (x+1, y+1), because the image is
+		// zero-indexed in java, so there's a 1 pixel offset
+		fitted.shiftControlPoints(t);
+		publish(c, fitted);
+		progress(c, index, FittingProgress.Phase.FINISHED, iterations, error);
+		return error;
+	}
+
+	// Hands the fitted copy back to the curve on the EDT, which is the only thread
+	// the curves are changed on, and waits for it so that the job's result
+	// reflects it
+	private void publish(BSpline c, BSpline fitted) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			c.setFromCopy(fitted, t);
+			return;
+		}
+		try {
+			SwingUtilities.invokeAndWait(() -> c.setFromCopy(fitted, t));
+		} catch (InterruptedException e) {
+			// The curve is still updated, only no longer waited for
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Fitting was cancelled");
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException("Could not update " + c.getName(), e.getCause());
+		}
+	}
+
+	// Fits scaled down copies of the curve on the coarse levels of the pyramid,
+	// from the coarsest one on, and returns the number of iterations done
+	private int fitCoarse(BSpline c, int index, ImagePyramid pyramid) {
+		String fittingAlgorithm = frame.getFittingAlgorithm();
+		int iterations = 0;
+		int noLevels = Math.min(pyramid.getNoLevels(), ImagePyramid.getNoLevels(c.getDataRadius()));
+		for (int level = noLevels; level > 0; level--) {
+			double scaleFactor = 1 / ImagePyramid.getScale(level);
+			BSpline coarse = c.scaledCopy(scaleFactor, t);
+			double error = Double.MAX_VALUE;
+			double oldError;
+			do {
+				oldError = error;
+				DataPoints dataPoints = pyramid.getDataPoints(level, coarse, c.getDataRadius() * scaleFactor);
+
+				// There are too few data points to place the control points at this level
+				if (dataPoints.size() < c.getNoCtrlPts()) {
+					break;
+				}
+				iterations++;
+				error = coarse.fittingIteration(dataPoints, t, fittingAlgorithm);
+				progress(c, index, FittingProgress.Phase.COARSE_FITTING, iterations, Math.min(error, oldError));
+			}
+			while (oldError > error);
+			c.setFromScaledCopy(coarse, scaleFactor, t);
+		}
+		return iterations;
+	}
+
+	private void progress(BSpline c, int index, FittingProgress.Phase phase, int iteration, double error) {
+		if (listener != null) {
+			listener.progress(new FittingProgress(c.getName(), index, curves.size(), phase, iteration, error));
+		}
+	}
+
+	private static void checkCancelled() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("Fitting was cancelled");
+		}
+	}
+}
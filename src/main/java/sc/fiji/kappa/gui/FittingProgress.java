@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.gui;
+
+/**
+ * Reports how far a {@link FittingJob} has got with one of its curves.
+ */
+public class FittingProgress {
+
+	public enum Phase {
+		// Iterating on a downsampled copy of the frame
+		COARSE_FITTING,
+		// Iterating until the error stops decreasing
+		FITTING,
+		// Removing control points that are not needed
+		ADJUSTING_CONTROL_POINTS,
+		// The curve is done
+		FINISHED
+	}
+
+	private final String curveName;
+	private final int curveIndex;
+	private final int noCurves;
+	private final Phase phase;
+	private final int iteration;
+	private final double error;
+
+	public FittingProgress(String curveName, int curveIndex, int noCurves, Phase phase, int iteration, double error) {
+		this.curveName = curveName;
+		this.curveIndex = curveIndex;
+		this.noCurves = noCurves;
+		this.phase = phase;
+		this.iteration = iteration;
+		this.error = error;
+	}
+
+	public String getCurveName() {
+		return curveName;
+	}
+
+	/**
+	 * @return The index of the curve among the curves of the job, from 0
+	 */
+	public int getCurveIndex() {
+		return curveIndex;
+	}
+
+	public int getNoCurves() {
+		return noCurves;
+	}
+
+	public Phase getPhase() {
+		return phase;
+	}
+
+	/**
+	 * @return The number of fitting iterations done so far on the curve
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * @return The error of the curve after the last iteration
+	 */
+	public double getError() {
+		return error;
+	}
+
+	@Override
+	public String toString() {
+		String text = "Fitting " + curveName.trim() + " (" + (curveIndex + 1) + "/" + noCurves + ")";
+		switch (phase) {
+			case COARSE_FITTING:
+				return text + ": coarse iteration " + iteration + ", error " + String.format("%.4g", error);
+			case FITTING:
+				return text + ": iteration " + iteration + ", error " + String.format("%.4g", error);
+			case ADJUSTING_CONTROL_POINTS:
+				return text + ": adjusting control points";
+			default:
+				return text + ": done, error " + String.format("%.4g", error);
+		}
+	}
+}
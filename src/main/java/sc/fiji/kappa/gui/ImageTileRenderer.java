@@ -0,0 +1,204 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+package sc.fiji.kappa.gui;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.Icon;
+
+import sc.fiji.kappa.metrics.FlightRecorder;
+import sc.fiji.kappa.metrics.PerformanceMetrics;
+import sc.fiji.kappa.metrics.Stage;
+
+/**
+ * Draws the scaled image and the curve overlay for the visible part of the
+ * drawing pane only. The scaled image is rendered in fixed size tiles that are
+ * cached per zoom level, so memory use no longer grows with the zoom factor.
+ */
+public class ImageTileRenderer implements Icon {
+
+	// Tile edge length in screen pixels
+	public static final int TILE_SIZE = 256;
+
+	// The least recently used tiles are dropped beyond this. 128 RGB tiles of 256 x
+	// 256 pixels take about 32 MB.
+	public static final int MAX_CACHED_TILES = 128;
+
+	private KappaFrame frame;
+	private double scale = 1.0;
+
+	private final Map<Long, BufferedImage> tiles = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+			return size() > MAX_CACHED_TILES;
+		}
+	};
+
+	public ImageTileRenderer(KappaFrame frame) {
+		this.frame = frame;
+	}
+
+	public double getScale() {
+		return scale;
+	}
+
+	public void setScale(double scale) {
+		this.scale = scale;
+	}
+
+	/**
+	 * Drops all cached tiles. Needs to be called whenever the image or the
+	 * background thresholding changes.
+	 */
+	public void invalidate() {
+		tiles.clear();
+	}
+
+	@Override
+	public int getIconWidth() {
+		if (frame.getCurrImage() == null) {
+			return 0;
+		}
+		return (int) (scale * frame.getCurrImage().getWidth());
+	}
+
+	@Override
+	public int getIconHeight() {
+		if (frame.getCurrImage() == null) {
+			return 0;
+		}
+		return (int) (scale * frame.getCurrImage().getHeight());
+	}
+
+	@Override
+	public void paintIcon(Component c, Graphics g, int x, int y) {
+		if (frame.getCurrImage() == null) {
+			return;
+		}
+
+		// Only the part of the image inside the clip, which Swing restricts to the
+		// viewport, is drawn
+		Rectangle visible = new Rectangle(x, y, getIconWidth(), getIconHeight());
+		Rectangle clip = g.getClipBounds();
+		if (clip != null) {
+			visible = visible.intersection(clip);
+		}
+		if (visible.isEmpty()) {
+			return;
+		}
+		visible.translate(-x, -y);
+		long start = PerformanceMetrics.start();
+		Object event = FlightRecorder.get().beginOverlayRepaint(frame.getSelectedCurveName(),
+				frame.getControlPanel().getCurrentLayerSlider().getValue());
+
+		Graphics2D g2 = (Graphics2D) g.create();
+		g2.translate(x, y);
+		for (int ty = visible.y / TILE_SIZE; ty <= (visible.y + visible.height - 1) / TILE_SIZE; ty++) {
+			for (int tx = visible.x / TILE_SIZE; tx <= (visible.x + visible.width - 1) / TILE_SIZE; tx++) {
+				g2.drawImage(getTile(c, tx, ty), tx * TILE_SIZE, ty * TILE_SIZE, null);
+			}
+		}
+
+		// Curves are drawn in image coordinates, so we pass on the visible region
+		// unscaled
+		frame.drawOverlay(g2, scale, new Rectangle2D.Double(visible.x / scale, visible.y / scale,
+				visible.width / scale, visible.height / scale));
+		g2.dispose();
+		FlightRecorder.get().endOverlayRepaint(event, visible.width, visible.height);
+		PerformanceMetrics.stop(Stage.DRAW_OVERLAY, start, (long) visible.width * visible.height);
+	}
+
+	private BufferedImage getTile(Component c, int tx, int ty) {
+		// The zoom level is the integer percentage on the scale slider
+		long key = (Math.round(scale * 100) << 42) | ((long) tx << 21) | ty;
+		BufferedImage tile = tiles.get(key);
+		if (tile == null) {
+			tile = renderTile(c, tx, ty);
+			tiles.put(key, tile);
+		}
+		return tile;
+	}
+
+	private BufferedImage renderTile(Component c, int tx, int ty) {
+		long start = PerformanceMetrics.start();
+		int w = Math.min(TILE_SIZE, getIconWidth() - tx * TILE_SIZE);
+		int h = Math.min(TILE_SIZE, getIconHeight() - ty * TILE_SIZE);
+
+		// Optimizes the image type for drawing onto the screen
+		GraphicsConfiguration config = c.getGraphicsConfiguration();
+		if (config == null) {
+			config = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+					.getDefaultConfiguration();
+		}
+		BufferedImage tile = config.createCompatibleImage(w, h, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = tile.createGraphics();
+		if (frame.getKappaMenubar().getAntialiasingMenu().getState()) {
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+		}
+
+		// Draws the scaled image shifted to the tile origin. Everything outside the
+		// tile is clipped away.
+		g2.translate(-tx * TILE_SIZE, -ty * TILE_SIZE);
+		BufferedImage image = frame.getCurrImage();
+		g2.drawImage(image, 0, 0, getIconWidth(), getIconHeight(), null);
+
+		// Draws the thresholded pixels that fall into this tile on top
+		if (frame.getInfoPanel().getBgCheckBox().isSelected()) {
+			g2.setColor(Color.ORANGE);
+			int minX = Math.max(0, (int) Math.floor(tx * TILE_SIZE / scale) - 1);
+			int maxX = Math.min(image.getWidth() - 1, (int) Math.ceil((tx * TILE_SIZE + w) / scale));
+			int minY = Math.max(0, (int) Math.floor(ty * TILE_SIZE / scale) - 1);
+			int maxY = Math.min(image.getHeight() - 1, (int) Math.ceil((ty * TILE_SIZE + h) / scale));
+			boolean[][] thresholded = frame.getThresholded();
+			for (int i = minX; i <= maxX; i++) {
+				for (int j = minY; j <= maxY; j++) {
+					if (thresholded[i][j]) {
+						g2.fillRect((int) Math.round(i * scale), (int) Math.round(j * scale), (int) Math.round(scale),
+								(int) Math.round(scale));
+					}
+				}
+			}
+		}
+		g2.dispose();
+		PerformanceMetrics.stop(Stage.SCALE_IMAGE, start, (long) w * h);
+		return tile;
+	}
+}
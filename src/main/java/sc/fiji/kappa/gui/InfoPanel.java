@@ -35,6 +35,8 @@ import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
@@ -42,7 +44,6 @@ import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Vector;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -54,10 +55,12 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSlider;
 import javax.swing.JSpinner;
+import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingConstants;
+import javax.swing.Timer;
 import javax.swing.border.EtchedBorder;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -67,6 +70,8 @@ import javax.swing.event.ListSelectionListener;
 import sc.fiji.kappa.curve.BezierCurve;
 import sc.fiji.kappa.curve.BezierGroup;
 import sc.fiji.kappa.curve.Curve;
+import sc.fiji.kappa.curve.Profile;
+import sc.fiji.kappa.metrics.PerformanceMetrics;
 
 public class InfoPanel extends JPanel {
 
@@ -144,19 +149,31 @@ public class InfoPanel extends JPanel {
 	public static final Rectangle DATA_THRESHOLD_LABEL_BOUNDS = new Rectangle(KappaFrame.PANEL_WIDTH - 65, 142, 60, 25);
 	public static final int DEFAULT_DATA_THRESHOLD = 128;
 
+	// Constants for the performance panel
+	final static Rectangle PERFORMANCE_TEXT_BOUNDS = new Rectangle(0, 22, KappaFrame.PANEL_WIDTH - 2, 120);
+	final static Rectangle PERFORMANCE_RESET_BOUNDS = new Rectangle(10, 147, 70, 20);
+	final static Rectangle PERFORMANCE_LOG_BOUNDS = new Rectangle(90, 147, 120, 20);
+	final static int PERFORMANCE_REFRESH_DELAY = 1000;
+
 	// Charting info
 	private PanelGroup panels;
 	private Chart curvatureChart;
+	// The profiles the charts currently show
+	private final Profile[] displayedProfiles = new Profile[4];
 	private Chart debugCurvatureChart;
 	private Chart intensityChartRed;
 	private Chart intensityChartGreen;
 	private Chart intensityChartBlue;
 	private Panel curvaturePanel;
 	private Panel intensityPanel;
+	private Panel performancePanel;
+	private JTextArea performanceText;
+	private Timer performanceTimer;
 
 	// List data
 	private JList<String> list;
-	private Vector<String> listData;
+	private CurveListModel listModel;
+	private CurveSelectionModel selectionModel;
 	private JTextField nameField;
 	private JScrollPane curvesList;
 
@@ -186,6 +203,29 @@ public class InfoPanel extends JPanel {
 
 	private KappaFrame frame;
 
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		updatePerformanceTimer();
+	}
+
+	@Override
+	public void removeNotify() {
+		super.removeNotify();
+		updatePerformanceTimer();
+	}
+
+	private void updatePerformanceTimer() {
+		if (performancePanel.isExpanded() && isDisplayable()) {
+			if (!performanceTimer.isRunning()) {
+				updatePerformanceText();
+				performanceTimer.start();
+			}
+		} else {
+			performanceTimer.stop();
+		}
+	}
+
 	/**
 	 * Constructs a new InfoPanel object
 	 */
@@ -202,9 +242,14 @@ public class InfoPanel extends JPanel {
 		setBorder(BorderFactory.createLineBorder(Color.GRAY));
 		setBorder(BorderFactory.createEtchedBorder(EtchedBorder.LOWERED));
 
-		// Internal JScrollPane for our list of curves
-		setListData(new Vector<String>());
-		setList(new JList<>(getListData()));
+		// Internal JScrollPane for our list of curves. The list reads the curves and
+		// their selection straight from the frame. A fixed cell size spares it from
+		// measuring every entry.
+		listModel = new CurveListModel(frame);
+		selectionModel = new CurveSelectionModel(frame);
+		setList(new JList<>(listModel));
+		getList().setSelectionModel(selectionModel);
+		getList().setPrototypeCellValue("  CURVE 000000");
 
 		// List Selection Listener to match list selection to curve selection (and
 		// whether the delete curve option is enabled)
@@ -212,9 +257,8 @@ public class InfoPanel extends JPanel {
 			@Override
 			public void valueChanged(ListSelectionEvent event) {
 				if (event.getSource() == getList() && !event.getValueIsAdjusting()) {
-					int[] selectedIndices = getList().getSelectedIndices();
-					if (selectedIndices.length == 0) {
-						frame.getCurves().setAllUnselected();
+					int noSelected = frame.getCurves().getNoSelected();
+					if (noSelected == 0) {
 						updateHistograms();
 						frame.getKappaMenubar().getDelete().setEnabled(false);
 
@@ -222,9 +266,8 @@ public class InfoPanel extends JPanel {
 						panels.hide("Curvature Distribution (absolute values)");
 						panels.hide("Intensity Distribution");
 					} else {
-						frame.getCurves().setSelected(selectedIndices);
-						frame.getKappaMenubar().getDelete().setEnabled(true);
-						if (selectedIndices.length == 1) {
+						frame.getKappaMenubar().getDelete().setEnabled(!frame.isFittingRunning());
+						if (noSelected == 1) {
 							updateHistograms();
 
 							// Shows the Histogram Panels when curves are selected
@@ -616,6 +659,65 @@ public class InfoPanel extends JPanel {
 			}
 		});
 
+		// Times of the fitting, drawing and file handling stages, refreshed while the
+		// panel is open
+		performancePanel = new Panel(175, "PERFORMANCE");
+		performancePanel.setExpanded(false);
+		panels.addPanel(performancePanel);
+
+		performanceText = new JTextArea();
+		performanceText.setEditable(false);
+		performanceText.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 9));
+		JScrollPane performanceScrollPane = new JScrollPane(performanceText);
+		performanceScrollPane.setBounds(PERFORMANCE_TEXT_BOUNDS);
+		this.add(performanceScrollPane);
+		performancePanel.addComponent(performanceScrollPane);
+
+		JButton resetMetrics = new JButton("Reset");
+		resetMetrics.setFont(resetMetrics.getFont().deriveFont(Font.PLAIN));
+		resetMetrics.setBounds(PERFORMANCE_RESET_BOUNDS);
+		resetMetrics.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				PerformanceMetrics.reset();
+				updatePerformanceText();
+			}
+		});
+		this.add(resetMetrics);
+		performancePanel.addComponent(resetMetrics);
+
+		JButton logMetrics = new JButton("Write to Log");
+		logMetrics.setFont(logMetrics.getFont().deriveFont(Font.PLAIN));
+		logMetrics.setBounds(PERFORMANCE_LOG_BOUNDS);
+		logMetrics.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				PerformanceMetrics.log(frame.getLog());
+			}
+		});
+		this.add(logMetrics);
+		performancePanel.addComponent(logMetrics);
+
+		// The text is only refreshed while the panel is expanded and the window is
+		// open, so a closed window isn't kept alive by the timer
+		performanceTimer = new Timer(PERFORMANCE_REFRESH_DELAY, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				updatePerformanceText();
+			}
+		});
+		performanceScrollPane.addComponentListener(new ComponentAdapter() {
+			@Override
+			public void componentShown(ComponentEvent e) {
+				updatePerformanceTimer();
+			}
+
+			@Override
+			public void componentHidden(ComponentEvent e) {
+				updatePerformanceTimer();
+			}
+		});
+
 		curvaturePanel = new Panel(110, "Curvature Distribution (absolute values)");
 		curvatureChart = new Chart(new ArrayList<Point2D>());
 		if (KappaFrame.DEBUG_MODE) {
@@ -650,28 +752,36 @@ public class InfoPanel extends JPanel {
 		if (frame.getCurves().getNoSelected() == 0) {
 			return;
 		}
+		// The curve caches its profiles until it changes, so the charts are only
+		// given new data when there is something new to show
 		Curve currEditedCurve = frame.getCurves().getSelected()[0];
-		currEditedCurve.updateIntensities();
-
-		List<Point2D> redIntensities = currEditedCurve.getIntensityDataRed();
-		List<Point2D> greenIntensities = currEditedCurve.getIntensityDataGreen();
-		List<Point2D> blueIntensities = currEditedCurve.getIntensityDataBlue();
-
-		double maxRedValue = redIntensities.stream().map(u -> u.getY()).max(Double::compareTo).get();
-		double maxGreenValue = greenIntensities.stream().map(u -> u.getY()).max(Double::compareTo).get();
-		double maxBlueValue = blueIntensities.stream().map(u -> u.getY()).max(Double::compareTo).get();
-
-		double maxValue = Math.max(maxRedValue, maxGreenValue);
-		maxValue = Math.max(maxValue, maxBlueValue);
-
-		intensityChartRed.setMaxY(maxValue);
-		intensityChartGreen.setMaxY(maxValue);
-		intensityChartBlue.setMaxY(maxValue);
-
-		curvatureChart.setData(currEditedCurve.getCurveData());
-		intensityChartRed.setData(redIntensities);
-		intensityChartGreen.setData(greenIntensities);
-		intensityChartBlue.setData(blueIntensities);
+		Profile curvature = currEditedCurve.getProfile(Curve.PROFILE_CURVATURE);
+		Profile redIntensities = currEditedCurve.getProfile(Curve.PROFILE_RED);
+		Profile greenIntensities = currEditedCurve.getProfile(Curve.PROFILE_GREEN);
+		Profile blueIntensities = currEditedCurve.getProfile(Curve.PROFILE_BLUE);
+
+		if (curvature != displayedProfiles[Curve.PROFILE_CURVATURE]
+			|| redIntensities != displayedProfiles[Curve.PROFILE_RED]
+			|| greenIntensities != displayedProfiles[Curve.PROFILE_GREEN]
+			|| blueIntensities != displayedProfiles[Curve.PROFILE_BLUE])
+		{
+			double maxValue = Math.max(redIntensities.getMaxY(), greenIntensities.getMaxY());
+			maxValue = Math.max(maxValue, blueIntensities.getMaxY());
+
+			intensityChartRed.setMaxY(maxValue);
+			intensityChartGreen.setMaxY(maxValue);
+			intensityChartBlue.setMaxY(maxValue);
+
+			curvatureChart.setData(curvature);
+			intensityChartRed.setData(redIntensities);
+			intensityChartGreen.setData(greenIntensities);
+			intensityChartBlue.setData(blueIntensities);
+
+			displayedProfiles[Curve.PROFILE_CURVATURE] = curvature;
+			displayedProfiles[Curve.PROFILE_RED] = redIntensities;
+			displayedProfiles[Curve.PROFILE_GREEN] = greenIntensities;
+			displayedProfiles[Curve.PROFILE_BLUE] = blueIntensities;
+		}
 
 		if (KappaFrame.DEBUG_MODE) {
 			debugCurvatureChart.setData(currEditedCurve.getDebugCurveData());
@@ -679,6 +789,13 @@ public class InfoPanel extends JPanel {
 		frame.getInfoPanel().repaint();
 	}
 
+	private void updatePerformanceText() {
+		String text = PerformanceMetrics.format();
+		if (!text.equals(performanceText.getText())) {
+			performanceText.setText(text);
+		}
+	}
+
 	protected void setHistogramVisibility(boolean showRed, boolean showGreen, boolean showBlue) {
 		if (!intensityPanel.isExpanded()) {
 			return;
@@ -767,6 +884,18 @@ public class InfoPanel extends JPanel {
 				KappaFrame.PANEL_WIDTH, intensityPanel.getH(), g, Color.BLUE);
 	}
 
+	/**
+	 * Disables the settings that decide the data points of the curves while they
+	 * are being fitted, and enables them again afterwards
+	 */
+	public void setFittingRunning(boolean fittingRunning) {
+		getDataThresholdSlider().setEnabled(!fittingRunning);
+		getDataRangeComboBox().setEnabled(!fittingRunning);
+		getFittingChannelsComboBox().setEnabled(!fittingRunning);
+		getThresholdRadiusSpinner().setEnabled(!fittingRunning);
+		getFittingComboBox().setEnabled(!fittingRunning);
+	}
+
 	public JList<String> getList() {
 		return list;
 	}
@@ -775,12 +904,12 @@ public class InfoPanel extends JPanel {
 		this.list = list;
 	}
 
-	public Vector<String> getListData() {
-		return listData;
+	public CurveListModel getListModel() {
+		return listModel;
 	}
 
-	public void setListData(Vector<String> listData) {
-		this.listData = listData;
+	public CurveSelectionModel getSelectionModel() {
+		return selectionModel;
 	}
 
 	public JTextField getNameField() {
@@ -31,11 +31,7 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Graphics2D;
-import java.awt.GraphicsConfiguration;
-import java.awt.GraphicsDevice;
-import java.awt.GraphicsEnvironment;
 import java.awt.Point;
-import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
@@ -45,22 +41,36 @@ import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Vector;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.swing.AbstractAction;
-import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JScrollPane;
 import javax.swing.JViewport;
 import javax.swing.KeyStroke;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
 import org.scijava.Context;
+import org.scijava.app.StatusService;
+import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
 
 import ij.ImagePlus;
@@ -69,6 +79,9 @@ import sc.fiji.kappa.curve.BSpline;
 import sc.fiji.kappa.curve.BezierGroup;
 import sc.fiji.kappa.curve.BezierPoint;
 import sc.fiji.kappa.curve.Curve;
+import sc.fiji.kappa.curve.CurveIndex;
+import sc.fiji.kappa.curve.ThresholdParameters;
+import sc.fiji.kappa.metrics.FlightRecorder;
 
 public class KappaFrame extends JFrame {
 	// Debugging Constants
@@ -80,6 +93,14 @@ public class KappaFrame extends JFrame {
 	public static final boolean DEFAULT_CTRL_PT_ADJUSTMENT = false;
 	private boolean enableCtrlPtAdjustment = DEFAULT_CTRL_PT_ADJUSTMENT;
 
+	// Whether curves are first fitted on downsampled copies of the frame
+	public static final boolean DEFAULT_COARSE_TO_FINE_FITTING = false;
+	private boolean enableCoarseToFineFitting = DEFAULT_COARSE_TO_FINE_FITTING;
+
+	// Whether the data points are reduced to the centre-line of each curve
+	public static final boolean DEFAULT_CENTRE_LINE_FITTING = false;
+	private boolean enableCentreLineFitting = DEFAULT_CENTRE_LINE_FITTING;
+
 	// Application Constants
 	public static final String APPLICATION_NAME = "Kappa";
 	public static final int APP_DEFAULT_WIDTH = 1250;
@@ -132,9 +153,25 @@ public class KappaFrame extends JFrame {
 	private boolean controlPointSelected;
 	private boolean shiftPressed;
 	private boolean dragged;
-	private boolean fittingRunning;
+	// Read by scripts waiting for a fit as well as by the EDT
+	private volatile boolean fittingRunning;
 	private int prevIndex;
 
+	// Fitting runs on its own thread, one job at a time
+	private final ExecutorService fittingExecutor = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "Kappa fitting");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private Future<Map<BSpline, Double>> fittingJob;
+
+	// Curve whose control point is hovered over, and the marquee being dragged out
+	// with the selection tool, in image coordinates
+	private Curve hoveredCurve;
+	private Point2D marqueeStart;
+	private Rectangle2D marquee;
+	private DragUpdater dragUpdater = new DragUpdater(this);
+
 	private final int INIT_LAYER = 1;
 	private int maxLayer;
 	private int maxLayerDigits;
@@ -144,12 +181,11 @@ public class KappaFrame extends JFrame {
 	private ImagePlus imageStack;
 	private ImageStack[] imageStackLayers;
 	private BufferedImage currImage;
-	private BufferedImage scaled;
+	private ImageTileRenderer imageRenderer;
 	private JLabel currImageLabel;
 	private boolean[][] thresholded;
 	private ScrollDrawingPane scrollPane;
 	private double baseStrokeThickness = Curve.DEFAULT_STROKE_THICKNESS;
-	private BufferedImage combined;
 
 	// Panels
 	private InfoPanel infoPanel;
@@ -160,6 +196,12 @@ public class KappaFrame extends JFrame {
 	@Parameter
 	private Context context;
 
+	@Parameter
+	private LogService log;
+
+	@Parameter
+	private StatusService status;
+
 	public KappaFrame(Context context) {
 
 		// Set up the original frame
@@ -189,8 +231,10 @@ public class KappaFrame extends JFrame {
 		setFittingAlgorithm(FITTING_ALGORITHMS[DEFAULT_FITTING_ALGORITHM]);
 
 		// We define the currentImage as a label so the centering and scaling can be
-		// done by the layout manager
-		setCurrImageLabel(new JLabel());
+		// done by the layout manager. The label paints the image through a tiled
+		// renderer, which only draws what is visible.
+		imageRenderer = new ImageTileRenderer(this);
+		setCurrImageLabel(new JLabel(imageRenderer));
 		getCurrImageLabel().setHorizontalAlignment(SwingConstants.CENTER);
 
 		// We add the JScrollPane containing the desired Image
@@ -308,10 +352,69 @@ public class KappaFrame extends JFrame {
 		return kappaMenubar;
 	}
 
-	public void fitCurves() {
-		// If no curves are selected, no fitting is done
-		if (getCurves().getNoSelected() == 0) {
-			return;
+	public LogService getLog() {
+		return log;
+	}
+
+	/**
+	 * Fits the selected B-Splines, and waits for them to be fitted. On the EDT,
+	 * the fit runs on the EDT itself; elsewhere, it runs on the fitting thread as
+	 * with {@link #startFitting(FittingJob.Listener)}.
+	 *
+	 * @return The final error of every fitted curve
+	 * @throws CancellationException
+	 *             If the fit was cancelled, or the waiting thread interrupted
+	 */
+	public Map<BSpline, Double> fitCurves() {
+		if (SwingUtilities.isEventDispatchThread()) {
+			// Waiting here would keep the job from handing its curves back on the EDT
+			FutureTask<Map<BSpline, Double>> task = createFittingTask(null);
+			if (task == null) {
+				return Collections.emptyMap();
+			}
+			task.run();
+			return waitFor(task);
+		}
+		FutureTask<Future<Map<BSpline, Double>>> start = new FutureTask<>(() -> startFitting(null));
+		invokeAndWait(start);
+		return waitFor(waitFor(start));
+	}
+
+	/**
+	 * Fits the selected B-Splines in the background, one after the other. The
+	 * curves cannot be edited, deleted or loaded, and neither the frame nor the
+	 * image can be changed until the job is done. Each curve is fitted as a copy,
+	 * and takes its fitted shape on the EDT. Progress is shown in the status bar,
+	 * and the job can be cancelled with {@link #cancelFitting()}. The frame is
+	 * released before the job completes, so it can be used as soon as the job is
+	 * waited for. Must be called on the EDT.
+	 *
+	 * @param listener
+	 *            Also receives the progress of the job, on the fitting thread. May
+	 *            be null.
+	 * @return The running job, which gives the final error of every fitted curve
+	 */
+	public Future<Map<BSpline, Double>> startFitting(FittingJob.Listener listener) {
+		FutureTask<Map<BSpline, Double>> task = createFittingTask(listener);
+		if (task == null) {
+			return CompletableFuture.completedFuture(Collections.emptyMap());
+		}
+		fittingExecutor.execute(task);
+		return task;
+	}
+
+	// Sets the frame up for fitting the selected B-Splines, and returns the job
+	// to run, or null if there is nothing to fit
+	private FutureTask<Map<BSpline, Double>> createFittingTask(FittingJob.Listener listener) {
+		// If no curves are selected or a fit is still running, no fitting is done
+		List<BSpline> selected = new ArrayList<>();
+		for (Curve c : getCurves().getSelected()) {
+			if (c instanceof BSpline) {
+				selected.add((BSpline) c);
+			}
+		}
+		if (selected.isEmpty() || isFittingRunning() || fittingExecutor.isShutdown()) {
+			return null;
 		}
 
 		// Shows that the fitting algorithm is running
@@ -319,86 +422,118 @@ public class KappaFrame extends JFrame {
 		getOverlay().setVisible(true);
 
 		// We draw an overlay without a built in delay because we turn it off
-		// ourselves.
-		// Hence the
-		// delay interval is -1 by convention.
+		// ourselves. Hence the delay interval is -1 by convention.
 		getOverlay().drawNotification("Fitting in Progress...", getScrollPane().getVisibleRect(), -1);
 
-		// We fit every selected B-Spline.
-		for (Curve c : getCurves().getSelected()) {
-			if (c instanceof BSpline) {
-				// Performs curve fitting with the current B-Spline
-				double error = Double.MAX_VALUE;
-				double oldError;
-				List<Point2D> dataPoints;
-				List<Double> weights;
-
-				// Sets the x and y coordinate to (x-1, y-1), because the image is
-				// zero-indexed
-				// in java,
-				// we want to 'de-shift' it when we fit the curve
-				c.deshiftControlPoints(this.getControlPanel().getCurrentLayerSlider().getValue());
-
-				// If the b-spline is closed, we convert it to an open curve for
-				// fitting.
-				// Converts it to an open B-Spline for fitting if it was originally a
-				// closed
-				// spline
-				boolean wasOpen = ((BSpline) c).isOpen();
-				if (!((BSpline) c).isOpen()) {
-					((BSpline) c).convertToOpen(this.getControlPanel().getCurrentLayerSlider().getValue());
+		FittingJob job = new FittingJob(this, selected, getControlPanel().getCurrentLayerSlider().getValue(),
+			isEnableCtrlPtAdjustment(), isEnableCoarseToFineFitting(), isEnableCentreLineFitting(), progress -> {
+				status.showStatus(progress.getCurveIndex(), progress.getNoCurves(), progress.toString());
+				if (progress.getPhase() == FittingProgress.Phase.FINISHED) {
+					SwingUtilities.invokeLater(() -> {
+						getInfoPanel().repaint();
+						drawImageOverlay();
+						getInfoPanel().updateHistograms();
+					});
 				}
-				do {
-					oldError = error;
-
-					// Checks to make sure that some data points are there
-					dataPoints = c.getThresholdedPixels();
-
-					weights = getWeights(dataPoints);
-					error = ((BSpline) c).fittingIteration(dataPoints, weights, this.getControlPanel()
-						.getCurrentLayerSlider().getValue());
+				if (listener != null) {
+					listener.progress(progress);
 				}
-				while (oldError > error);
-				error = oldError;
+			});
+		FutureTask<Map<BSpline, Double>> task = new FutureTask<>(() -> {
+			try {
+				return job.call();
+			} finally {
+				// The frame is released before the job completes, so that whoever
+				// waits for it can load the next image or curves straight away
+				invokeAndWait(this::fittingFinished);
+			}
+		});
+		fittingJob = task;
+		return task;
+	}
 
-				// Once the fitting has been done, we remove unnecessary control points.
-				if (isEnableCtrlPtAdjustment()) {
-					((BSpline) c).adjustControlPoints(dataPoints, weights, this.getControlPanel()
-						.getCurrentLayerSlider().getValue());
-				}
-				if (!wasOpen) {
-					((BSpline) c).convertToClosed(this.getControlPanel().getCurrentLayerSlider().getValue());
-				}
+	private void fittingFinished() {
+		// Shows that the execution has stopped
+		status.clearStatus();
+		setFittingRunning(false);
+		getOverlay().setVisible(false);
+		getInfoPanel().repaint();
+		drawImageOverlay();
+		getInfoPanel().updateHistograms();
+	}
 
-				// Sets the x and y coordinate to (x+1, y+1), because the image is
-				// zero-indexed
-				// in java, so there's a 1 pixel offset
-				c.shiftControlPoints(this.getControlPanel().getCurrentLayerSlider().getValue());
+	// Runs on the EDT and waits for it, even if the calling thread has been
+	// interrupted to cancel a fit
+	private static void invokeAndWait(Runnable runnable) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			runnable.run();
+			return;
+		}
+		boolean interrupted = Thread.interrupted();
+		try {
+			SwingUtilities.invokeAndWait(runnable);
+		} catch (InterruptedException e) {
+			interrupted = true;
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 
-				// Updates curve display
-				getInfoPanel().repaint();
-				drawImageOverlay();
-				this.getInfoPanel().updateHistograms();
+	private static <T> T waitFor(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for the fit");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
 			}
+			throw new IllegalStateException("Fitting failed", e.getCause());
 		}
+	}
 
-		// Shows that the execution has stopped
-		setFittingRunning(false);
-		getOverlay().setVisible(false);
+	/**
+	 * Stops the running fit after its current iteration.
+	 */
+	public void cancelFitting() {
+		if (fittingJob != null) {
+			fittingJob.cancel(true);
+		}
+	}
+
+	/**
+	 * Cancels any running fit and stops the fitting thread along with the frame.
+	 */
+	@Override
+	public void dispose() {
+		cancelFitting();
+		fittingExecutor.shutdownNow();
+		super.dispose();
 	}
 
 	/**
 	 * Resets the set of curves and the corresponding list
 	 */
 	public void resetCurves() {
-		getInfoPanel().setListData(new Vector<>());
-		getInfoPanel().getList().setListData(getInfoPanel().getListData());
+		int size = getCurves().size();
+		BezierGroup oldCurves = getCurves();
+		oldCurves.clearFrameCaches();
 		setCurves(new BezierGroup(this));
+		getInfoPanel().getListModel().curvesRemoved(0, size - 1);
+		if (oldCurves.isCurveSelected()) {
+			getInfoPanel().getSelectionModel().fireValueChanged(oldCurves.getMinSelectedIndex(),
+					oldCurves.getMaxSelectedIndex());
+		}
 	}
 
 	/**
-	 * Modifies a composite image that is both scaled and has all Bezier Curves
-	 * drawn onto it
+	 * Discards the cached tiles of the scaled image, so that they are rendered
+	 * again from the current image the next time they become visible
 	 *
 	 * @param scale The scale factor to scale the image by
 	 */
@@ -406,54 +541,41 @@ public class KappaFrame extends JFrame {
 		if (getCurrImage() == null) {
 			return;
 		}
-
-		// Optimizes the image type for drawing onto the screen
-		GraphicsEnvironment env = GraphicsEnvironment.getLocalGraphicsEnvironment();
-		GraphicsDevice device = env.getDefaultScreenDevice();
-		GraphicsConfiguration config = device.getDefaultConfiguration();
-
-		int w = (int) (scale * getCurrImage().getWidth());
-		int h = (int) (scale * getCurrImage().getHeight());
-		setScaled(config.createCompatibleImage(w, h, BufferedImage.TYPE_INT_RGB));
-		Graphics2D g2 = getScaled().createGraphics();
-		if (getKappaMenubar().getAntialiasingMenu().getState()) {
-			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-				RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-		}
-		g2.drawImage(getCurrImage(), 0, 0, w, h, null);
-
-		// Draws the thresholded pixels on top
-		if (getInfoPanel().getBgCheckBox().isSelected()) {
-			g2.setColor(Color.ORANGE);
-			for (int i = 0; i < getCurrImage().getWidth(); i++) {
-				for (int j = 0; j < getCurrImage().getHeight(); j++) {
-					if (getThresholded()[i][j]) {
-						g2.fillRect((int) Math.round(i * scale), (int) Math.round(j * scale), (int) Math.round(
-							scale), (int) Math.round(scale));
-					}
-				}
-			}
-		}
-		g2.dispose();
+		imageRenderer.setScale(scale);
+		imageRenderer.invalidate();
 	}
 
 	/**
-	 * Draws everything on top of the scaled image
+	 * Repaints the scaled image with everything drawn on top of it
 	 */
 	public void drawImageOverlay() {
 		if (getCurrImage() == null) {
 			return;
 		}
-		double scale = this.getControlPanel().getScaleSlider().getValue() / 100.0;
-		this.combined = new BufferedImage(getScaled().getWidth(), getScaled().getHeight(),
-			BufferedImage.TYPE_INT_RGB);
-		Graphics2D g2 = (Graphics2D) combined.getGraphics();
-		g2.drawImage(getScaled(), 0, 0, null);
+		imageRenderer.setScale(this.getControlPanel().getScaleSlider().getValue() / 100.0);
 
-		// Draws the data threshold pixels on top
+		// The label has to lay out again if the size of the scaled image changed
+		getCurrImageLabel().revalidate();
+		getCurrImageLabel().repaint();
+	}
+
+	/**
+	 * Draws everything on top of the scaled image. Unselected curves outside the
+	 * visible region are skipped.
+	 *
+	 * @param g2 The graphics context, in scaled image coordinates
+	 * @param scale The scale factor of the image
+	 * @param visible The visible region, in unscaled image coordinates
+	 */
+	protected void drawOverlay(Graphics2D g2, double scale, Rectangle2D visible) {
+		// Draws the data threshold pixels on top. Pixels that are out of date are
+		// found again in the background, and drawn once they are
 		if (getInfoPanel().getShowDatapointsCheckBox().isSelected()) {
 			for (Curve c : getCurves()) {
-				c.drawThresholdedPixels(g2, scale);
+				if (c.intersects(visible)) {
+					dragUpdater.refresh(c);
+					c.drawThresholdedPixels(g2, scale);
+				}
 			}
 		}
 
@@ -469,10 +591,19 @@ public class KappaFrame extends JFrame {
 			}
 		}
 
-		getCurves().draw(g2, scale, currentPoint, getKappaMenubar().getBoundingBoxMenu().getState(),
+		getCurves().draw(g2, scale, visible, currentPoint, getKappaMenubar().getBoundingBoxMenu().getState(),
 			getKappaMenubar().getScaleCurvesMenu().getState(), getKappaMenubar().getTangentMenu()
 				.getState(), getInfoPanel().getShowRadiusCheckBox().isSelected());
 
+		// Draws the selection marquee
+		if (marquee != null) {
+			g2.setColor(Color.LIGHT_GRAY);
+			g2.setStroke(new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10, new float[] { 4,
+				4 }, 0));
+			g2.drawRect((int) (marquee.getX() * scale), (int) (marquee.getY() * scale), (int) (marquee
+				.getWidth() * scale), (int) (marquee.getHeight() * scale));
+		}
+
 		// Draws the points we've built so far if a complete Bezier Curve has not
 		// been
 		// formed
@@ -498,13 +629,12 @@ public class KappaFrame extends JFrame {
 						.getCtrlPointSize() * scale), (int) (2 * this.getCtrlPointSize() * scale));
 			}
 		}
-
-		getCurrImageLabel().setIcon(new ImageIcon(combined));
 	}
 
 	protected void setLayer(int layer, double scale) {
 		// If there is an open image stack, it will draw it in the drawing panel
 		// Also changes the frame for our bezier curves, for keyframing.
+		Object event = FlightRecorder.get().beginFrameChange(getSelectedCurveName(), layer, getCurves().size());
 		setFrame(layer);
 		setCurrImage(this.getDisplayedImageStack().getBufferedImage());
 		setScaledImage(scale);
@@ -512,6 +642,18 @@ public class KappaFrame extends JFrame {
 
 		// Updates histograms and background thresholds
 		updateDisplayed();
+		FlightRecorder.get().endFrameChange(event);
+	}
+
+	/**
+	 * @return The name of the selected curve, or an empty string if none or
+	 *         several are selected
+	 */
+	protected String getSelectedCurveName() {
+		if (getCurves().getNoSelected() != 1) {
+			return "";
+		}
+		return getCurves().getSelected()[0].getName();
 	}
 
 	protected void setDisplayedChannels(boolean showRed, boolean showGreen, boolean showBlue) {
@@ -596,6 +738,50 @@ public class KappaFrame extends JFrame {
 					.getValue() / 100.0 * getCurrImage().getHeight())) / 2 - 3);
 	}
 
+	/**
+	 * Takes an (x, y) coordinate on the drawing pane and translates it into the
+	 * corresponding point of the unscaled image
+	 *
+	 * @param p The original (x,y) point
+	 * @return The point in image coordinates
+	 */
+	private Point2D toImagePoint(Point p) {
+		Point mapped = mapPoint(p);
+		double scale = this.getControlPanel().getScaleSlider().getValue() / 100.0;
+		return new Point2D.Double(mapped.getX() / scale, mapped.getY() / scale);
+	}
+
+	// How far from a control point, in image pixels, a click still selects it
+	private double getControlPointRadius(double scale) {
+		return getSelectedCtrlPointSize() + Curve.CTRL_PT_TOL / scale;
+	}
+
+	/**
+	 * Selects every curve that passes through the marquee, in addition to the
+	 * current selection if SHIFT is pressed
+	 */
+	private void selectCurvesInMarquee() {
+		CurveIndex index = getCurves().getIndex();
+		BitSet selected = new BitSet(getCurves().size());
+		for (Curve c : index.getCurvesIn(marquee)) {
+			for (BezierPoint p : c.getPoints()) {
+				if (marquee.contains(p)) {
+					selected.set(index.indexOf(c));
+					break;
+				}
+			}
+		}
+		if (selected.isEmpty()) {
+			return;
+		}
+		if (isShiftPressed()) {
+			selected.or(getCurves().getSelection());
+		}
+
+		// The list is told about the new selection once, rather than per curve
+		getInfoPanel().getSelectionModel().setSelection(selected);
+	}
+
 	/**
 	 * Takes an input number and returns the number with the given number of
 	 * digits (or more). In other words, this will prepend '0's until the number
@@ -625,50 +811,53 @@ public class KappaFrame extends JFrame {
 	}
 
 	/**
-	 * Gets the weight of the data points depending on their intensity and whether
-	 * we are looking for dark spots or bright spots.
-	 *
-	 * @param dataPoints The data points, in an ArrayList with n elements
-	 * @return An ArrayList with n elements with corresponding weight values.
+	 * The settings that decide which pixels are data points for fitting and how
+	 * much they weigh
+	 */
+	public ThresholdParameters getThresholdParameters() {
+		return new ThresholdParameters(getInfoPanel().getDataThresholdSlider().getValue(), getInfoPanel()
+			.getDataRangeComboBox().getSelectedIndex() == 0, getInfoPanel().getFittingChannelsComboBox()
+				.getSelectedIndex());
+	}
+
+	/**
+	 * Returns the intensity of every pixel of the current frame, as weighted for
+	 * fitting, so that the pixels the curves should follow are the brightest.
 	 */
-	private List<Double> getWeights(List<Point2D> dataPoints) {
-		List<Double> weights = new ArrayList<>(dataPoints.size());
+	float[] getFrameIntensities() {
+		int width = getDisplayedImageStack().getWidth();
+		int height = getDisplayedImageStack().getHeight();
+		int bitDepth = getDisplayedImageStack().getBitDepth();
+		ThresholdParameters parameters = getThresholdParameters();
+		float[] intensities = new float[width * height];
 		ImageUtils imgUtils = new ImageUtils<>();
-		for (Point2D p : dataPoints) {
-			int[] rgb = imgUtils.getPixels(getDisplayedImageStack(), (int) p.getX(), (int) p.getY());
-
-			int channel = getInfoPanel().getFittingChannelsComboBox().getSelectedIndex();
-			double intensity = 0;
-			switch (channel) {
-				case 0:
-					intensity = rgb[0];
-					break;
-				case 1:
-					intensity = rgb[1];
-					break;
-				case 2:
-					intensity = rgb[2];
-					break;
-				case 3:
-					intensity = (rgb[0] + rgb[1] + rgb[2]) / 3;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				intensities[y * width + x] = (float) parameters.getWeight(imgUtils.getPixels(getDisplayedImageStack(),
+					x, y), bitDepth);
 			}
+		}
+		return intensities;
+	}
 
-			// We want the higher weights to be for the darker pixels (with lower
-			// intensities) when
-			// we're looking for darker pixels in the image. Hence we adjust the
-			// weights
-			// here
-			if (getInfoPanel().getDataRangeComboBox().getSelectedIndex() == 1) {
-				if (getDisplayedImageStack().getBitDepth() == 24) // RGB Colour
-				{
-					intensity = 256 - intensity;
-				}
-				else // Grayscale, then 2^bitdepth is the max intensity.
-				{
-					intensity = (int) (Math.pow(2, getDisplayedImageStack().getBitDepth()) - intensity);
+	/**
+	 * Returns the weight of every pixel of the current frame as a data point, or 0
+	 * for the pixels that do not pass the data threshold.
+	 */
+	float[] getFrameDataWeights() {
+		int width = getDisplayedImageStack().getWidth();
+		int height = getDisplayedImageStack().getHeight();
+		int bitDepth = getDisplayedImageStack().getBitDepth();
+		ThresholdParameters parameters = getThresholdParameters();
+		float[] weights = new float[width * height];
+		ImageUtils imgUtils = new ImageUtils<>();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int[] rgb = imgUtils.getPixels(getDisplayedImageStack(), x, y);
+				if (parameters.accepts(rgb)) {
+					weights[y * width + x] = (float) parameters.getWeight(rgb, bitDepth);
 				}
 			}
-			weights.add(intensity);
 		}
 		return weights;
 	}
@@ -705,8 +894,7 @@ public class KappaFrame extends JFrame {
 		this.getInfoPanel().updateHistograms();
 
 		// Updates our list after adding the curve
-		getInfoPanel().getListData().addElement("  CURVE " + getCurves().getCount());
-		getInfoPanel().getList().setListData(getInfoPanel().getListData());
+		getInfoPanel().getListModel().curvesAdded(getCurves().size() - 1, getCurves().size() - 1);
 		getInfoPanel().getList().setSelectedIndex(getCurves().size() - 1);
 		getInfoPanel().getCurvesList().revalidate();
 		getInfoPanel().getPointSlider().setEnabled(true);
@@ -717,25 +905,27 @@ public class KappaFrame extends JFrame {
 	}
 
 	protected void deleteCurve() {
+		// The curves are left alone while they are being fitted
+		if (isFittingRunning()) {
+			return;
+		}
+
 		// Deletes a curve when the user presses DELETE
 		// Deletes any control points not formed into a curve
 		if (getCurrCtrlPt() != 0) {
 			setCurrCtrlPt(0);
 		}
 
-		// We go down the list of indices so that the array indices don't get
-		// changed
-		// when we remove elements
 		if (getInfoPanel().getList().isSelectionEmpty()) {
 			drawImageOverlay();
 			return;
 		}
-		int[] selectedIndices = getInfoPanel().getList().getSelectedIndices();
-		for (int i = selectedIndices.length - 1; i >= 0; i--) {
-			getInfoPanel().getListData().removeElementAt(selectedIndices[i]);
-			getCurves().remove(selectedIndices[i]);
-		}
-		getInfoPanel().getList().setListData(getInfoPanel().getListData());
+
+		// The selected curves are removed in one pass, then the list is told which
+		// runs of entries went away
+		BitSet removed = getCurves().removeSelected();
+		getInfoPanel().getListModel().curvesRemoved(removed);
+		getInfoPanel().getSelectionModel().fireValueChanged(removed.nextSetBit(0), removed.length() - 1);
 		getScrollPane().revalidate();
 		drawImageOverlay();
 		getInfoPanel().repaint();
@@ -768,6 +958,11 @@ public class KappaFrame extends JFrame {
 
 			@Override
 			public void mousePressed(MouseEvent event) {
+				// The curves are left alone while they are being fitted
+				if (isFittingRunning()) {
+					return;
+				}
+
 				// The point slider is only enabled if displaying curves is enabled
 				getInfoPanel().getPointSlider().setEnabled(getCurves().isCurveSelected());
 
@@ -776,13 +971,18 @@ public class KappaFrame extends JFrame {
 				// region.
 				if (getToolPanel().isSelected(0)) {
 					Curve c;
+					double scale = getControlPanel().getScaleSlider().getValue() / 100.0;
+					Point2D imagePoint = toImagePoint(event.getPoint());
+					CurveIndex index = getCurves().getIndex();
 
-					// Selecting a control point
+					// Selecting a control point. Only curves with a control point nearby
+					// are tested.
 					boolean anythingClicked = false;
-					for (Curve curve : getCurves().getSelected()) {
-						if (curve.controlPointIndex(mapPoint(event.getPoint()), getControlPanel()
-							.getCurrentLayerSlider().getValue(), getControlPanel().getScaleSlider().getValue() /
-								100.0, true) != -1)
+					for (Curve curve : index.getCurvesWithControlPointsNear(imagePoint,
+						getControlPointRadius(scale)))
+					{
+						if (curve.isSelected() && curve.controlPointIndex(mapPoint(event.getPoint()),
+							getControlPanel().getCurrentLayerSlider().getValue(), scale, true) != -1)
 						{
 							anythingClicked = true;
 							setCurrEditedCurve(curve);
@@ -793,40 +993,34 @@ public class KappaFrame extends JFrame {
 						return;
 					}
 
-					// Selecting a curve
-					for (int i = 0; i < getCurves().size(); i++) {
+					// Selecting a curve. Only curves whose selection band is near the
+					// point are tested, in list order.
+					List<Curve> candidates = index.getCurvesAt(imagePoint);
+					int[] candidateIndices = new int[candidates.size()];
+					for (int j = 0; j < candidateIndices.length; j++) {
+						candidateIndices[j] = getCurves().indexOf(candidates.get(j));
+					}
+					Arrays.sort(candidateIndices);
+					for (int i : candidateIndices) {
 						if ((c = getCurves().get(i)).isPointOnCurve(mapPoint(event.getPoint()),
-							getControlPanel().getCurrentLayerSlider().getValue(), getControlPanel()
-								.getScaleSlider().getValue() / 100.0))
+							getControlPanel().getCurrentLayerSlider().getValue(), scale))
 						{
 							anythingClicked = true;
-							if (!isShiftPressed()) {
-								getCurves().setAllUnselected();
-							}
 
-							// If the curve is still selected, this means that shift must have
-							// been pressed.
-							// Consequently, clicking the curve once it's already selected
-							// while shift is
-							// pressed implies de-selection
-							if (c.isSelected()) {
-								getCurves().setUnselected(c);
-								if (!isShiftPressed()) {
-									getInfoPanel().getList().clearSelection();
-								}
-								else {
-									getInfoPanel().getList().removeSelectionInterval(i, i);
-								}
+							// The list shares its selection with the curves. Clicking a curve
+							// that is already selected while shift is pressed implies
+							// de-selection.
+							if (isShiftPressed() && c.isSelected()) {
+								getInfoPanel().getList().removeSelectionInterval(i, i);
 							} // Otherwise, we set the curve to selected
 							else {
-								getCurves().setSelected(c);
-								getInfoPanel().updateHistograms();
-								if (!isShiftPressed()) {
-									getInfoPanel().getList().setSelectedIndex(i);
+								if (isShiftPressed()) {
+									getInfoPanel().getList().addSelectionInterval(i, i);
 								}
 								else {
-									getInfoPanel().getList().addSelectionInterval(i, i);
+									getInfoPanel().getList().setSelectedIndex(i);
 								}
+								getInfoPanel().updateHistograms();
 							}
 							getInfoPanel().getCurvesList().revalidate();
 						}
@@ -839,10 +1033,12 @@ public class KappaFrame extends JFrame {
 					// we
 					// deselect everything (if SHIFT isn't being pressed)
 					if (!isShiftPressed()) {
-						getCurves().setAllUnselected();
 						getInfoPanel().getList().clearSelection();
 						getInfoPanel().updateHistograms();
 					}
+
+					// Dragging from here on selects the curves within a marquee
+					marqueeStart = imagePoint;
 				}
 
 				// If the hand mode is enabled, then clicking defines the start point
@@ -859,7 +1055,6 @@ public class KappaFrame extends JFrame {
 					// Once we start a new curve, any previous curves are not selected
 					// anymore
 					if (getCurrCtrlPt() == 0) {
-						getCurves().setAllUnselected();
 						getInfoPanel().getList().clearSelection();
 						getInfoPanel().updateHistograms();
 						setPoints(new ArrayList<>(DEFAULT_NO_CTRL_PTS));
@@ -896,9 +1091,15 @@ public class KappaFrame extends JFrame {
 				// Releasing the mouse deselects the control point
 				if (getToolPanel().isSelected(0)) {
 					if (isControlPointSelected()) {
+						dragUpdater.finish();
 						getCurrEditedCurve().resetControlPointSelection();
 					}
 					setControlPointSelected(false);
+					if (marquee != null) {
+						selectCurvesInMarquee();
+					}
+					marqueeStart = null;
+					marquee = null;
 					drawImageOverlay();
 					getControlPanel().repaint();
 				}
@@ -913,11 +1114,17 @@ public class KappaFrame extends JFrame {
 				requestFocusInWindow();
 				int index;
 				if (getToolPanel().isSelected(0) && getCurves().getNoSelected() != 0) {
-					for (Curve c : getCurves().getSelected()) {
-						if ((index = c.controlPointIndex(mapPoint(event.getPoint()), getControlPanel()
-							.getCurrentLayerSlider().getValue(), getControlPanel().getScaleSlider().getValue() /
-								100.0, false)) != -1)
+					double scale = getControlPanel().getScaleSlider().getValue() / 100.0;
+					for (Curve c : getCurves().getIndex().getCurvesWithControlPointsNear(toImagePoint(event
+						.getPoint()), getControlPointRadius(scale)))
+					{
+						if (c.isSelected() && (index = c.controlPointIndex(mapPoint(event.getPoint()),
+							getControlPanel().getCurrentLayerSlider().getValue(), scale, false)) != -1)
 						{
+							if (hoveredCurve != null && hoveredCurve != c) {
+								hoveredCurve.setHoveredControlPoint(-1);
+							}
+							hoveredCurve = c;
 							c.setHoveredControlPoint(index);
 							drawImageOverlay();
 							return;
@@ -928,21 +1135,14 @@ public class KappaFrame extends JFrame {
 					// need to
 					// update the screen.
 					// Saves computation time.
-					boolean noneHovered = true;
-					for (Curve c : getCurves().getSelected()) {
-						if (c.getHoveredControlPoint() != -1) {
-							noneHovered = false;
-						}
-					}
-					if (noneHovered) {
+					if (hoveredCurve == null) {
 						return;
 					}
 
 					// If we haven't returned yet, none of the control points are hovered
 					// over.
-					for (Curve c : getCurves().getSelected()) {
-						c.setHoveredControlPoint(-1);
-					}
+					hoveredCurve.setHoveredControlPoint(-1);
+					hoveredCurve = null;
 					getInfoPanel().repaint();
 					drawImageOverlay();
 				}
@@ -954,13 +1154,15 @@ public class KappaFrame extends JFrame {
 					// If the selection tool is enabled, and a control point is selected,
 					// dragging
 					// moves the control point
-					if (isControlPointSelected()) {
-						Point2D newPt = mapPoint(event.getPoint());
-						double scale = getControlPanel().getScaleSlider().getValue() / 100.0;
-						getCurrEditedCurve().addKeyFrame(new Point2D.Double(newPt.getX() / scale, newPt.getY() /
-							scale), getControlPanel().getCurrentLayerSlider().getValue());
-						getInfoPanel().updateHistograms();
-						getInfoPanel().repaint();
+					if (isControlPointSelected() && !isFittingRunning()) {
+						dragUpdater.dragTo(getCurrEditedCurve(), toImagePoint(event.getPoint()),
+							getControlPanel().getCurrentLayerSlider().getValue());
+					}
+					else if (marqueeStart != null) {
+						Point2D p = toImagePoint(event.getPoint());
+						marquee = new Rectangle2D.Double(Math.min(p.getX(), marqueeStart.getX()), Math.min(p
+							.getY(), marqueeStart.getY()), Math.abs(p.getX() - marqueeStart.getX()), Math.abs(p
+								.getY() - marqueeStart.getY()));
 						drawImageOverlay();
 					}
 				}
@@ -1179,12 +1381,8 @@ public class KappaFrame extends JFrame {
 		this.currImage = currImage;
 	}
 
-	public BufferedImage getScaled() {
-		return scaled;
-	}
-
-	public void setScaled(BufferedImage scaled) {
-		this.scaled = scaled;
+	public ImageTileRenderer getImageRenderer() {
+		return imageRenderer;
 	}
 
 	public void setCurrImageLabel(JLabel currImageLabel) {
@@ -1257,6 +1455,12 @@ public class KappaFrame extends JFrame {
 
 	public void setFittingRunning(boolean fittingRunning) {
 		this.fittingRunning = fittingRunning;
+
+		// The curves must not change under the fit, so neither can the frame
+		getKappaMenubar().setFittingRunning(fittingRunning);
+		getInfoPanel().setFittingRunning(fittingRunning);
+		getControlPanel().getCurrentLayerSlider().setEnabled(!fittingRunning);
+		getControlPanel().getCancelFittingButton().setEnabled(fittingRunning);
 	}
 
 	public boolean isDragged() {
@@ -1343,6 +1547,22 @@ public class KappaFrame extends JFrame {
 		this.enableCtrlPtAdjustment = enableCtrlPtAdjustment;
 	}
 
+	public boolean isEnableCoarseToFineFitting() {
+		return enableCoarseToFineFitting;
+	}
+
+	public void setEnableCoarseToFineFitting(boolean enableCoarseToFineFitting) {
+		this.enableCoarseToFineFitting = enableCoarseToFineFitting;
+	}
+
+	public boolean isEnableCentreLineFitting() {
+		return enableCentreLineFitting;
+	}
+
+	public void setEnableCentreLineFitting(boolean enableCentreLineFitting) {
+		this.enableCentreLineFitting = enableCentreLineFitting;
+	}
+
 	public double getGlobalThreshold() {
 		return globalThreshold;
 	}
@@ -1424,8 +1644,4 @@ public class KappaFrame extends JFrame {
 		return Curve.SELECTED_CTRL_PT_SIZE * this.baseStrokeThickness;
 	}
 
-	public BufferedImage getCombinedImage() {
-		return this.combined;
-	}
-
 }
@@ -31,17 +31,13 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.geom.Point2D;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.PrintWriter;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Vector;
 
 import javax.swing.ButtonGroup;
-import javax.swing.ImageIcon;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
 import javax.swing.JMenu;
@@ -61,6 +57,7 @@ import ij.IJ;
 import ij.ImagePlus;
 import ij.gui.PolygonRoi;
 import ij.gui.Roi;
+import ij.process.FloatPolygon;
 import ij.io.FileInfo;
 import ij.plugin.ChannelSplitter;
 import ij.plugin.frame.RoiManager;
@@ -68,6 +65,12 @@ import net.imagej.display.ImageDisplay;
 import net.imagej.display.ImageDisplayService;
 import sc.fiji.kappa.curve.BSpline;
 import sc.fiji.kappa.curve.Curve;
+import sc.fiji.kappa.detection.FilamentDetector;
+import sc.fiji.kappa.io.CurveFileReader;
+import sc.fiji.kappa.io.CurveFileWriter;
+import sc.fiji.kappa.io.CurveRecord;
+import sc.fiji.kappa.metrics.PerformanceMetrics;
+import sc.fiji.kappa.metrics.Stage;
 
 public class KappaMenuBar extends JMenuBar {
 
@@ -98,11 +101,13 @@ public class KappaMenuBar extends JMenuBar {
 	private JMenuItem prevFrame, nextFrame, prevKeyframe, nextKeyframe;
 	private JMenuItem adjustBrightnessContrast;
 
-	private JMenuItem delete, enter, fit;
+	private JMenuItem openActiveMenu, importROIsAsCurvesMenu, loadMenu;
+	private JMenuItem delete, enter, fit, detectFilaments;
 	private JCheckBoxMenuItem boundingBoxMenu;
 	private JCheckBoxMenuItem scaleCurvesMenu;
 	private JCheckBoxMenuItem antialiasingMenu;
 	private JCheckBoxMenuItem tangentMenu;
+	private JCheckBoxMenuItem binaryCurveFilesMenu;
 
 	private KappaFrame frame;
 
@@ -145,7 +150,7 @@ public class KappaMenuBar extends JMenuBar {
 		 * }); fileMenu.add(openMenu);
 		 */
 
-		JMenuItem openActiveMenu = new JMenuItem("Open Active Image");
+		openActiveMenu = new JMenuItem("Open Active Image");
 		openActiveMenu.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, DEFAULT_MASK));
 		openActiveMenu.addActionListener(e -> {
 			openActiveImage(context);
@@ -153,14 +158,14 @@ public class KappaMenuBar extends JMenuBar {
 		fileMenu.add(openActiveMenu);
 		fileMenu.addSeparator();
 
-		JMenuItem importROIsAsCurvesMenu = new JMenuItem("Import ROIs as curves");
+		importROIsAsCurvesMenu = new JMenuItem("Import ROIs as curves");
 		importROIsAsCurvesMenu.addActionListener(e -> {
 			importROIsAsCurves(context);
 		});
 		fileMenu.add(importROIsAsCurvesMenu);
 		fileMenu.addSeparator();
 
-		JMenuItem loadMenu = new JMenuItem("Load Curve Data");
+		loadMenu = new JMenuItem("Load Curve Data");
 		loadMenu.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_L, DEFAULT_MASK));
 		loadMenu.addActionListener(e -> {
 			// Handle open button action.
@@ -204,6 +209,12 @@ public class KappaMenuBar extends JMenuBar {
 		});
 		fileMenu.add(saveMenu);
 
+		// The text format is the one other tools such as pykappa read, so the
+		// compact binary format has to be asked for.
+		setBinaryCurveFilesMenu(new JCheckBoxMenuItem("Save Curve Data in Binary Format"));
+		getBinaryCurveFilesMenu().setState(false);
+		fileMenu.add(getBinaryCurveFilesMenu());
+
 		this.add(fileMenu);
 
 		// Menu Items for all the tools
@@ -252,12 +263,22 @@ public class KappaMenuBar extends JMenuBar {
 		fit.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent event) {
-				frame.fitCurves();
+				frame.startFitting(null);
 			}
 		});
 		fit.setEnabled(false);
 		fit.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F, 0));
 		toolMenu.add(fit);
+
+		detectFilaments = new JMenuItem("Detect Filaments");
+		detectFilaments.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				detectFilaments();
+			}
+		});
+		detectFilaments.setEnabled(false);
+		toolMenu.add(detectFilaments);
 		toolMenu.addSeparator();
 
 		// TODO remove this later
@@ -281,6 +302,26 @@ public class KappaMenuBar extends JMenuBar {
 		toggleCtrlPtAdjustment.setEnabled(true);
 		toolMenu.add(toggleCtrlPtAdjustment);
 
+		JCheckBoxMenuItem toggleCoarseToFineFitting = new JCheckBoxMenuItem("Enable Coarse-to-Fine Fitting");
+		toggleCoarseToFineFitting.setState(frame.isEnableCoarseToFineFitting());
+		toggleCoarseToFineFitting.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				frame.setEnableCoarseToFineFitting(!frame.isEnableCoarseToFineFitting());
+			}
+		});
+		toolMenu.add(toggleCoarseToFineFitting);
+
+		JCheckBoxMenuItem toggleCentreLineFitting = new JCheckBoxMenuItem("Fit to Centre-Line Data Points");
+		toggleCentreLineFitting.setState(frame.isEnableCentreLineFitting());
+		toggleCentreLineFitting.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				frame.setEnableCentreLineFitting(!frame.isEnableCentreLineFitting());
+			}
+		});
+		toolMenu.add(toggleCentreLineFitting);
+
 		this.add(toolMenu);
 
 		// Navigation Menu
@@ -497,58 +538,83 @@ public class KappaMenuBar extends JMenuBar {
 	}
 
 	private void importROIsAsCurves(Context context) {
+		if (frame.isFittingRunning()) {
+			log.warn("Curves are being fitted. No curves imported.");
+			return;
+		}
 
 		RoiManager rm = RoiManager.getInstance();
 		if (rm == null) {
 			log.warn("RoiManager is empty. No curves imported.");
 			return;
 		}
+		long start = PerformanceMetrics.start();
 
+		// Reads the coordinates of all the polylines first, so that the curves can
+		// be built together
 		Roi[] rois = rm.getRoisAsArray();
-		Roi roi;
-		PolygonRoi polygonRoi;
-		List<Point2D> points;
-		float x;
-		float y;
-		for (int i = 0; i < rois.length; i++) {
-			roi = rois[i];
-
-			if (roi.getTypeAsString().equals("Polyline")) {
-
-				polygonRoi = (PolygonRoi) roi;
-
-				if (polygonRoi.getXCoordinates().length < 4) {
-					log.warn("Polyline needs at least 4 points.");
-					return;
-				}
-
-				points = new ArrayList<>();
+		List<List<Point2D>> pointLists = new ArrayList<>(rois.length);
+		int skipped = 0;
+		for (Roi roi : rois) {
+			if (!roi.getTypeAsString().equals("Polyline")) {
+				continue;
+			}
+			FloatPolygon polygon = ((PolygonRoi) roi).getFloatPolygon();
+			if (polygon.npoints < 4) {
+				skipped++;
+				continue;
+			}
+			List<Point2D> points = new ArrayList<>(polygon.npoints);
+			for (int j = 0; j < polygon.npoints; j++) {
+				points.add(new Point2D.Double(polygon.xpoints[j], polygon.ypoints[j]));
+			}
+			pointLists.add(points);
+		}
+		if (skipped > 0) {
+			log.warn("Polyline needs at least 4 points. " + skipped + " ROIs were not imported.");
+		}
 
-				for (int j = 0; j < polygonRoi.getFloatPolygon().xpoints.length; j++) {
-					x = polygonRoi.getFloatPolygon().xpoints[j];
-					y = polygonRoi.getFloatPolygon().ypoints[j];
-					points.add(new Point2D.Double(x, y));
-				}
+		// Enters a new Bezier Curve or B-Spline for each polyline
+		int added;
+		if (frame.getInputType() == KappaFrame.B_SPLINE) {
+			added = frame.getCurves().addCurves(pointLists, frame.getControlPanel().getCurrentLayerSlider().getValue(),
+					KappaFrame.B_SPLINE, (frame.getBsplineType() == BSpline.OPEN),
+					(Integer) (frame.getInfoPanel().getThresholdRadiusSpinner().getValue()));
+		} else {
+			added = frame.getCurves().addCurves(pointLists, frame.getControlPanel().getCurrentLayerSlider().getValue(),
+					KappaFrame.BEZIER_CURVE, true,
+					(Integer) (frame.getInfoPanel().getThresholdRadiusSpinner().getValue()));
+		}
+		if (added == 0) {
+			return;
+		}
+		curvesAdded(added);
+		PerformanceMetrics.stop(Stage.IMPORT_ROIS, start, added);
+	}
 
-				// Enters a new Bezier Curve or B-Spline when the user presses ENTER
-				if (frame.getInputType() == KappaFrame.B_SPLINE) {
-					frame.getCurves().addCurve(points, frame.getControlPanel().getCurrentLayerSlider().getValue(),
-							points.size(), KappaFrame.B_SPLINE, (frame.getBsplineType() == BSpline.OPEN),
-							(Integer) (frame.getInfoPanel().getThresholdRadiusSpinner().getValue()));
-				} else {
-					frame.getCurves().addCurve(points, frame.getControlPanel().getCurrentLayerSlider().getValue(),
-							points.size(), KappaFrame.BEZIER_CURVE, true,
-							(Integer) (frame.getInfoPanel().getThresholdRadiusSpinner().getValue()));
-				}
+	/**
+	 * Finds the filaments in the current frame and enters an open B-Spline along
+	 * each of them, ready to be fitted.
+	 */
+	private void detectFilaments() {
+		ImagePlus imp = frame.getDisplayedImageStack();
+		List<List<Point2D>> pointLists = new FilamentDetector().detect(frame.getFrameIntensities(), imp.getWidth(),
+				imp.getHeight());
+		int added = frame.getCurves().addCurves(pointLists, frame.getControlPanel().getCurrentLayerSlider().getValue(),
+				KappaFrame.B_SPLINE, true, (Integer) (frame.getInfoPanel().getThresholdRadiusSpinner().getValue()));
+		log.info(added + " filaments detected.");
+		if (added > 0) {
+			curvesAdded(added);
+		}
+	}
 
-				// Updates our list after adding the curve
-				frame.getInfoPanel().getListData().addElement("  CURVE " + frame.getCurves().getCount());
-				frame.getInfoPanel().getList().setListData(frame.getInfoPanel().getListData());
-				//
+	// Updates our list once for the curves just added at the end, and selects the
+	// last of them
+	private void curvesAdded(int added) {
+		int size = frame.getCurves().size();
+		frame.getInfoPanel().getListModel().curvesAdded(size - added, size - 1);
 
-			}
-		}
-		frame.getInfoPanel().getList().setSelectedIndex(frame.getCurves().size() - 1);
+		frame.getInfoPanel().getList().setSelectedIndex(size - 1);
 		frame.getInfoPanel().getCurvesList().revalidate();
 		frame.getInfoPanel().getPointSlider().setEnabled(true);
 		frame.getInfoPanel().getPointSlider().setValue(0);
@@ -575,8 +641,15 @@ public class KappaMenuBar extends JMenuBar {
 	}
 
 	public void openImage(ImagePlus imp) {
+		if (frame.isFittingRunning()) {
+			log.warn("Curves are being fitted. The image was not opened.");
+			return;
+		}
 		frame.setImageStack(imp);
 
+		// The intensities kept for each frame were sampled from the previous image
+		frame.getCurves().clearFrameCaches();
+
 		// Splits the image into the R, G, and B channels, but only if the image is in
 		// RGB color
 		if (frame.getImageStack().getType() == ImagePlus.COLOR_RGB) {
@@ -624,16 +697,12 @@ public class KappaMenuBar extends JMenuBar {
 		// image now
 		frame.setFrame(1);
 		frame.setCurrImage(frame.getDisplayedImageStack().getBufferedImage());
-		frame.getCurrImageLabel().setIcon(new ImageIcon(frame.getCurrImage()));
 		frame.setThresholded(new boolean[frame.getCurrImage().getWidth()][frame.getCurrImage().getHeight()]);
 
-		// Sets the maximum scale to a value that prevents a heap space error from
-		// occuring.
-		// We set the maximum image size to about 2000 x 2000 pixels = 4,000,000 pixels.
-		int avgPixelDim = (frame.getCurrImage().getWidth() + frame.getCurrImage().getHeight()) / 2;
+		// The image is rendered in tiles for the visible region only, so any image can
+		// be zoomed up to the maximum scale.
 		frame.getControlPanel().getScaleSlider().setValue(ControlPanel.DEFAULT_SCALE);
-		frame.getControlPanel().getScaleSlider()
-				.setMaximum(Math.min(ControlPanel.MAX_SCALE, ControlPanel.MAX_AVG_PIXEL_DIM / avgPixelDim * 100));
+		frame.getControlPanel().getScaleSlider().setMaximum(ControlPanel.MAX_SCALE);
 
 		this.frame.updateThresholded();
 		frame.getInfoPanel().getThresholdChannelsComboBox().setEnabled(true);
@@ -643,6 +712,7 @@ public class KappaMenuBar extends JMenuBar {
 		frame.getInfoPanel().getApply().setEnabled(true);
 		frame.getInfoPanel().getRevert().setEnabled(true);
 		fit.setEnabled(true);
+		detectFilaments.setEnabled(true);
 
 		// Enables view checkboxes
 		getBoundingBoxMenu().setEnabled(true);
@@ -687,81 +757,60 @@ public class KappaMenuBar extends JMenuBar {
 	}
 
 	public void loadCurveFile(File file) {
-		// Tries opening the file
-		try {
-			this.frame.resetCurves();
-			BufferedReader in = new BufferedReader(new FileReader(file));
-			int noCurves = Integer.parseInt(in.readLine());
-
-			for (int n = 0; n < noCurves; n++) {
-				int curveType = Integer.parseInt(in.readLine());
-				int noKeyframes = Integer.parseInt(in.readLine());
-				int noCtrlPts = Integer.parseInt(in.readLine());
-				int bsplineType = 0;
-				frame.setPoints(new ArrayList<Point2D>(noCtrlPts));
-
-				// If the curve is a B-Spline, there is an extra parameter determining whether
-				// it's open or closed
-				if (curveType == KappaFrame.B_SPLINE) {
-					bsplineType = Integer.parseInt(in.readLine());
-				}
-
-				// Initialize the curve
-				int currentKeyframe = Integer.parseInt(in.readLine());
-				for (int i = 0; i < noCtrlPts; i++) {
-					frame.getPoints().add(
-							new Point2D.Double(Double.parseDouble(in.readLine()), Double.parseDouble(in.readLine())));
-				}
-
-				if (curveType == KappaFrame.B_SPLINE) {
-					frame.getCurves().addCurve(frame.getPoints(), currentKeyframe, noCtrlPts, KappaFrame.B_SPLINE,
-							bsplineType == BSpline.OPEN,
-							(Integer) (frame.getInfoPanel().getThresholdRadiusSpinner().getValue()));
-				} else {
-					frame.getCurves().addCurve(frame.getPoints(), currentKeyframe, noCtrlPts, KappaFrame.BEZIER_CURVE,
-							true, (Integer) (frame.getInfoPanel().getThresholdRadiusSpinner().getValue()));
-				}
-				frame.getInfoPanel().getListData().addElement("  CURVE " + frame.getCurves().getCount());
-				frame.getInfoPanel().getList().setListData(frame.getInfoPanel().getListData());
-
-				// Load all the other keyframes for the curve
-				for (int i = 1; i < noKeyframes; i++) {
-					currentKeyframe = Integer.parseInt(in.readLine());
-					frame.setPoints(new ArrayList<Point2D>(noCtrlPts));
-
-					// Adds the control points for each keyframe. We add the redundant control
-					// points for closed B-Spline curves.
-					if (bsplineType == BSpline.OPEN) {
-						for (int j = 0; j < noCtrlPts; j++) {
-							frame.getPoints().add(new Point2D.Double(Double.parseDouble(in.readLine()),
-									Double.parseDouble(in.readLine())));
-						}
-					} else {
-						for (int j = 0; j < noCtrlPts - BSpline.B_SPLINE_DEGREE; j++) {
-							frame.getPoints().add(new Point2D.Double(Double.parseDouble(in.readLine()),
-									Double.parseDouble(in.readLine())));
-						}
-						for (int j = 0; j < BSpline.B_SPLINE_DEGREE; j++) {
-							frame.getPoints().add(new Point2D.Double(frame.getPoints().get(i).getX(),
-									frame.getPoints().get(i).getY()));
-						}
-					}
-					frame.getCurves().get(frame.getCurves().size() - 1).addKeyframe(frame.getPoints(), currentKeyframe);
-				}
-			}
-
-			// Translates all the curves to their position at the current frame.
-			frame.getCurves().changeFrame(frame.getControlPanel().getCurrentLayerSlider().getValue());
+		if (frame.isFittingRunning()) {
+			log.warn("Curves are being fitted. No curves loaded.");
+			return;
+		}
+		long start = PerformanceMetrics.start();
 
-			frame.drawImageOverlay();
-			in.close();
+		// Tries opening the file. Both the text and the binary format are read, and
+		// all the curves are parsed before any of them is created.
+		List<CurveRecord> records;
+		try {
+			records = CurveFileReader.readAll(file);
 		} catch (Exception err) {
 			// frame.overlay.setVisible(true);
 			// frame.overlay.drawNotification("There was an error loading the curve
 			// data",
 			// frame.scrollPane.getVisibleRect());
 			err.printStackTrace();
+			return;
+		}
+
+		this.frame.resetCurves();
+		int t = frame.getControlPanel().getCurrentLayerSlider().getValue();
+		int dataRadius = (Integer) (frame.getInfoPanel().getThresholdRadiusSpinner().getValue());
+		for (CurveRecord record : records) {
+			// Each curve is only computed once, at its position in the current frame.
+			// Its thresholded pixels and intensities are evaluated once they are needed.
+			frame.getCurves().addCurve(record.getControlPointsAt(t), t, record.getNoCtrlPts(), record.getType(),
+					record.isOpen(), dataRadius);
+
+			// Then the keyframes are put in place. We add the redundant control points
+			// for closed B-Spline curves.
+			List<List<Point2D>> keyframePoints = new ArrayList<>(record.getNoKeyframes());
+			for (int i = 0; i < record.getNoKeyframes(); i++) {
+				List<Point2D> points = record.getControlPoints(i);
+				if (!record.isOpen()) {
+					for (int j = 0; j < BSpline.B_SPLINE_DEGREE; j++) {
+						points.add(new Point2D.Double(points.get(j).getX(), points.get(j).getY()));
+					}
+				}
+				keyframePoints.add(points);
+			}
+			frame.getCurves().get(frame.getCurves().size() - 1).replaceKeyframes(keyframePoints,
+					record.getFrames(), t);
+		}
+
+		// Updates the curve list once for all the curves. The last one is left
+		// selected, as it is in the curves.
+		frame.getInfoPanel().getListModel().curvesAdded(0, frame.getCurves().size() - 1);
+		if (!frame.getCurves().isEmpty()) {
+			frame.getInfoPanel().getList().setSelectedIndex(frame.getCurves().size() - 1);
 		}
+
+		frame.drawImageOverlay();
+		PerformanceMetrics.stop(Stage.LOAD_CURVES, start, records.size());
 	}
 
 	public void saveCurveFile(String file) {
@@ -769,58 +818,14 @@ public class KappaMenuBar extends JMenuBar {
 	}
 
 	public void saveCurveFile(File file) {
-
+		long start = PerformanceMetrics.start();
 		try {
-			PrintWriter out = new PrintWriter(new FileWriter(file));
-			out.println(frame.getCurves().size());
-
+			List<CurveRecord> records = new ArrayList<>(frame.getCurves().size());
 			for (Curve c : frame.getCurves()) {
-				// Outputs the curve properties: it's type, the number of keyframes, the number
-				// of control points, etc.
-				if (c instanceof BSpline) {
-					out.println(KappaFrame.B_SPLINE);
-				} else {
-					out.println(KappaFrame.BEZIER_CURVE);
-				}
-				out.println(c.getNoKeyframes());
-
-				// Print out the correct number of control points depending on the curve type.
-				if (c instanceof BSpline && !((BSpline) c).isOpen()) {
-					out.println(c.getNoCtrlPts() - BSpline.B_SPLINE_DEGREE);
-				} else {
-					out.println(c.getNoCtrlPts());
-				}
-
-				if (c instanceof BSpline) {
-					if (((BSpline) c).isOpen()) {
-						out.println(BSpline.OPEN);
-					} else {
-						out.println(BSpline.CLOSED);
-					}
-				}
-
-				// Writes the control points and what keyframe they are at for each curve.
-				for (Curve.BControlPoints b : c.getKeyframes()) {
-					out.println(b.t);
-
-					// If it's a closed B-Spline, we don't output the last redundant points that
-					// make it closed
-					if (c instanceof BSpline && !((BSpline) c).isOpen()) {
-						for (int i = 0; i < b.defPoints.length - BSpline.B_SPLINE_DEGREE; i++) {
-							Point2D p = b.defPoints[i];
-							out.println(p.getX());
-							out.println(p.getY());
-						}
-					} // Otherwise, we output all the points
-					else {
-						for (Point2D p : b.defPoints) {
-							out.println(p.getX());
-							out.println(p.getY());
-						}
-					}
-				}
+				records.add(CurveRecord.of(c));
 			}
-			out.close();
+			CurveFileWriter.write(file, records, getBinaryCurveFilesMenu().isSelected());
+			PerformanceMetrics.stop(Stage.SAVE_CURVES, start, records.size());
 		} catch (Exception err) {
 			frame.getOverlay().setVisible(true);
 			frame.getOverlay().drawNotification("There was an error saving the curve data",
@@ -828,6 +833,26 @@ public class KappaMenuBar extends JMenuBar {
 		}
 	}
 
+	/**
+	 * Disables fitting and moving between frames while a fit is running, and
+	 * enables them again afterwards.
+	 */
+	public void setFittingRunning(boolean fittingRunning) {
+		fit.setEnabled(!fittingRunning);
+		detectFilaments.setEnabled(!fittingRunning);
+		prevFrame.setEnabled(!fittingRunning);
+		nextFrame.setEnabled(!fittingRunning);
+		prevKeyframe.setEnabled(!fittingRunning);
+		nextKeyframe.setEnabled(!fittingRunning);
+
+		// Nor can the curves, or the image the fit reads its data points from
+		openActiveMenu.setEnabled(!fittingRunning);
+		importROIsAsCurvesMenu.setEnabled(!fittingRunning);
+		loadMenu.setEnabled(!fittingRunning);
+		delete.setEnabled(!fittingRunning && frame.getCurves().isCurveSelected());
+		adjustBrightnessContrast.setEnabled(!fittingRunning);
+	}
+
 	public JMenuItem getDelete() {
 		return delete;
 	}
@@ -844,6 +869,14 @@ public class KappaMenuBar extends JMenuBar {
 		this.enter = enter;
 	}
 
+	public JCheckBoxMenuItem getBinaryCurveFilesMenu() {
+		return binaryCurveFilesMenu;
+	}
+
+	public void setBinaryCurveFilesMenu(JCheckBoxMenuItem binaryCurveFilesMenu) {
+		this.binaryCurveFilesMenu = binaryCurveFilesMenu;
+	}
+
 	public JCheckBoxMenuItem getTangentMenu() {
 		return tangentMenu;
 	}
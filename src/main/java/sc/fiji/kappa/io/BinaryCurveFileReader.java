@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads the binary format described in {@link CurveFileFormat}. The table of
+ * contents is read up front, the payload one curve at a time.
+ */
+class BinaryCurveFileReader extends CurveFileReader {
+
+	private final int[] types;
+	private final boolean[] open;
+	private final int[] noCtrlPts;
+	private final int[] noKeyframes;
+	private final int version;
+	private DataInputStream in;
+	private int noRead;
+
+	BinaryCurveFileReader(InputStream stream) throws IOException {
+		in = new DataInputStream(stream);
+		in.readFully(new byte[CurveFileFormat.MAGIC.length]);
+		version = in.readUnsignedByte();
+		if (version > CurveFileFormat.VERSION) {
+			throw new IOException("Unsupported curve file version " + version);
+		}
+		int flags = in.readUnsignedByte();
+
+		int noCurves = CurveFileFormat.readVarInt(in);
+		types = new int[noCurves];
+		open = new boolean[noCurves];
+		noCtrlPts = new int[noCurves];
+		noKeyframes = new int[noCurves];
+		for (int n = 0; n < noCurves; n++) {
+			types[n] = in.readUnsignedByte();
+			open[n] = in.readUnsignedByte() != 0;
+			noCtrlPts[n] = CurveFileFormat.readVarInt(in);
+			noKeyframes[n] = CurveFileFormat.readVarInt(in);
+		}
+
+		if ((flags & CurveFileFormat.FLAG_DEFLATE) != 0) {
+			in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(stream),
+				CurveFileFormat.BUFFER_SIZE));
+		}
+	}
+
+	@Override
+	public int getNoCurves() {
+		return types.length;
+	}
+
+	@Override
+	public CurveRecord next() throws IOException {
+		if (noRead == types.length) {
+			return null;
+		}
+		int n = noRead;
+		int[] frames = new int[noKeyframes[n]];
+		int frame = 0;
+		for (int k = 0; k < frames.length; k++) {
+			frame += CurveFileFormat.readSignedVarInt(in);
+			frames[k] = frame;
+		}
+
+		// Adds the differences to the previous keyframe, or the previous control point
+		// in the first keyframe, back. Version 1 XORed the bits of the doubles instead.
+		int stride = 2 * noCtrlPts[n];
+		double[] coords = new double[stride * frames.length];
+		long[] fixedPoint = new long[coords.length];
+		for (int i = 0; i < coords.length; i++) {
+			int ref = i >= stride ? i - stride : i - 2;
+			if (version == 1) {
+				long reference = ref >= 0 ? Double.doubleToRawLongBits(coords[ref]) : 0;
+				coords[i] = Double.longBitsToDouble(CurveFileFormat.readVarLong(in) ^ reference);
+			} else {
+				coords[i] = CurveFileFormat.readCoordinate(in, ref >= 0 ? fixedPoint[ref] : 0);
+				fixedPoint[i] = CurveFileFormat.toFixedPoint(coords[i]);
+			}
+		}
+		noRead++;
+		return new CurveRecord(types[n], open[n], noCtrlPts[n], frames, coords);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes CSV files one field at a time, without building the rows as strings
+ * first. Every field is quoted, as spreadsheet applications and the previous
+ * CSV exports expect.
+ */
+public class CsvWriter implements Closeable {
+
+	// Rows are collected in a buffer that is written out once it is this large
+	private static final int FLUSH_SIZE = 1 << 16;
+
+	private final Writer out;
+	private final StringBuilder buffer = new StringBuilder(FLUSH_SIZE + 1024);
+	private boolean rowStarted;
+
+	public CsvWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Opens a CSV file for writing. Files whose name ends with .gz are gzip
+	 * compressed.
+	 */
+	public static CsvWriter open(File file) throws IOException {
+		OutputStream stream = new FileOutputStream(file);
+		try {
+			if (file.getName().toLowerCase().endsWith(".gz")) {
+				stream = new GZIPOutputStream(stream, CurveFileFormat.BUFFER_SIZE);
+			} else {
+				stream = new BufferedOutputStream(stream, CurveFileFormat.BUFFER_SIZE);
+			}
+		} catch (IOException e) {
+			stream.close();
+			throw e;
+		}
+		return new CsvWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+	}
+
+	public void field(String value) {
+		startField();
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				buffer.append('"');
+			}
+			buffer.append(c);
+		}
+		buffer.append('"');
+	}
+
+	public void field(double value) {
+		startField();
+		buffer.append(value).append('"');
+	}
+
+	public void field(int value) {
+		startField();
+		buffer.append(value).append('"');
+	}
+
+	public void endRow() throws IOException {
+		buffer.append('\n');
+		rowStarted = false;
+		if (buffer.length() >= FLUSH_SIZE) {
+			out.append(buffer);
+			buffer.setLength(0);
+		}
+	}
+
+	private void startField() {
+		if (rowStarted) {
+			buffer.append(',');
+		}
+		buffer.append('"');
+		rowStarted = true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			out.append(buffer);
+			buffer.setLength(0);
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Constants and encoding helpers for the binary curve file format. A binary
+ * file has the layout
+ *
+ * <pre>
+ * "KAPB"                      magic
+ * u8      version
+ * u8      flags               bit 0: the payload is deflated
+ * varint  number of curves
+ * table of contents, per curve:
+ *   u8      type              KappaFrame.BEZIER_CURVE or KappaFrame.B_SPLINE
+ *   u8      open              1 for Bezier Curves and open B-Splines
+ *   varint  control points per keyframe
+ *   varint  number of keyframes
+ * payload, per curve:
+ *   varint  frames, zigzag encoded differences to the previous frame
+ *   varint  control point coordinates, see below
+ * </pre>
+ *
+ * Coordinates are stored in fixed point, rounded to the nearest
+ * 1/{@value #COORDINATE_SCALE} of a pixel, so they are off by at most 7.7e-6
+ * pixels. Each is written as the zigzag encoded difference to the same
+ * coordinate of the same control point in the previous keyframe (or of the
+ * previous control point, in the first keyframe), shifted left by one bit. A
+ * point that does not move between keyframes takes 1 byte per coordinate, one
+ * that moves by less than 2 pixels 3 bytes. Coordinates that are not finite or
+ * are further than 2^36 pixels from the origin are written as the varint 1,
+ * followed by the 8 bytes of the double, and kept exactly. They count as 0 for
+ * the differences of the coordinates that follow.
+ * <p>
+ * Version 1 files, which stored the bits of each double XORed with those of
+ * the same reference coordinate, are still read.
+ */
+public final class CurveFileFormat {
+
+	public static final byte[] MAGIC = { 'K', 'A', 'P', 'B' };
+	public static final int VERSION = 2;
+	public static final int FLAG_DEFLATE = 1;
+
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	// Fixed point coordinates are in units of 1/COORDINATE_SCALE pixels
+	public static final int COORDINATE_SCALE = 1 << 16;
+	private static final double MAX_FIXED_POINT = 1L << 36;
+	private static final int EXACT_COORDINATE = 1;
+
+	private CurveFileFormat() {}
+
+	/**
+	 * @return The coordinate in fixed point, or 0 if it is written exactly
+	 */
+	static long toFixedPoint(double coordinate) {
+		if (!(Math.abs(coordinate) <= MAX_FIXED_POINT)) {
+			return 0;
+		}
+		return Math.round(coordinate * COORDINATE_SCALE);
+	}
+
+	/**
+	 * Writes a coordinate as the difference of its fixed point value to a
+	 * reference, or exactly if it has no fixed point value.
+	 *
+	 * @param reference
+	 *            The fixed point value of the reference coordinate
+	 */
+	static void writeCoordinate(DataOutput out, double coordinate, long reference) throws IOException {
+		if (!(Math.abs(coordinate) <= MAX_FIXED_POINT)) {
+			writeVarLong(out, EXACT_COORDINATE);
+			out.writeLong(Double.doubleToRawLongBits(coordinate));
+			return;
+		}
+		long delta = toFixedPoint(coordinate) - reference;
+		writeVarLong(out, ((delta << 1) ^ (delta >> 63)) << 1);
+	}
+
+	/**
+	 * Reads a coordinate written with {@link #writeCoordinate}.
+	 */
+	static double readCoordinate(DataInput in, long reference) throws IOException {
+		long value = readVarLong(in);
+		if ((value & EXACT_COORDINATE) != 0) {
+			return Double.longBitsToDouble(in.readLong());
+		}
+		value >>>= 1;
+		long delta = (value >>> 1) ^ -(value & 1);
+		return (double) (reference + delta) / COORDINATE_SCALE;
+	}
+
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length number");
+	}
+
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	static int readVarInt(DataInput in) throws IOException {
+		return (int) readVarLong(in);
+	}
+
+	static void writeSignedVarInt(DataOutput out, int value) throws IOException {
+		writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	static int readSignedVarInt(DataInput in) throws IOException {
+		int value = readVarInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
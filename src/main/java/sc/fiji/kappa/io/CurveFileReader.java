@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the curves of a curve file one at a time, so that the file never has
+ * to be held in memory as a whole. Both the legacy text format and the binary
+ * format described in {@link CurveFileFormat} are read, telling them apart by
+ * the magic number at the start of binary files.
+ */
+public abstract class CurveFileReader implements Closeable {
+
+	/**
+	 * Opens a curve file of either format.
+	 */
+	public static CurveFileReader open(File file) throws IOException {
+		return open(new FileInputStream(file));
+	}
+
+	/**
+	 * Opens a stream holding a curve file of either format. The stream is closed
+	 * when the reader is closed.
+	 */
+	public static CurveFileReader open(InputStream stream) throws IOException {
+		BufferedInputStream in = new BufferedInputStream(stream, CurveFileFormat.BUFFER_SIZE);
+		try {
+			byte[] magic = new byte[CurveFileFormat.MAGIC.length];
+			in.mark(magic.length);
+			int n = 0;
+			while (n < magic.length) {
+				int read = in.read(magic, n, magic.length - n);
+				if (read < 0) {
+					break;
+				}
+				n += read;
+			}
+			in.reset();
+			if (n == magic.length && Arrays.equals(magic, CurveFileFormat.MAGIC)) {
+				return new BinaryCurveFileReader(in);
+			}
+			return new TextCurveFileReader(in);
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads all the curves of a curve file.
+	 */
+	public static List<CurveRecord> readAll(File file) throws IOException {
+		try (CurveFileReader reader = open(file)) {
+			List<CurveRecord> records = new ArrayList<>(reader.getNoCurves());
+			CurveRecord record;
+			while ((record = reader.next()) != null) {
+				records.add(record);
+			}
+			return records;
+		}
+	}
+
+	/**
+	 * @return The number of curves in the file
+	 */
+	public abstract int getNoCurves();
+
+	/**
+	 * Reads the next curve.
+	 *
+	 * @return The curve, or null if all the curves have been read
+	 */
+	public abstract CurveRecord next() throws IOException;
+}
@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.io;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import sc.fiji.kappa.curve.BSpline;
+import sc.fiji.kappa.gui.KappaFrame;
+
+/**
+ * Writes curve files, in the legacy text format or in the binary format
+ * described in {@link CurveFileFormat}. Curves are streamed out one at a time.
+ */
+public final class CurveFileWriter {
+
+	private CurveFileWriter() {}
+
+	/**
+	 * Writes a curve file.
+	 *
+	 * @param binary
+	 *            Whether to use the compressed binary format instead of the text
+	 *            format, which other tools such as pykappa read
+	 */
+	public static void write(File file, List<CurveRecord> records, boolean binary)
+		throws IOException
+	{
+		try (OutputStream out = new FileOutputStream(file)) {
+			if (binary) {
+				writeBinary(out, records, true);
+			} else {
+				writeText(out, records);
+			}
+		}
+	}
+
+	/**
+	 * Writes curves in the legacy text format, one number per line.
+	 */
+	public static void writeText(OutputStream stream, List<CurveRecord> records) {
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(stream,
+			StandardCharsets.UTF_8), CurveFileFormat.BUFFER_SIZE));
+		out.println(records.size());
+		for (CurveRecord r : records) {
+			out.println(r.getType());
+			out.println(r.getNoKeyframes());
+			out.println(r.getNoCtrlPts());
+			if (r.getType() == KappaFrame.B_SPLINE) {
+				out.println(r.isOpen() ? BSpline.OPEN : BSpline.CLOSED);
+			}
+
+			double[] coords = r.getCoords();
+			int i = 0;
+			for (int k = 0; k < r.getNoKeyframes(); k++) {
+				out.println(r.getFrame(k));
+				for (int j = 0; j < 2 * r.getNoCtrlPts(); j++) {
+					out.println(coords[i++]);
+				}
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes curves in the binary format.
+	 *
+	 * @param compress
+	 *            Whether to deflate the payload
+	 */
+	public static void writeBinary(OutputStream stream, List<CurveRecord> records, boolean compress)
+		throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream,
+			CurveFileFormat.BUFFER_SIZE));
+		out.write(CurveFileFormat.MAGIC);
+		out.writeByte(CurveFileFormat.VERSION);
+		out.writeByte(compress ? CurveFileFormat.FLAG_DEFLATE : 0);
+
+		// Table of contents
+		CurveFileFormat.writeVarInt(out, records.size());
+		for (CurveRecord r : records) {
+			out.writeByte(r.getType());
+			out.writeByte(r.isOpen() ? 1 : 0);
+			CurveFileFormat.writeVarInt(out, r.getNoCtrlPts());
+			CurveFileFormat.writeVarInt(out, r.getNoKeyframes());
+		}
+
+		DeflaterOutputStream deflater = null;
+		if (compress) {
+			out.flush();
+			deflater = new DeflaterOutputStream(stream, true);
+			out = new DataOutputStream(new BufferedOutputStream(deflater, CurveFileFormat.BUFFER_SIZE));
+		}
+
+		// Payload
+		for (CurveRecord r : records) {
+			int frame = 0;
+			for (int k = 0; k < r.getNoKeyframes(); k++) {
+				CurveFileFormat.writeSignedVarInt(out, r.getFrame(k) - frame);
+				frame = r.getFrame(k);
+			}
+
+			double[] coords = r.getCoords();
+			int stride = 2 * r.getNoCtrlPts();
+			for (int i = 0; i < coords.length; i++) {
+				long reference = 0;
+				if (i >= stride) {
+					reference = CurveFileFormat.toFixedPoint(coords[i - stride]);
+				} else if (i >= 2) {
+					reference = CurveFileFormat.toFixedPoint(coords[i - 2]);
+				}
+				CurveFileFormat.writeCoordinate(out, coords[i], reference);
+			}
+		}
+		out.flush();
+		if (deflater != null) {
+			deflater.finish();
+		}
+		stream.flush();
+	}
+}
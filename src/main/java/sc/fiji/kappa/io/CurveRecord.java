@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.io;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import sc.fiji.kappa.curve.BSpline;
+import sc.fiji.kappa.curve.Curve;
+import sc.fiji.kappa.curve.KeyframeStore;
+import sc.fiji.kappa.gui.KappaFrame;
+
+/**
+ * The keyframes of one curve as they are stored in a curve file. The control
+ * points of all keyframes are packed into one array, x and y interleaved. For
+ * closed B-Splines, the redundant control points that close the curve are not
+ * stored.
+ */
+public class CurveRecord {
+
+	private final int type;
+	private final boolean open;
+	private final int noCtrlPts;
+	private final int[] frames;
+	private final double[] coords;
+
+	/**
+	 * @param type
+	 *            KappaFrame.BEZIER_CURVE or KappaFrame.B_SPLINE
+	 * @param open
+	 *            Whether a B-Spline is open. Bezier Curves are always open.
+	 * @param noCtrlPts
+	 *            The number of control points stored for each keyframe
+	 * @param frames
+	 *            The frame of each keyframe
+	 * @param coords
+	 *            The control points of each keyframe, in keyframe order
+	 */
+	public CurveRecord(int type, boolean open, int noCtrlPts, int[] frames, double[] coords) {
+		if (coords.length != 2 * noCtrlPts * frames.length) {
+			throw new IllegalArgumentException("Expected " + 2 * noCtrlPts * frames.length
+				+ " coordinates but got " + coords.length);
+		}
+		this.type = type;
+		this.open = type == KappaFrame.BEZIER_CURVE || open;
+		this.noCtrlPts = noCtrlPts;
+		this.frames = frames;
+		this.coords = coords;
+	}
+
+	/**
+	 * Creates the record of the keyframes of a curve.
+	 */
+	public static CurveRecord of(Curve c) {
+		boolean closed = c instanceof BSpline && !((BSpline) c).isOpen();
+
+		// The redundant points that make a B-Spline closed are not stored
+		int noCtrlPts = c.getNoCtrlPts();
+		if (closed) {
+			noCtrlPts -= BSpline.B_SPLINE_DEGREE;
+		}
+
+		KeyframeStore keyframes = c.getKeyframes();
+		int[] frames = keyframes.getFrames();
+		double[] coords = new double[2 * noCtrlPts * frames.length];
+		int i = 0;
+		for (int k = 0; k < frames.length; k++) {
+			for (int j = 0; j < noCtrlPts; j++) {
+				coords[i++] = keyframes.getX(k, j);
+				coords[i++] = keyframes.getY(k, j);
+			}
+		}
+		return new CurveRecord(c instanceof BSpline ? KappaFrame.B_SPLINE : KappaFrame.BEZIER_CURVE,
+			!closed, noCtrlPts, frames, coords);
+	}
+
+	public int getType() {
+		return type;
+	}
+
+	public boolean isOpen() {
+		return open;
+	}
+
+	public int getNoCtrlPts() {
+		return noCtrlPts;
+	}
+
+	public int getNoKeyframes() {
+		return frames.length;
+	}
+
+	public int getFrame(int keyframe) {
+		return frames[keyframe];
+	}
+
+	public int[] getFrames() {
+		return frames;
+	}
+
+	public double[] getCoords() {
+		return coords;
+	}
+
+	/**
+	 * Returns the control points stored for a keyframe, without the redundant
+	 * points of closed B-Splines.
+	 */
+	public List<Point2D> getControlPoints(int keyframe) {
+		List<Point2D> points = new ArrayList<>(noCtrlPts);
+		int offset = 2 * noCtrlPts * keyframe;
+		for (int i = 0; i < noCtrlPts; i++) {
+			points.add(new Point2D.Double(coords[offset + 2 * i], coords[offset + 2 * i + 1]));
+		}
+		return points;
+	}
+
+	/**
+	 * Returns the control points of the curve at a frame, interpolated between the
+	 * surrounding keyframes in the same way as Curve.translateCurve does.
+	 */
+	public List<Point2D> getControlPointsAt(int t) {
+		// Finds the keyframes at or before and at or after the frame. Past either
+		// end, the first or last keyframe is used.
+		int prev = -1, next = -1, first = 0, last = 0;
+		for (int k = 0; k < frames.length; k++) {
+			if (frames[k] <= t && (prev < 0 || frames[k] > frames[prev])) {
+				prev = k;
+			}
+			if (frames[k] >= t && (next < 0 || frames[k] < frames[next])) {
+				next = k;
+			}
+			if (frames[k] < frames[first]) {
+				first = k;
+			}
+			if (frames[k] > frames[last]) {
+				last = k;
+			}
+		}
+		if (prev < 0) {
+			prev = next = first;
+		} else if (next < 0) {
+			next = prev = last;
+		}
+		if (frames[prev] == frames[next]) {
+			return getControlPoints(prev);
+		}
+
+		double scaleFactor = (t - frames[prev]) / ((frames[next] - frames[prev]) * 1.0);
+		List<Point2D> points = new ArrayList<>(noCtrlPts);
+		int p = 2 * noCtrlPts * prev, n = 2 * noCtrlPts * next;
+		for (int i = 0; i < 2 * noCtrlPts; i += 2) {
+			points.add(new Point2D.Double(coords[p + i] + (coords[n + i] - coords[p + i]) * scaleFactor,
+				coords[p + i + 1] + (coords[n + i + 1] - coords[p + i + 1]) * scaleFactor));
+		}
+		return points;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof CurveRecord)) {
+			return false;
+		}
+		CurveRecord r = (CurveRecord) o;
+		return type == r.type && open == r.open && noCtrlPts == r.noCtrlPts && Arrays.equals(frames,
+			r.frames) && Arrays.equals(coords, r.coords);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * (31 * type + noCtrlPts) + Arrays.hashCode(frames)) + Arrays.hashCode(coords);
+	}
+}
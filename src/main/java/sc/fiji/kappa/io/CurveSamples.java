@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.io;
+
+import java.util.Arrays;
+
+/**
+ * Collects the sample points of a number of curves into flat arrays, one value
+ * per sample, with the offsets at which each curve starts. Coordinates are
+ * converted to um as they are added.
+ */
+public class CurveSamples {
+
+	private final double micronPixelFactor;
+
+	private double[] x = new double[1024];
+	private double[] y = new double[1024];
+	private double[] curvature = new double[1024];
+	private double[] arcLength = new double[1024];
+	private double[] red = new double[1024];
+	private double[] green = new double[1024];
+	private double[] blue = new double[1024];
+	private int size;
+
+	private long[] curveOffsets = new long[17];
+	private int noCurves;
+
+	public CurveSamples(double micronPixelFactor) {
+		this.micronPixelFactor = micronPixelFactor;
+	}
+
+	/**
+	 * Starts a new curve. The samples added from now on belong to it.
+	 */
+	public void startCurve() {
+		if (noCurves + 1 == curveOffsets.length) {
+			curveOffsets = Arrays.copyOf(curveOffsets, 2 * curveOffsets.length);
+		}
+		noCurves++;
+		curveOffsets[noCurves - 1] = size;
+		curveOffsets[noCurves] = size;
+	}
+
+	/**
+	 * Adds a sample to the current curve.
+	 *
+	 * @param px
+	 *            The x-coordinate, in pixels
+	 * @param py
+	 *            The y-coordinate, in pixels
+	 * @param k
+	 *            The signed curvature, in um-1
+	 * @param r
+	 *            The red intensity at the sample
+	 * @param g
+	 *            The green intensity at the sample
+	 * @param b
+	 *            The blue intensity at the sample
+	 * @param s
+	 *            The arc length from the start of the curve, in um
+	 */
+	public void add(double px, double py, double k, double r, double g, double b, double s) {
+		if (size == x.length) {
+			int capacity = 2 * size;
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			curvature = Arrays.copyOf(curvature, capacity);
+			arcLength = Arrays.copyOf(arcLength, capacity);
+			red = Arrays.copyOf(red, capacity);
+			green = Arrays.copyOf(green, capacity);
+			blue = Arrays.copyOf(blue, capacity);
+		}
+		x[size] = px * micronPixelFactor;
+		y[size] = py * micronPixelFactor;
+		curvature[size] = k;
+		red[size] = r;
+		green[size] = g;
+		blue[size] = b;
+		arcLength[size] = s;
+		size++;
+		curveOffsets[noCurves] = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getNoCurves() {
+		return noCurves;
+	}
+
+	public double[] getX() {
+		return Arrays.copyOf(x, size);
+	}
+
+	public double[] getY() {
+		return Arrays.copyOf(y, size);
+	}
+
+	public double[] getCurvature() {
+		return Arrays.copyOf(curvature, size);
+	}
+
+	public double[] getArcLength() {
+		return Arrays.copyOf(arcLength, size);
+	}
+
+	public double[] getRed() {
+		return Arrays.copyOf(red, size);
+	}
+
+	public double[] getGreen() {
+		return Arrays.copyOf(green, size);
+	}
+
+	public double[] getBlue() {
+		return Arrays.copyOf(blue, size);
+	}
+
+	/**
+	 * @return The index of the first sample of each curve, followed by the total
+	 *         number of samples
+	 */
+	public long[] getCurveOffsets() {
+		return Arrays.copyOf(curveOffsets, noCurves + 1);
+	}
+}
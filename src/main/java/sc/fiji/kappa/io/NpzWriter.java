@@ -0,0 +1,225 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Writes arrays as .npy files into an uncompressed .npz archive, as read by
+ * numpy.load. The data of every array starts at a 64 byte aligned offset in
+ * the archive, so that the arrays can be memory-mapped straight from the file.
+ */
+public class NpzWriter implements Closeable {
+
+	private static final int ALIGNMENT = 64;
+	private static final byte[] NPY_MAGIC = { (byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0 };
+
+	// Zip record sizes and signatures
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int ZIP_VERSION = 20;
+
+	// 1980-01-01 00:00, the earliest DOS date, so that archives are reproducible
+	private static final int DOS_TIME = 0;
+	private static final int DOS_DATE = (1 << 5) | 1;
+
+	private final OutputStream out;
+	private long offset;
+	private final List<Entry> entries = new ArrayList<>();
+
+	private static class Entry {
+		byte[] name;
+		long offset;
+		long size;
+		int crc;
+	}
+
+	public NpzWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	public static NpzWriter open(File file) throws IOException {
+		return new NpzWriter(new BufferedOutputStream(new FileOutputStream(file),
+			CurveFileFormat.BUFFER_SIZE));
+	}
+
+	/**
+	 * Writes a float64 array.
+	 *
+	 * @param shape
+	 *            The shape of the array. A one-dimensional array if left out.
+	 */
+	public void write(String name, double[] data, int... shape) throws IOException {
+		ByteBuffer buffer = allocate(8 * data.length);
+		buffer.asDoubleBuffer().put(data);
+		write(name, "<f8", shape(data.length, shape), buffer.array());
+	}
+
+	/**
+	 * Writes an int64 array.
+	 */
+	public void write(String name, long[] data, int... shape) throws IOException {
+		ByteBuffer buffer = allocate(8 * data.length);
+		buffer.asLongBuffer().put(data);
+		write(name, "<i8", shape(data.length, shape), buffer.array());
+	}
+
+	/**
+	 * Writes an int32 array.
+	 */
+	public void write(String name, int[] data, int... shape) throws IOException {
+		ByteBuffer buffer = allocate(4 * data.length);
+		buffer.asIntBuffer().put(data);
+		write(name, "<i4", shape(data.length, shape), buffer.array());
+	}
+
+	/**
+	 * Writes an int8 array.
+	 */
+	public void write(String name, byte[] data, int... shape) throws IOException {
+		write(name, "|i1", shape(data.length, shape), data.clone());
+	}
+
+	private static ByteBuffer allocate(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static int[] shape(int length, int[] shape) {
+		if (shape.length == 0) {
+			return new int[] { length };
+		}
+		long product = 1;
+		for (int n : shape) {
+			product *= n;
+		}
+		if (product != length) {
+			throw new IllegalArgumentException("Shape does not match the " + length + " values");
+		}
+		return shape;
+	}
+
+	private void write(String name, String descr, int[] shape, byte[] data) throws IOException {
+		Entry entry = new Entry();
+		entry.name = (name + ".npy").getBytes(StandardCharsets.UTF_8);
+		entry.offset = offset;
+
+		// The .npy header is padded with spaces so that the data is aligned in the
+		// archive, not just in the .npy file
+		StringBuilder header = new StringBuilder("{'descr': '").append(descr).append(
+			"', 'fortran_order': False, 'shape': (");
+		for (int i = 0; i < shape.length; i++) {
+			header.append(shape[i]).append(shape.length == 1 ? "," : i < shape.length - 1 ? ", " : "");
+		}
+		header.append("), }");
+		long dataStart = offset + LOCAL_HEADER_SIZE + entry.name.length + NPY_MAGIC.length + 2 + header
+			.length() + 1;
+		while (dataStart % ALIGNMENT != 0) {
+			header.append(' ');
+			dataStart++;
+		}
+		header.append('\n');
+		byte[] headerBytes = header.toString().getBytes(StandardCharsets.US_ASCII);
+		if (headerBytes.length > 0xFFFF) {
+			throw new IOException("The header of " + name + " is too long");
+		}
+
+		byte[] npyHeader = new byte[NPY_MAGIC.length + 2 + headerBytes.length];
+		System.arraycopy(NPY_MAGIC, 0, npyHeader, 0, NPY_MAGIC.length);
+		npyHeader[NPY_MAGIC.length] = (byte) headerBytes.length;
+		npyHeader[NPY_MAGIC.length + 1] = (byte) (headerBytes.length >> 8);
+		System.arraycopy(headerBytes, 0, npyHeader, NPY_MAGIC.length + 2, headerBytes.length);
+
+		CRC32 crc = new CRC32();
+		crc.update(npyHeader);
+		crc.update(data);
+		entry.crc = (int) crc.getValue();
+		entry.size = npyHeader.length + (long) data.length;
+		if (entry.size > 0xFFFFFFFFL || offset > 0xFFFFFFFFL) {
+			throw new IOException("Arrays larger than 4 GB are not supported");
+		}
+
+		ByteBuffer local = allocate(LOCAL_HEADER_SIZE);
+		local.putInt(LOCAL_HEADER_SIGNATURE).putShort((short) ZIP_VERSION).putShort((short) 0).putShort(
+			(short) 0).putShort((short) DOS_TIME).putShort((short) DOS_DATE).putInt(entry.crc).putInt(
+				(int) entry.size).putInt((int) entry.size).putShort((short) entry.name.length).putShort(
+					(short) 0);
+		writeBytes(local.array());
+		writeBytes(entry.name);
+		writeBytes(npyHeader);
+		writeBytes(data);
+		entries.add(entry);
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		out.write(bytes);
+		offset += bytes.length;
+	}
+
+	/**
+	 * Writes the central directory of the archive and closes it.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			long directoryOffset = offset;
+			for (Entry entry : entries) {
+				ByteBuffer central = allocate(CENTRAL_HEADER_SIZE);
+				central.putInt(CENTRAL_HEADER_SIGNATURE).putShort((short) ZIP_VERSION).putShort(
+					(short) ZIP_VERSION).putShort((short) 0).putShort((short) 0).putShort((short) DOS_TIME)
+					.putShort((short) DOS_DATE).putInt(entry.crc).putInt((int) entry.size).putInt(
+						(int) entry.size).putShort((short) entry.name.length).putShort((short) 0).putShort(
+							(short) 0).putShort((short) 0).putShort((short) 0).putInt(0).putInt(
+								(int) entry.offset);
+				writeBytes(central.array());
+				writeBytes(entry.name);
+			}
+
+			ByteBuffer end = allocate(22);
+			end.putInt(END_SIGNATURE).putShort((short) 0).putShort((short) 0).putShort((short) entries
+				.size()).putShort((short) entries.size()).putInt((int) (offset - directoryOffset)).putInt(
+					(int) directoryOffset).putShort((short) 0);
+			writeBytes(end.array());
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.io;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import sc.fiji.kappa.curve.BSpline;
+import sc.fiji.kappa.gui.KappaFrame;
+
+/**
+ * Reads the legacy text format, which has every number on its own line.
+ */
+class TextCurveFileReader extends CurveFileReader {
+
+	private final BufferedReader in;
+	private final int noCurves;
+	private int noRead;
+
+	TextCurveFileReader(InputStream stream) throws IOException {
+		this.in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8),
+			CurveFileFormat.BUFFER_SIZE);
+		this.noCurves = readInt();
+	}
+
+	@Override
+	public int getNoCurves() {
+		return noCurves;
+	}
+
+	@Override
+	public CurveRecord next() throws IOException {
+		if (noRead == noCurves) {
+			return null;
+		}
+		int type = readInt();
+		int noKeyframes = readInt();
+		int noCtrlPts = readInt();
+
+		// B-Splines have an extra parameter determining whether they are open or closed
+		boolean open = true;
+		if (type == KappaFrame.B_SPLINE) {
+			open = readInt() == BSpline.OPEN;
+		}
+
+		int[] frames = new int[noKeyframes];
+		double[] coords = new double[2 * noCtrlPts * noKeyframes];
+		int i = 0;
+		for (int k = 0; k < noKeyframes; k++) {
+			frames[k] = readInt();
+			for (int j = 0; j < 2 * noCtrlPts; j++) {
+				coords[i++] = Double.parseDouble(readLine());
+			}
+		}
+		noRead++;
+		return new CurveRecord(type, open, noCtrlPts, frames, coords);
+	}
+
+	private String readLine() throws IOException {
+		String line = in.readLine();
+		if (line == null) {
+			throw new EOFException("Unexpected end of curve file");
+		}
+		return line.trim();
+	}
+
+	private int readInt() throws IOException {
+		return Integer.parseInt(readLine());
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.metrics;
+
+/**
+ * Emits Java Flight Recorder events for fitting and drawing, so that slow fits
+ * can be put next to GC and CPU activity in JDK Mission Control. The events
+ * themselves are in src/main/jfr, which is compiled for Java 11 into the
+ * multi-release part of the jar. On Java 8, or on a JVM without JFR, every
+ * method here does nothing.
+ *
+ * Events that take time are started with one of the begin methods, which
+ * return a handle to pass on to the matching end method. The handle is null
+ * when the event is not recorded.
+ */
+public class FlightRecorder {
+
+	private static final String IMPLEMENTATION = "sc.fiji.kappa.jfr.JfrFlightRecorder";
+
+	private static final FlightRecorder INSTANCE = load();
+
+	protected FlightRecorder() {
+	}
+
+	public static FlightRecorder get() {
+		return INSTANCE;
+	}
+
+	private static FlightRecorder load() {
+		try {
+			return (FlightRecorder) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+		} catch (Exception | LinkageError e) {
+			return new FlightRecorder();
+		}
+	}
+
+	/**
+	 * @return Whether the events are compiled in and JFR is available
+	 */
+	public boolean isAvailable() {
+		return false;
+	}
+
+	/**
+	 * Starts the event for fitting a curve until its error stops decreasing.
+	 */
+	public Object beginCurveFit(String curve, int frame) {
+		return null;
+	}
+
+	public void endCurveFit(Object event, int iterations, double error) {
+	}
+
+	/**
+	 * Starts the event for one fitting iteration of a curve, including the
+	 * least squares solve.
+	 */
+	public Object beginFittingIteration(String curve, int frame) {
+		return null;
+	}
+
+	public void endFittingIteration(Object event, int dataPoints, double error) {
+	}
+
+	/**
+	 * Starts the event for finding the thresholded pixels around a curve.
+	 */
+	public Object beginThresholding(String curve, int frame) {
+		return null;
+	}
+
+	public void endThresholding(Object event, int pixels) {
+	}
+
+	/**
+	 * Starts the event for moving the image and all curves to another frame.
+	 *
+	 * @param curve
+	 *            The name of the selected curve, or an empty string if none or
+	 *            several are selected
+	 */
+	public Object beginFrameChange(String curve, int frame, int curves) {
+		return null;
+	}
+
+	public void endFrameChange(Object event) {
+	}
+
+	/**
+	 * Starts the event for painting the visible part of the image and the curves.
+	 *
+	 * @param curve
+	 *            The name of the selected curve, or an empty string if none or
+	 *            several are selected
+	 */
+	public Object beginOverlayRepaint(String curve, int frame) {
+		return null;
+	}
+
+	public void endOverlayRepaint(Object event, int width, int height) {
+	}
+}
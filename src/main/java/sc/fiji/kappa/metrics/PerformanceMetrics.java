@@ -0,0 +1,215 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.scijava.log.LogService;
+
+/**
+ * Keeps a count, the total and maximum time, and the number of items processed
+ * for every {@link Stage}. Timing a stage is one call to {@link #start()} and
+ * one to {@link #stop(Stage, long)}, and is safe from any thread:
+ *
+ * <pre>
+ * long start = PerformanceMetrics.start();
+ * ...
+ * PerformanceMetrics.stop(Stage.FOOTPOINTS, start, dataPoints.size());
+ * </pre>
+ *
+ * When the metrics are disabled, start returns {@link #DISABLED} and nothing is
+ * recorded.
+ */
+public final class PerformanceMetrics {
+
+	public static final long DISABLED = Long.MIN_VALUE;
+
+	private static volatile boolean enabled = true;
+
+	private static final int NO_STAGES = Stage.values().length;
+	private static final LongAdder[] counts = new LongAdder[NO_STAGES];
+	private static final LongAdder[] totalNanos = new LongAdder[NO_STAGES];
+	private static final LongAdder[] items = new LongAdder[NO_STAGES];
+	private static final LongAccumulator[] maxNanos = new LongAccumulator[NO_STAGES];
+
+	static {
+		for (int i = 0; i < NO_STAGES; i++) {
+			counts[i] = new LongAdder();
+			totalNanos[i] = new LongAdder();
+			items[i] = new LongAdder();
+			maxNanos[i] = new LongAccumulator(Math::max, 0);
+		}
+	}
+
+	private PerformanceMetrics() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		PerformanceMetrics.enabled = enabled;
+	}
+
+	/**
+	 * @return The start time to pass on to stop, or {@link #DISABLED}
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : DISABLED;
+	}
+
+	public static void stop(Stage stage, long start) {
+		stop(stage, start, 0);
+	}
+
+	/**
+	 * Records one run of a stage that began at start.
+	 *
+	 * @param noItems
+	 *            The number of items, such as data points or pixels, the run
+	 *            processed
+	 */
+	public static void stop(Stage stage, long start, long noItems) {
+		if (start == DISABLED) {
+			return;
+		}
+		long elapsed = System.nanoTime() - start;
+		int i = stage.ordinal();
+		counts[i].increment();
+		totalNanos[i].add(elapsed);
+		items[i].add(noItems);
+		maxNanos[i].accumulate(elapsed);
+	}
+
+	public static void reset() {
+		for (int i = 0; i < NO_STAGES; i++) {
+			counts[i].reset();
+			totalNanos[i].reset();
+			items[i].reset();
+			maxNanos[i].reset();
+		}
+	}
+
+	public static StageStatistics get(Stage stage) {
+		int i = stage.ordinal();
+		return new StageStatistics(stage, counts[i].sum(), totalNanos[i].sum(), maxNanos[i].get(), items[i].sum());
+	}
+
+	/**
+	 * @return The statistics of every stage, in the order of {@link Stage}
+	 */
+	public static List<StageStatistics> getAll() {
+		List<StageStatistics> all = new ArrayList<>(NO_STAGES);
+		for (Stage stage : Stage.values()) {
+			all.add(get(stage));
+		}
+		return all;
+	}
+
+	/**
+	 * @return A table of the stages that have run at least once, one per line
+	 */
+	public static String format() {
+		StringBuilder table = new StringBuilder();
+		table.append(String.format("%-20s %7s %10s %9s %9s %10s%n", "Stage", "Count", "Total ms", "Mean ms",
+				"Max ms", "Items"));
+		for (StageStatistics s : getAll()) {
+			if (s.getCount() > 0) {
+				table.append(String.format("%-20s %7d %10.1f %9.3f %9.3f %10d%n", s.getStage().getLabel(),
+						s.getCount(), s.getTotalMillis(), s.getMeanMillis(), s.getMaxMillis(), s.getItems()));
+			}
+		}
+		return table.toString();
+	}
+
+	/**
+	 * Writes the table of {@link #format()} to the log, one line per stage.
+	 */
+	public static void log(LogService log) {
+		log.info("Kappa performance metrics:");
+		for (String line : format().split(System.lineSeparator())) {
+			log.info(line);
+		}
+	}
+
+	/**
+	 * The statistics of a stage at the time they were read.
+	 */
+	public static class StageStatistics {
+
+		private final Stage stage;
+		private final long count;
+		private final long totalNanos;
+		private final long maxNanos;
+		private final long items;
+
+		StageStatistics(Stage stage, long count, long totalNanos, long maxNanos, long items) {
+			this.stage = stage;
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.items = items;
+		}
+
+		public Stage getStage() {
+			return stage;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+
+		public long getItems() {
+			return items;
+		}
+
+		public double getTotalMillis() {
+			return totalNanos / 1e6;
+		}
+
+		public double getMeanMillis() {
+			return count == 0 ? 0 : totalNanos / 1e6 / count;
+		}
+
+		public double getMaxMillis() {
+			return maxNanos / 1e6;
+		}
+	}
+}
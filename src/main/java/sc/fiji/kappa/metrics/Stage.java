@@ -0,0 +1,62 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.metrics;
+
+/**
+ * The stages of the fitting, drawing and file handling that
+ * {@link PerformanceMetrics} keeps times for. Stages can be nested, so the
+ * time of fitting curves includes the time of its fitting iterations.
+ */
+public enum Stage {
+	FIT_CURVES("Fit curves"),
+	IMAGE_PYRAMID("Image pyramid"),
+	FITTING_ITERATION("Fitting iteration"),
+	FOOTPOINTS("Footpoints"),
+	ERROR_EVALUATION("Error evaluation"),
+	THRESHOLDING("Thresholded pixels"),
+	CENTRE_LINE("Centre-line data points"),
+	DATA_POINTS("Data points"),
+	FILL_POINTS("Fill points"),
+	DRAW_OVERLAY("Draw image overlay"),
+	SCALE_IMAGE("Scale image tile"),
+	LOAD_CURVES("Load curve file"),
+	SAVE_CURVES("Save curve file"),
+	IMPORT_ROIS("Import ROIs"),
+	DETECT_FILAMENTS("Detect filaments"),
+	EXPORT("Export");
+
+	private final String label;
+
+	private Stage(String label) {
+		this.label = label;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+}
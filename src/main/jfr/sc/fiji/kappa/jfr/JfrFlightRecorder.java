@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import sc.fiji.kappa.metrics.FlightRecorder;
+
+/**
+ * The JFR events behind {@link FlightRecorder}. This is compiled for Java 11
+ * into the multi-release part of the jar, and loaded by name, so that Kappa
+ * still runs without JFR.
+ */
+public class JfrFlightRecorder extends FlightRecorder {
+
+	@Category("Kappa")
+	static abstract class CurveEvent extends Event {
+
+		@Label("Curve")
+		String curve;
+
+		@Label("Frame")
+		int frame;
+	}
+
+	@Name("sc.fiji.kappa.CurveFit")
+	@Label("Curve Fit")
+	@Description("Fitting a curve until its error stops decreasing")
+	static class CurveFitEvent extends CurveEvent {
+
+		@Label("Iterations")
+		int iterations;
+
+		@Label("Error")
+		double error;
+	}
+
+	@Name("sc.fiji.kappa.FittingIteration")
+	@Label("Fitting Iteration")
+	@Description("One fitting iteration of a curve, including the least squares solve")
+	static class FittingIterationEvent extends CurveEvent {
+
+		@Label("Data Points")
+		int dataPoints;
+
+		@Label("Error")
+		double error;
+	}
+
+	@Name("sc.fiji.kappa.Thresholding")
+	@Label("Thresholding")
+	@Description("Finding the thresholded pixels around a curve")
+	static class ThresholdingEvent extends CurveEvent {
+
+		@Label("Pixels")
+		int pixels;
+	}
+
+	@Name("sc.fiji.kappa.FrameChange")
+	@Label("Frame Change")
+	@Description("Moving the image and all curves to another frame")
+	static class FrameChangeEvent extends CurveEvent {
+
+		@Label("Curves")
+		int curves;
+	}
+
+	@Name("sc.fiji.kappa.OverlayRepaint")
+	@Label("Overlay Repaint")
+	@Description("Painting the visible part of the image and the curves")
+	static class OverlayRepaintEvent extends CurveEvent {
+
+		@Label("Width")
+		int width;
+
+		@Label("Height")
+		int height;
+	}
+
+	// Starts an event, unless it is not being recorded
+	private static <T extends CurveEvent> T begin(T event, String curve, int frame) {
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.curve = curve;
+		event.frame = frame;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public boolean isAvailable() {
+		return true;
+	}
+
+	@Override
+	public Object beginCurveFit(String curve, int frame) {
+		return begin(new CurveFitEvent(), curve, frame);
+	}
+
+	@Override
+	public void endCurveFit(Object event, int iterations, double error) {
+		if (event != null) {
+			CurveFitEvent e = (CurveFitEvent) event;
+			e.iterations = iterations;
+			e.error = error;
+			e.commit();
+		}
+	}
+
+	@Override
+	public Object beginFittingIteration(String curve, int frame) {
+		return begin(new FittingIterationEvent(), curve, frame);
+	}
+
+	@Override
+	public void endFittingIteration(Object event, int dataPoints, double error) {
+		if (event != null) {
+			FittingIterationEvent e = (FittingIterationEvent) event;
+			e.dataPoints = dataPoints;
+			e.error = error;
+			e.commit();
+		}
+	}
+
+	@Override
+	public Object beginThresholding(String curve, int frame) {
+		return begin(new ThresholdingEvent(), curve, frame);
+	}
+
+	@Override
+	public void endThresholding(Object event, int pixels) {
+		if (event != null) {
+			ThresholdingEvent e = (ThresholdingEvent) event;
+			e.pixels = pixels;
+			e.commit();
+		}
+	}
+
+	@Override
+	public Object beginFrameChange(String curve, int frame, int curves) {
+		FrameChangeEvent event = begin(new FrameChangeEvent(), curve, frame);
+		if (event != null) {
+			event.curves = curves;
+		}
+		return event;
+	}
+
+	@Override
+	public void endFrameChange(Object event) {
+		if (event != null) {
+			((FrameChangeEvent) event).commit();
+		}
+	}
+
+	@Override
+	public Object beginOverlayRepaint(String curve, int frame) {
+		return begin(new OverlayRepaintEvent(), curve, frame);
+	}
+
+	@Override
+	public void endOverlayRepaint(Object event, int width, int height) {
+		if (event != null) {
+			OverlayRepaintEvent e = (OverlayRepaintEvent) event;
+			e.width = width;
+			e.height = height;
+			e.commit();
+		}
+	}
+}
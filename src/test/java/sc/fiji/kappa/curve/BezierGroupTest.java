@@ -0,0 +1,220 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import sc.fiji.kappa.gui.KappaFrame;
+
+public class BezierGroupTest {
+
+	private static List<List<Point2D>> polylines(int count) {
+		List<List<Point2D>> polylines = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			List<Point2D> points = new ArrayList<>();
+			for (int j = 0; j < 6; j++) {
+				points.add(new Point2D.Double(10 * j, 5 * i + 3 * Math.sin(j + i)));
+			}
+			polylines.add(points);
+		}
+		return polylines;
+	}
+
+	@Test
+	public void testBulkAddMatchesSingleAdds() {
+		BezierGroup single = new BezierGroup(null);
+		single.addCurve(polylines(1).get(0), 1, 6, KappaFrame.B_SPLINE, true, Curve.THRESHOLD_RADIUS);
+		for (List<Point2D> points : polylines(50)) {
+			single.addCurve(new ArrayList<>(points), 1, points.size(), KappaFrame.B_SPLINE, true,
+					Curve.THRESHOLD_RADIUS);
+		}
+
+		BezierGroup bulk = new BezierGroup(null);
+		bulk.addCurve(polylines(1).get(0), 1, 6, KappaFrame.B_SPLINE, true, Curve.THRESHOLD_RADIUS);
+		assertEquals(50, bulk.addCurves(polylines(50), 1, KappaFrame.B_SPLINE, true, Curve.THRESHOLD_RADIUS));
+
+		assertEquals(single.size(), bulk.size());
+		assertEquals(single.getCount(), bulk.getCount());
+		assertEquals(1, bulk.getNoSelected());
+		for (int i = 0; i < single.size(); i++) {
+			Curve expected = single.get(i);
+			Curve actual = bulk.get(i);
+			assertEquals(expected.getName(), actual.getName());
+			assertEquals(expected.isSelected(), actual.isSelected());
+			assertEquals(expected.getPoints().size(), actual.getPoints().size());
+			for (int j = 0; j < expected.getPoints().size(); j++) {
+				assertEquals(expected.getPoints().get(j).getX(), actual.getPoints().get(j).getX(), 0);
+				assertEquals(expected.getPoints().get(j).getY(), actual.getPoints().get(j).getY(), 0);
+			}
+		}
+		assertTrue(bulk.get(bulk.size() - 1).isSelected());
+		assertFalse(bulk.get(0).isSelected());
+	}
+
+	@Test
+	public void testBulkAddNothing() {
+		BezierGroup group = new BezierGroup(null);
+		assertEquals(0, group.addCurves(new ArrayList<>(), 1, KappaFrame.BEZIER_CURVE, true,
+				Curve.THRESHOLD_RADIUS));
+		assertTrue(group.isEmpty());
+		assertEquals(0, group.getCount());
+	}
+
+	@Test
+	public void testSelection() {
+		BezierGroup group = new BezierGroup(null);
+		group.addCurves(polylines(10), 1, KappaFrame.B_SPLINE, true, Curve.THRESHOLD_RADIUS);
+		group.setSelected(new int[] { 2, 3, 7 });
+		assertEquals(3, group.getNoSelected());
+		assertEquals(2, group.getMinSelectedIndex());
+		assertEquals(7, group.getMaxSelectedIndex());
+		assertArrayEquals(new Curve[] { group.get(7), group.get(3), group.get(2) }, group.getSelected());
+		assertTrue(group.get(3).isSelected());
+
+		// Removing a curve moves the selection of the following ones down
+		group.remove(3);
+		assertEquals(2, group.getNoSelected());
+		assertTrue(group.isSelected(2));
+		assertFalse(group.isSelected(3));
+		assertTrue(group.isSelected(6));
+		assertArrayEquals(new Curve[] { group.get(6), group.get(2) }, group.getSelected());
+
+		group.setSelected(4, 5, true);
+		group.setUnselected(group.get(2));
+		assertEquals(3, group.getNoSelected());
+		assertEquals(4, group.getMinSelectedIndex());
+
+		group.setAllUnselected();
+		assertEquals(0, group.getNoSelected());
+		assertEquals(-1, group.getMaxSelectedIndex());
+		for (Curve c : group) {
+			assertFalse(c.isSelected());
+		}
+	}
+
+	@Test
+	public void testSetSelection() {
+		BezierGroup group = new BezierGroup(null);
+		group.addCurves(polylines(10), 1, KappaFrame.B_SPLINE, true, Curve.THRESHOLD_RADIUS);
+		group.setSelected(new int[] { 1, 4 });
+		BitSet selected = new BitSet();
+		selected.set(4);
+		selected.set(6);
+		selected.set(9);
+		group.setSelection(selected);
+		assertEquals(selected, group.getSelection());
+		assertEquals(3, group.getNoSelected());
+		for (int i = 0; i < group.size(); i++) {
+			assertEquals(selected.get(i), group.get(i).isSelected());
+		}
+
+		// The index gives back the position of each curve
+		CurveIndex index = group.getIndex();
+		for (int i = 0; i < group.size(); i++) {
+			assertEquals(i, index.indexOf(group.get(i)));
+		}
+		Curve removed = group.remove(0);
+		index = group.getIndex();
+		assertEquals(-1, index.indexOf(removed));
+		assertEquals(0, index.indexOf(group.get(0)));
+	}
+
+	@Test
+	public void testRemoveSelected() {
+		BezierGroup group = new BezierGroup(null);
+		group.addCurves(polylines(8), 1, KappaFrame.BEZIER_CURVE, true, Curve.THRESHOLD_RADIUS);
+		List<Curve> kept = new ArrayList<>(group);
+		group.setSelected(new int[] { 0, 1, 4, 7 });
+		for (int i : new int[] { 7, 4, 1, 0 }) {
+			kept.remove(i);
+		}
+
+		BitSet removed = group.removeSelected();
+		assertEquals(4, removed.cardinality());
+		assertTrue(removed.get(0) && removed.get(1) && removed.get(4) && removed.get(7));
+		assertEquals(kept, group);
+		assertEquals(0, group.getNoSelected());
+		assertEquals(0, group.getSelected().length);
+	}
+
+	private static void assertStatistics(BezierGroup group, boolean selectedOnly) {
+		double sum = 0, lengthSum = 0;
+		int n = 0;
+		for (Curve c : group) {
+			if (!selectedOnly || c.isSelected()) {
+				sum += c.getAverageCurvature();
+				lengthSum += c.getApproxCurveLength();
+				n++;
+			}
+		}
+		double variance = 0;
+		for (Curve c : group) {
+			if (!selectedOnly || c.isSelected()) {
+				variance += (c.getAverageCurvature() - sum / n) * (c.getAverageCurvature() - sum / n);
+			}
+		}
+		assertEquals(sum / n, group.getAvgAverageCurvature(selectedOnly), 1e-9);
+		assertEquals(lengthSum / n, group.getAvgApproxCurveLength(selectedOnly), 1e-9);
+		assertEquals(Math.sqrt(variance / (n - 1)), group.getStdDevOfAvgCurvature(selectedOnly), 1e-9);
+	}
+
+	@Test
+	public void testPopulationStatistics() {
+		BezierGroup group = new BezierGroup(null);
+		group.addCurves(polylines(20), 1, KappaFrame.B_SPLINE, true, Curve.THRESHOLD_RADIUS);
+		group.setSelected(new int[] { 1, 4, 5, 11 });
+		assertStatistics(group, false);
+		assertStatistics(group, true);
+
+		// Changes the selection, the geometry of a selected curve and removes one
+		group.setSelected(12, 15, true);
+		group.setUnselected(group.get(4));
+		List<Point2D> points = new ArrayList<>();
+		for (Point2D p : group.get(11).getCtrlPts()) {
+			points.add(new Point2D.Double(2 * p.getX(), 3 * p.getY()));
+		}
+		((BSpline) group.get(11)).computeSpline(points, 1);
+		group.remove(2);
+		assertStatistics(group, false);
+		assertStatistics(group, true);
+
+		group.removeSelected();
+		assertStatistics(group, false);
+		assertTrue(Double.isNaN(group.getAvgAverageCurvature(true)));
+	}
+}
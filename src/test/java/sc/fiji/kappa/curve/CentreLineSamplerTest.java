@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import sc.fiji.kappa.gui.KappaFrame;
+import sc.fiji.kappa.validation.SyntheticFilament;
+
+public class CentreLineSamplerTest {
+
+	@Test
+	public void testThickLine() {
+		// A horizontal line with a wide profile, centred between pixel rows
+		int width = 60, height = 40;
+		double centre = 20.3, sigma = 3;
+		float[] weights = new float[width * height];
+		double sum = 0, sumY = 0;
+		for (int y = 0; y < height; y++) {
+			double weight = 100 * Math.exp(-(y - centre) * (y - centre) / (2 * sigma * sigma));
+			if (weight >= 30) {
+				for (int x = 0; x < width; x++) {
+					weights[y * width + x] = (float) weight;
+				}
+				sum += weight;
+				sumY += weight * y;
+			}
+		}
+
+		// The thresholded pixels of each column have their centroid here
+		double centroid = sumY / sum;
+
+		// The curve runs off-centre, but the whole profile is within its radius
+		List<Point2D> ctrlPts = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			ctrlPts.add(new Point2D.Double(10 + 40 * i / 3.0, 18));
+		}
+		BSpline curve = new BSpline(ctrlPts, 1, 4, "line", true, 8, null);
+		DataPoints dataPoints = new CentreLineSampler(weights, width, height).getDataPoints(curve, 8);
+
+		// About one data point for each pixel along the curve, on the centre of the
+		// line
+		assertTrue(dataPoints.size() >= 30 && dataPoints.size() <= 41);
+		double total = 0;
+		for (int i = 0; i < dataPoints.size(); i++) {
+			assertEquals(centroid, dataPoints.getY(i), 0.05);
+			total += dataPoints.getWeight(i);
+		}
+
+		// The data points weigh about as much as the pixels of the 40 columns along
+		// the curve
+		assertEquals(1, total / (40 * sum), 0.1);
+	}
+
+	@Test
+	public void testFitting() {
+		int width = 256, height = 256, dataRadius = 10;
+		SyntheticFilament sine = SyntheticFilament.sine(20, width - 20, height / 2.0, 20, 100);
+		float[] image = sine.render(width, height, 3, 20, 150, 5, 42);
+		float[] weights = new float[image.length];
+		for (int i = 0; i < image.length; i++) {
+			if (image[i] >= 60) {
+				weights[i] = image[i];
+			}
+		}
+		CentreLineSampler sampler = new CentreLineSampler(weights, width, height);
+		BSpline curve = new BSpline(sine.getControlPoints(12, 2), 1, 12, "sine", true, dataRadius, null);
+
+		String fittingAlgorithm = KappaFrame.FITTING_ALGORITHMS[KappaFrame.DEFAULT_FITTING_ALGORITHM];
+		double error = Double.MAX_VALUE;
+		double oldError;
+		int noDataPoints = 0;
+		do {
+			oldError = error;
+			DataPoints dataPoints = sampler.getDataPoints(curve, dataRadius);
+			noDataPoints = dataPoints.size();
+			error = curve.fittingIteration(dataPoints, 1, fittingAlgorithm);
+		}
+		while (oldError > error);
+
+		// Far fewer data points than the thresholded pixels around the curve
+		int noPixels = new ImagePyramid(weights, width, height, 0).getDataPoints(0, curve, dataRadius).size();
+		assertTrue(noDataPoints + " data points for " + noPixels + " pixels", 5 * noDataPoints < noPixels);
+
+		// The fitted curve follows the filament
+		List<Point2D> samples = sine.getControlPoints(SyntheticFilament.NO_SAMPLES, 0);
+		double total = 0;
+		for (BezierPoint p : curve.getPoints()) {
+			total += samples.get(sine.getNearestSample(p.getX(), p.getY())).distance(p);
+		}
+		double distance = total / curve.getPoints().size();
+		assertTrue("The curve is " + distance + " pixels off the filament", distance < 0.5);
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CurveMetricsTest {
+
+	@Test
+	public void testIndexAtArcLength() {
+		// The third segment has no length, like the junction of two Bezier Curves
+		CurveMetrics m = new CurveMetrics(0, 0, 0, new double[] { 0, 1, 3, 3, 4 });
+		assertEquals(4, m.getLength(), 0);
+		assertEquals(0, m.getIndexAtArcLength(-1), 0);
+		assertEquals(0, m.getIndexAtArcLength(0), 0);
+		assertEquals(0.5, m.getIndexAtArcLength(0.5), 1e-12);
+		assertEquals(1, m.getIndexAtArcLength(1), 1e-12);
+		assertEquals(1.5, m.getIndexAtArcLength(2), 1e-12);
+		assertEquals(3, m.getIndexAtArcLength(3), 1e-12);
+		assertEquals(3.25, m.getIndexAtArcLength(3.25), 1e-12);
+		assertEquals(4, m.getIndexAtArcLength(5), 0);
+	}
+}
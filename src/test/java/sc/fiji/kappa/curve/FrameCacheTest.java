@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FrameCacheTest {
+
+	@Test
+	public void testBudget() {
+		Curve a = line(10);
+		Curve b = line(20);
+		int noPoints = a.getNoPoints();
+		Curve.setFrameCacheBudget(3 * noPoints);
+		try {
+			// Leaving a frame keeps its geometry, for all the curves together
+			a.translateCurve(2);
+			b.translateCurve(2);
+			a.translateCurve(3);
+			assertEquals(3 * noPoints, FrameCache.getCost());
+
+			// The least recently used frame of either curve makes way for the next
+			b.translateCurve(3);
+			assertEquals(3 * noPoints, FrameCache.getCost());
+			a.translateCurve(4);
+			b.translateCurve(4);
+			assertEquals(3 * noPoints, FrameCache.getCost());
+
+			// A curve drops only its own frames
+			b.clearFrameCache();
+			assertEquals(noPoints, FrameCache.getCost());
+			Curve.setFrameCacheBudget(0);
+			assertEquals(0, FrameCache.getCost());
+		} finally {
+			Curve.setFrameCacheBudget(Curve.DEFAULT_FRAME_CACHE_BUDGET);
+		}
+	}
+
+	@Test
+	public void testRestore() {
+		Curve a = line(10);
+		double y = a.getPoints().get(5).getY();
+		try {
+			a.translateCurve(2);
+
+			// The geometry of the first frame is the one that was kept
+			a.translateCurve(1);
+			assertEquals(y, a.getPoints().get(5).getY(), 0);
+			assertEquals(2 * a.getNoPoints(), FrameCache.getCost());
+		} finally {
+			a.clearFrameCache();
+		}
+	}
+
+	private Curve line(double y) {
+		List<Point2D> ctrlPts = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			ctrlPts.add(new Point2D.Double(10 + 10 * i, y));
+		}
+		return new BSpline(ctrlPts, 1, 4, "line", true, 5, null);
+	}
+}
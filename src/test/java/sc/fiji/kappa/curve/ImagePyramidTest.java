@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import sc.fiji.kappa.gui.KappaFrame;
+import sc.fiji.kappa.validation.SyntheticFilament;
+
+public class ImagePyramidTest {
+
+	private static final double DELTA = 1e-4;
+
+	@Test
+	public void testNoLevels() {
+		assertEquals(0, ImagePyramid.getNoLevels(3));
+		assertEquals(1, ImagePyramid.getNoLevels(5));
+		assertEquals(3, ImagePyramid.getNoLevels(20));
+		assertEquals(ImagePyramid.MAX_LEVELS, ImagePyramid.getNoLevels(1000));
+	}
+
+	@Test
+	public void testDownsampling() {
+		// An odd sized frame, so that the blocks at the edges are incomplete
+		int width = 7, height = 5;
+		float[] weights = new float[width * height];
+		weights[4 * width + 4] = 2;
+		weights[4 * width + 5] = 6;
+		weights[4 * width + 6] = 4;
+		ImagePyramid pyramid = new ImagePyramid(weights, width, height, 5);
+
+		// Stops once the frame is down to a single row
+		assertEquals(3, pyramid.getNoLevels());
+		assertEquals(4, pyramid.getWidth(1));
+		assertEquals(3, pyramid.getHeight(1));
+		assertEquals(1, pyramid.getWidth(3));
+		assertEquals(1, pyramid.getHeight(3));
+
+		// The weights are summed over each block
+		assertEquals(8, pyramid.getWeight(1, 2, 2), DELTA);
+		assertEquals(4, pyramid.getWeight(1, 3, 2), DELTA);
+		assertEquals(12, pyramid.getWeight(2, 1, 1), DELTA);
+		assertEquals(12, pyramid.getWeight(3, 0, 0), DELTA);
+
+		// The data points lie at the weighted centroid of their block
+		DataPoints dataPoints = pyramid.getDataPoints(2, line(1.5, 1, 1.5, 1.2), 1);
+		assertEquals(1, dataPoints.size());
+		assertEquals((4 * 2 + 5 * 6 + 6 * 4) / 12.0 / 4, dataPoints.getX(0), DELTA);
+		assertEquals(1, dataPoints.getY(0), DELTA);
+		assertEquals(12, dataPoints.getWeight(0), DELTA);
+	}
+
+	@Test
+	public void testDataPointsNearCurve() {
+		int width = 40, height = 40;
+		float[] weights = new float[width * height];
+		for (int x = 0; x < width; x++) {
+			weights[10 * width + x] = 1;
+			weights[30 * width + x] = 1;
+		}
+		ImagePyramid pyramid = new ImagePyramid(weights, width, height, 1);
+
+		// Only the data points of the line along the curve are within its radius,
+		// each of them once
+		DataPoints dataPoints = pyramid.getDataPoints(1, line(2, 5, 18, 5), 2);
+		assertEquals(20, dataPoints.size());
+		for (int i = 0; i < dataPoints.size(); i++) {
+			assertEquals(5, dataPoints.getY(i), DELTA);
+			assertEquals(2, dataPoints.getWeight(i), DELTA);
+		}
+	}
+
+	@Test
+	public void testCoarseFitting() {
+		int width = 256, height = 256, dataRadius = 12;
+		SyntheticFilament sine = SyntheticFilament.sine(20, width - 20, height / 2.0, 20, 100);
+		float[] image = sine.render(width, height, 1.5, 20, 150, 5, 42);
+
+		// The pixels above the background are the data points
+		float[] weights = new float[image.length];
+		for (int i = 0; i < image.length; i++) {
+			if (image[i] >= 60) {
+				weights[i] = image[i];
+			}
+		}
+		ImagePyramid pyramid = new ImagePyramid(weights, width, height, ImagePyramid.getNoLevels(dataRadius));
+		assertEquals(2, pyramid.getNoLevels());
+
+		BSpline curve = new BSpline(sine.getControlPoints(12, 4), 1, 12, "sine", true, dataRadius, null);
+		double initialDistance = meanDistance(sine, curve);
+
+		// Fits on the coarse levels only, as a fitting job does before fitting at
+		// full resolution
+		String fittingAlgorithm = KappaFrame.FITTING_ALGORITHMS[KappaFrame.DEFAULT_FITTING_ALGORITHM];
+		for (int level = pyramid.getNoLevels(); level > 0; level--) {
+			double scaleFactor = 1 / ImagePyramid.getScale(level);
+			BSpline coarse = curve.scaledCopy(scaleFactor, 1);
+			double error = Double.MAX_VALUE;
+			double oldError;
+			do {
+				oldError = error;
+				DataPoints dataPoints = pyramid.getDataPoints(level, coarse, dataRadius * scaleFactor);
+				error = coarse.fittingIteration(dataPoints, 1, fittingAlgorithm);
+			}
+			while (oldError > error);
+			curve.setFromScaledCopy(coarse, scaleFactor, 1);
+		}
+
+		double distance = meanDistance(sine, curve);
+		assertTrue("The curve moved from " + initialDistance + " to " + distance + " pixels off the filament",
+				distance < 1.5 && distance < initialDistance / 2);
+	}
+
+	// A straight open B-Spline from (x0, y0) to (x1, y1)
+	private static BSpline line(double x0, double y0, double x1, double y1) {
+		List<Point2D> ctrlPts = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			ctrlPts.add(new Point2D.Double(x0 + (x1 - x0) * i / 3, y0 + (y1 - y0) * i / 3));
+		}
+		return new BSpline(ctrlPts, 1, 4, "line", true, 1, null);
+	}
+
+	private static double meanDistance(SyntheticFilament filament, Curve curve) {
+		List<Point2D> samples = filament.getControlPoints(SyntheticFilament.NO_SAMPLES, 0);
+		double total = 0;
+		for (BezierPoint p : curve.getPoints()) {
+			total += samples.get(filament.getNearestSample(p.getX(), p.getY())).distance(p);
+		}
+		return total / curve.getPoints().size();
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class KeyframeStoreTest {
+
+	private static List<Point2D> points(double... coords) {
+		Point2D[] points = new Point2D[coords.length / 2];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = new Point2D.Double(coords[2 * i], coords[2 * i + 1]);
+		}
+		return Arrays.asList(points);
+	}
+
+	@Test
+	public void testSortedInsertion() {
+		KeyframeStore store = new KeyframeStore();
+		for (int t : new int[] { 10, 2, 7, 30, 1, 20 }) {
+			store.add(points(t, 0, t, 1), 2, t);
+		}
+		// Replaces the keyframe at frame 7 with one with more control points
+		store.add(points(7, 0, 7, 1, 7, 2), 3, 7);
+
+		assertArrayEquals(new int[] { 1, 2, 7, 10, 20, 30 }, store.getFrames());
+		assertEquals(3, store.getNoPoints(2));
+		for (int k = 0; k < store.size(); k++) {
+			assertEquals(store.getFrame(k), store.getX(k, 0), 0);
+			assertEquals(store.getNoPoints(k) - 1, store.getY(k, store.getNoPoints(k) - 1), 0);
+		}
+	}
+
+	@Test
+	public void testInterpolation() {
+		KeyframeStore store = new KeyframeStore();
+		store.add(points(0, 0, 10, 0), 2, 10);
+		store.add(points(10, 10, 30, 20), 2, 20);
+
+		double[] buffer = new double[4];
+		assertArrayEquals(new double[] { 0, 0, 10, 0 }, store.interpolate(1, buffer), 0);
+		assertArrayEquals(new double[] { 5, 5, 20, 10 }, store.interpolate(15, buffer), 1e-12);
+		assertArrayEquals(new double[] { 10, 10, 30, 20 }, store.interpolate(40, buffer), 0);
+
+		assertEquals(0, store.indexAtOrBefore(15));
+		assertEquals(1, store.indexAtOrAfter(15));
+		assertEquals(new Rectangle2D.Double(5, 5, 15, 5), store.getBounds(15));
+		assertEquals(new Rectangle2D.Double(0, 0, 10, 0), store.getBounds(10));
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RunningStatisticsTest {
+
+	@Test
+	public void testAddAndRemove() {
+		Random random = new Random(42);
+		double[] values = new double[1000];
+		RunningStatistics stats = new RunningStatistics();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 5 + random.nextGaussian();
+			stats.add(values[i]);
+		}
+
+		// Removes every other value, and compares with a direct two-pass computation
+		double sum = 0;
+		for (int i = 0; i < values.length; i += 2) {
+			stats.remove(values[i]);
+		}
+		for (int i = 1; i < values.length; i += 2) {
+			sum += values[i];
+		}
+		double mean = sum / 500;
+		double variance = 0;
+		for (int i = 1; i < values.length; i += 2) {
+			variance += (values[i] - mean) * (values[i] - mean);
+		}
+		variance /= 499;
+
+		assertEquals(500, stats.getCount());
+		assertEquals(mean, stats.getMean(), 1e-9);
+		assertEquals(variance, stats.getVariance(), 1e-9);
+	}
+
+	@Test
+	public void testFewValues() {
+		RunningStatistics stats = new RunningStatistics();
+		assertTrue(Double.isNaN(stats.getMean()));
+		stats.add(3);
+		assertEquals(3, stats.getMean(), 0);
+		assertTrue(Double.isNaN(stats.getVariance()));
+		stats.add(5);
+		assertEquals(2, stats.getVariance(), 1e-12);
+		stats.remove(3);
+		stats.remove(5);
+		assertEquals(0, stats.getCount());
+		assertTrue(Double.isNaN(stats.getMean()));
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.curve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ThresholdParametersTest {
+
+	@Test
+	public void testBrighter() {
+		ThresholdParameters parameters = new ThresholdParameters(100, true, 1);
+		assertTrue(parameters.accepts(new int[] { 0, 100, 0 }));
+		assertFalse(parameters.accepts(new int[] { 255, 99, 255 }));
+		assertEquals(180, parameters.getWeight(new int[] { 0, 180, 0 }, 8), 0);
+	}
+
+	@Test
+	public void testDarker() {
+		// Compares the mean of the channels
+		ThresholdParameters parameters = new ThresholdParameters(100, false, 3);
+		assertTrue(parameters.accepts(new int[] { 30, 60, 90 }));
+		assertFalse(parameters.accepts(new int[] { 101, 101, 101 }));
+
+		// The darker the pixel, the more it weighs
+		assertEquals(196, parameters.getWeight(new int[] { 30, 60, 90 }, 24), 0);
+		assertEquals(65476, parameters.getWeight(new int[] { 60, 60, 60 }, 16), 0);
+	}
+
+	@Test
+	public void testDataPoints() {
+		List<Point2D> points = new ArrayList<>();
+		List<Double> weights = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			points.add(new Point2D.Double(i, 2 * i));
+			weights.add(i / 2.0);
+		}
+
+		// Grows past its initial capacity
+		DataPoints dataPoints = new DataPoints(0);
+		for (int i = 0; i < points.size(); i++) {
+			dataPoints.add(points.get(i).getX(), points.get(i).getY(), weights.get(i));
+		}
+		DataPoints fromLists = new DataPoints(points, weights);
+		DataPoints unweighted = new DataPoints(points, null);
+		assertEquals(40, dataPoints.size());
+		assertEquals(40, fromLists.size());
+		for (int i = 0; i < points.size(); i++) {
+			assertEquals(points.get(i), dataPoints.getPoint(i));
+			assertEquals(2 * i, fromLists.getY(i), 0);
+			assertEquals(i / 2.0, fromLists.getWeight(i), 0);
+			assertEquals(1, unweighted.getWeight(i), 0);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.detection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import sc.fiji.kappa.validation.SyntheticFilament;
+
+public class FilamentDetectorTest {
+
+	private static final int WIDTH = 200;
+	private static final int HEIGHT = 160;
+
+	private static double distance(SyntheticFilament filament, Point2D p) {
+		Point2D q = filament.getControlPoints(SyntheticFilament.NO_SAMPLES, 0)
+				.get(filament.getNearestSample(p.getX(), p.getY()));
+		return q.distance(p);
+	}
+
+	@Test
+	public void testSingleFilament() {
+		SyntheticFilament sine = SyntheticFilament.sine(20, 180, 80, 20, 120);
+		float[] image = sine.render(WIDTH, HEIGHT, 1.5, 10, 100, 3, 1);
+
+		List<List<Point2D>> curves = new FilamentDetector().detect(image, WIDTH, HEIGHT);
+		assertEquals(1, curves.size());
+		List<Point2D> ctrlPts = curves.get(0);
+		assertTrue(ctrlPts.size() >= 4);
+
+		// The control points follow the filament from one end to the other
+		for (Point2D p : ctrlPts) {
+			assertTrue(p + " is off the filament", distance(sine, p) < 2.5);
+		}
+		assertTrue(Math.min(ctrlPts.get(0).getX(), ctrlPts.get(ctrlPts.size() - 1).getX()) < 30);
+		assertTrue(Math.max(ctrlPts.get(0).getX(), ctrlPts.get(ctrlPts.size() - 1).getX()) > 170);
+	}
+
+	@Test
+	public void testCrossingFilamentsAreSplit() {
+		// A horizontal and a vertical line crossing in the middle of a square image
+		int size = WIDTH;
+		float[] line = SyntheticFilament.sine(20, 180, 100, 0, 100).render(size, size, 1.5, 0, 100, 0, 1);
+		float[] image = new float[size * size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				image[y * size + x] = 10 + Math.max(line[y * size + x], line[x * size + y]);
+			}
+		}
+
+		// Each line is split in two where they cross
+		List<List<Point2D>> curves = new FilamentDetector().detect(image, size, size);
+		assertEquals(4, curves.size());
+		for (List<Point2D> ctrlPts : curves) {
+			Point2D first = ctrlPts.get(0);
+			Point2D last = ctrlPts.get(ctrlPts.size() - 1);
+			assertTrue(Math.abs(first.getX() - last.getX()) < 3 || Math.abs(first.getY() - last.getY()) < 3);
+			assertTrue(first.distance(last) > 60);
+		}
+	}
+
+	@Test
+	public void testBackgroundOnly() {
+		float[] image = new float[WIDTH * HEIGHT];
+		Arrays.fill(image, 10);
+		assertTrue(new FilamentDetector().detect(image, WIDTH, HEIGHT).isEmpty());
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Round-trips the sample curve files through the text and binary formats.
+ */
+public class CurveFileTest {
+
+	private static final File[] SAMPLES = { new File("Analysis/pykappa/Original_Sine_Curves.kapp"),
+		new File("Analysis/pykappa/Original_Spiral_Curves.kapp") };
+
+	@Test
+	public void testTextRoundTrip() throws IOException {
+		for (File sample : SAMPLES) {
+			List<CurveRecord> records = CurveFileReader.readAll(sample);
+			assertTrue(records.size() > 0);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			CurveFileWriter.writeText(out, records);
+			assertEquals(records, read(out.toByteArray()));
+
+			// The text writer writes the samples back exactly as they were
+			assertArrayEquals(normalize(Files.readAllBytes(sample.toPath())), normalize(out.toByteArray()));
+		}
+	}
+
+	@Test
+	public void testBinaryRoundTrip() throws IOException {
+		for (File sample : SAMPLES) {
+			List<CurveRecord> records = CurveFileReader.readAll(sample);
+			for (boolean compress : new boolean[] { false, true }) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				CurveFileWriter.writeBinary(out, records, compress);
+				assertClose(records, read(out.toByteArray()));
+			}
+		}
+	}
+
+	@Test
+	public void testKeyframes() throws IOException {
+		// A closed B-Spline with several keyframes, one of them unchanged
+		int[] frames = { 1, 5, 9, 3 };
+		double[] coords = new double[2 * 4 * frames.length];
+		for (int i = 0; i < coords.length; i++) {
+			coords[i] = i < 16 ? Math.sqrt(i) * 100 : coords[i - 8] + (i % 3) * 0.1;
+		}
+		List<CurveRecord> records = new ArrayList<>();
+		records.add(new CurveRecord(1, false, 4, frames, coords));
+		records.add(new CurveRecord(0, true, 4, new int[] { 1 }, new double[] { -1, 2, Double.NaN, 4, 5,
+			-0.0, 7, Double.MAX_VALUE }));
+
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		CurveFileWriter.writeBinary(binary, records, true);
+		assertClose(records, read(binary.toByteArray()));
+
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+		CurveFileWriter.writeText(text, records);
+		assertEquals(records, read(text.toByteArray()));
+	}
+
+	@Test
+	public void testSize() throws IOException {
+		// Control points of a curve between 10 and 500 pixels that move by up to 2
+		// pixels between keyframes
+		Random random = new Random(42);
+		int noCtrlPts = 20, noKeyframes = 50;
+		int[] frames = new int[noKeyframes];
+		double[] coords = new double[2 * noCtrlPts * noKeyframes];
+		for (int i = 0; i < coords.length; i++) {
+			if (i < 2 * noCtrlPts) {
+				coords[i] = 10 + 490 * random.nextDouble();
+			} else {
+				coords[i] = coords[i - 2 * noCtrlPts] + 4 * random.nextDouble() - 2;
+			}
+		}
+		for (int k = 0; k < noKeyframes; k++) {
+			frames[k] = k + 1;
+		}
+		List<CurveRecord> records = new ArrayList<>();
+		records.add(new CurveRecord(1, true, noCtrlPts, frames, coords));
+
+		// Well under the 8 bytes of a double per coordinate, even without deflating
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CurveFileWriter.writeBinary(out, records, false);
+		assertTrue(out.size() + " bytes", out.size() < 3.1 * coords.length);
+		assertClose(records, read(out.toByteArray()));
+	}
+
+	@Test
+	public void testControlPointsAt() {
+		CurveRecord record = new CurveRecord(0, true, 2, new int[] { 2, 6 }, new double[] { 0, 0, 10,
+			10, 4, 8, 10, 10 });
+		assertEquals(record.getControlPoints(0), record.getControlPointsAt(1));
+		assertEquals(record.getControlPoints(1), record.getControlPointsAt(9));
+		assertEquals(1, record.getControlPointsAt(3).get(0).getX(), 1e-12);
+		assertEquals(2, record.getControlPointsAt(3).get(0).getY(), 1e-12);
+		assertEquals(10, record.getControlPointsAt(3).get(1).getX(), 1e-12);
+	}
+
+	private static List<CurveRecord> read(byte[] data) throws IOException {
+		List<CurveRecord> records = new ArrayList<>();
+		try (CurveFileReader in = CurveFileReader.open(new ByteArrayInputStream(data))) {
+			CurveRecord record;
+			while ((record = in.next()) != null) {
+				records.add(record);
+			}
+		}
+		return records;
+	}
+
+	// The binary format keeps coordinates to the nearest 1/65536 pixel
+	private static void assertClose(List<CurveRecord> expected, List<CurveRecord> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int n = 0; n < expected.size(); n++) {
+			CurveRecord e = expected.get(n);
+			CurveRecord a = actual.get(n);
+			assertEquals(e.getType(), a.getType());
+			assertEquals(e.isOpen(), a.isOpen());
+			assertEquals(e.getNoCtrlPts(), a.getNoCtrlPts());
+			assertEquals(e.getNoKeyframes(), a.getNoKeyframes());
+			for (int k = 0; k < e.getNoKeyframes(); k++) {
+				assertEquals(e.getFrame(k), a.getFrame(k));
+			}
+			assertArrayEquals(e.getCoords(), a.getCoords(), 0.5 / CurveFileFormat.COORDINATE_SCALE);
+		}
+	}
+
+	private static byte[] normalize(byte[] data) {
+		return new String(data).replace("\r\n", "\n").trim().getBytes();
+	}
+}
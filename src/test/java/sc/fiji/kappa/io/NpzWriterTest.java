@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+public class NpzWriterTest {
+
+	@Test
+	public void testArchive() throws IOException {
+		File file = File.createTempFile("kappa", ".npz");
+		file.deleteOnExit();
+		double[] x = { 1.5, -2, Math.PI };
+		try (NpzWriter out = NpzWriter.open(file)) {
+			out.write("x", x);
+			out.write("offsets", new long[] { 0, 3 });
+			out.write("points", new double[] { 1, 2, 3, 4 }, 2, 2);
+			out.write("open", new byte[] { 1 });
+		}
+
+		byte[] archive = Files.readAllBytes(file.toPath());
+		try (ZipFile zip = new ZipFile(file)) {
+			assertEquals(4, zip.size());
+			assertEquals("{'descr': '<f8', 'fortran_order': False, 'shape': (3,), }", header(zip,
+				"x.npy"));
+			assertEquals("{'descr': '<f8', 'fortran_order': False, 'shape': (2, 2), }", header(zip,
+				"points.npy"));
+			assertEquals("{'descr': '|i1', 'fortran_order': False, 'shape': (1,), }", header(zip,
+				"open.npy"));
+
+			// The data of the first array starts at an aligned offset in the file
+			int start = findData(archive, x);
+			assertTrue(start > 0);
+			assertEquals(0, start % 64);
+		}
+	}
+
+	private static String header(ZipFile zip, String name) throws IOException {
+		ZipEntry entry = zip.getEntry(name);
+		assertEquals(ZipEntry.STORED, entry.getMethod());
+		try (InputStream in = zip.getInputStream(entry)) {
+			byte[] magic = new byte[10];
+			assertEquals(10, in.read(magic));
+			int length = (magic[8] & 0xFF) | (magic[9] & 0xFF) << 8;
+			byte[] header = new byte[length];
+			int n = 0;
+			while (n < length) {
+				n += in.read(header, n, length - n);
+			}
+			return new String(header, StandardCharsets.US_ASCII).trim();
+		}
+	}
+
+	private static int findData(byte[] archive, double[] data) {
+		ByteBuffer buffer = ByteBuffer.allocate(8 * data.length).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.asDoubleBuffer().put(data);
+		byte[] bytes = buffer.array();
+		for (int i = 0; i + bytes.length <= archive.length; i++) {
+			boolean match = true;
+			for (int j = 0; j < bytes.length && match; j++) {
+				match = archive[i + j] == bytes[j];
+			}
+			if (match) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import sc.fiji.kappa.metrics.PerformanceMetrics.StageStatistics;
+
+public class PerformanceMetricsTest {
+
+	@Test
+	public void testRecording() throws InterruptedException {
+		PerformanceMetrics.reset();
+		PerformanceMetrics.setEnabled(true);
+
+		long start = PerformanceMetrics.start();
+		Thread.sleep(2);
+		PerformanceMetrics.stop(Stage.FOOTPOINTS, start, 100);
+		PerformanceMetrics.stop(Stage.FOOTPOINTS, PerformanceMetrics.start(), 50);
+
+		StageStatistics footpoints = PerformanceMetrics.get(Stage.FOOTPOINTS);
+		assertEquals(2, footpoints.getCount());
+		assertEquals(150, footpoints.getItems());
+		assertTrue(footpoints.getMaxMillis() >= 2);
+		assertTrue(footpoints.getTotalNanos() >= footpoints.getMaxNanos());
+		assertEquals(footpoints.getTotalMillis() / 2, footpoints.getMeanMillis(), 1e-9);
+
+		// Only the stages that have run are listed
+		String table = PerformanceMetrics.format();
+		assertTrue(table.contains(Stage.FOOTPOINTS.getLabel()));
+		assertFalse(table.contains(Stage.EXPORT.getLabel()));
+
+		PerformanceMetrics.reset();
+		assertEquals(0, PerformanceMetrics.get(Stage.FOOTPOINTS).getCount());
+		assertEquals(0, PerformanceMetrics.get(Stage.FOOTPOINTS).getMaxNanos());
+	}
+
+	@Test
+	public void testDisabled() {
+		PerformanceMetrics.reset();
+		PerformanceMetrics.setEnabled(false);
+		try {
+			long start = PerformanceMetrics.start();
+			assertEquals(PerformanceMetrics.DISABLED, start);
+			PerformanceMetrics.stop(Stage.EXPORT, start, 10);
+			assertEquals(0, PerformanceMetrics.get(Stage.EXPORT).getCount());
+		} finally {
+			PerformanceMetrics.setEnabled(true);
+		}
+	}
+}
@@ -0,0 +1,300 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.validation;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+
+import org.junit.Test;
+
+import sc.fiji.kappa.curve.BSpline;
+import sc.fiji.kappa.curve.BezierPoint;
+import sc.fiji.kappa.curve.Curve;
+import sc.fiji.kappa.gui.KappaFrame;
+
+/**
+ * Fits B-Splines to synthetic filaments and compares their curvature with the
+ * true curvature. Fails if the curvature error or the Pearson correlation of
+ * any case is worse than its limit in validation/fitting-limits.properties,
+ * which are set from a measured baseline. The time limits there depend on the
+ * machine, so they are only checked with -Dkappa.validation.timing=true, and
+ * can be scaled for slower machines with -Dkappa.validation.timeFactor. The
+ * results of each case are written to target/fitting-validation.txt.
+ */
+public class FittingValidationTest {
+
+	public static final int WIDTH = 256;
+	public static final int HEIGHT = 256;
+	public static final double BACKGROUND = 20;
+	public static final double CONTRAST = 150;
+	public static final long SEED = 42;
+
+	// The radius around the curve in which thresholded pixels are data points, as
+	// with the data threshold radius in the UI
+	public static final int DATA_RADIUS = 10;
+
+	// How far off the filament the initial control points are, in pixels
+	public static final double INITIAL_OFFSET = 2;
+	public static final int MAX_ITERATIONS = 50;
+
+	// When the times are checked, each case is fitted this many times after a
+	// first pass over all the cases, and the fastest time counts, so that the time
+	// limits need no room for the JIT warming up
+	public static final int REPETITIONS = 3;
+
+	// The ends of the fitted curves are left out, as in KappaFrame.getCurvatureError
+	public static final double END_FRACTION = KappaFrame.PERCENT_END_CONDITIONS;
+
+	private static class Case {
+
+		final String name;
+		final SyntheticFilament filament;
+		final double psfSigma;
+		final double noise;
+		final int noCtrlPts;
+
+		Case(String name, SyntheticFilament filament, double psfSigma, double noise, int noCtrlPts) {
+			this.name = name;
+			this.filament = filament;
+			this.psfSigma = psfSigma;
+			this.noise = noise;
+			this.noCtrlPts = noCtrlPts;
+		}
+	}
+
+	private static List<Case> cases() {
+		SyntheticFilament sine = SyntheticFilament.sine(20, WIDTH - 20, HEIGHT / 2.0, 20, 100);
+		SyntheticFilament spiral = SyntheticFilament.spiral(WIDTH / 2.0, HEIGHT / 2.0, 20, 6 / Math.PI, 1.5);
+		SyntheticFilament circle = SyntheticFilament.circle(WIDTH / 2.0, HEIGHT / 2.0, 60, 1.75 * Math.PI);
+
+		List<Case> cases = new ArrayList<>();
+		cases.add(new Case("sine", sine, 1.5, 5, 12));
+		cases.add(new Case("sine-noisy", sine, 2, 20, 12));
+		cases.add(new Case("spiral", spiral, 1.5, 5, 14));
+		cases.add(new Case("spiral-noisy", spiral, 2, 20, 14));
+		cases.add(new Case("circle", circle, 1.5, 5, 10));
+		cases.add(new Case("circle-noisy", circle, 2, 20, 10));
+		return cases;
+	}
+
+	private static class Result {
+
+		double relativeError;
+		double pearsonR;
+		long millis;
+		int iterations;
+	}
+
+	@Test
+	public void testFitting() throws IOException {
+		Properties limits = new Properties();
+		try (InputStream in = getClass().getResourceAsStream("/validation/fitting-limits.properties")) {
+			limits.load(in);
+		}
+		boolean timing = Boolean.getBoolean("kappa.validation.timing");
+		double timeFactor = Double.parseDouble(System.getProperty("kappa.validation.timeFactor", "1"));
+
+		if (timing) {
+			for (Case c : cases()) {
+				fit(c);
+			}
+		}
+
+		List<String> failures = new ArrayList<>();
+		List<String> report = new ArrayList<>();
+		report.add(String.format("%-14s %10s %10s %10s %10s", "case", "rel.error", "pearson r", "ms", "iterations"));
+		for (Case c : cases()) {
+			Result r = fit(c);
+			for (int i = 1; timing && i < REPETITIONS; i++) {
+				r.millis = Math.min(r.millis, fit(c).millis);
+			}
+			report.add(String.format("%-14s %10.4f %10.4f %10d %10d", c.name, r.relativeError, r.pearsonR, r.millis,
+					r.iterations));
+
+			double maxError = Double.parseDouble(limits.getProperty(c.name + ".maxRelativeError"));
+			double maxMillis = Double.parseDouble(limits.getProperty(c.name + ".maxMillis")) * timeFactor;
+			if (!(r.relativeError <= maxError)) {
+				failures.add(c.name + ": relative curvature error " + r.relativeError + " > " + maxError);
+			}
+			// The correlation is undefined where the true curvature is constant
+			if (limits.containsKey(c.name + ".minPearsonR")) {
+				double minPearsonR = Double.parseDouble(limits.getProperty(c.name + ".minPearsonR"));
+				if (!(r.pearsonR >= minPearsonR)) {
+					failures.add(c.name + ": Pearson r " + r.pearsonR + " < " + minPearsonR);
+				}
+			}
+			if (timing && r.millis > maxMillis) {
+				failures.add(c.name + ": took " + r.millis + " ms > " + maxMillis + " ms");
+			}
+		}
+		writeReport(report);
+		assertTrue(String.join("\n", failures), failures.isEmpty());
+	}
+
+	private static void writeReport(List<String> report) throws IOException {
+		File file = new File(System.getProperty("basedir", "."), "target/fitting-validation.txt");
+		file.getParentFile().mkdirs();
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			for (String line : report) {
+				out.println(line);
+			}
+		}
+	}
+
+	@Test
+	public void testCancellation() {
+		Case c = cases().get(0);
+		BSpline curve = new BSpline(c.filament.getControlPoints(c.noCtrlPts, INITIAL_OFFSET), 1, c.noCtrlPts,
+				c.name, true, DATA_RADIUS, null);
+		List<Point2D> dataPoints = c.filament.getControlPoints(4 * c.noCtrlPts, 0);
+		List<Double> weights = new ArrayList<>(Collections.nCopies(dataPoints.size(), 1.0));
+
+		// A fitting job is cancelled by interrupting its thread
+		Thread.currentThread().interrupt();
+		try {
+			curve.fittingIteration(dataPoints, weights, 1,
+					KappaFrame.FITTING_ALGORITHMS[KappaFrame.DEFAULT_FITTING_ALGORITHM]);
+			fail("The fitting iteration was not cancelled");
+		} catch (CancellationException e) {
+			// Expected
+		} finally {
+			Thread.interrupted();
+		}
+	}
+
+	private static Result fit(Case c) {
+		float[] pixels = c.filament.render(WIDTH, HEIGHT, c.psfSigma, BACKGROUND, CONTRAST, c.noise, SEED);
+
+		// The intensity threshold is 2 standard deviations above the mean, as in the
+		// UI
+		double mean = 0;
+		for (float v : pixels) {
+			mean += v;
+		}
+		mean /= pixels.length;
+		double variance = 0;
+		for (float v : pixels) {
+			variance += (v - mean) * (v - mean);
+		}
+		double threshold = mean + 2 * Math.sqrt(variance / pixels.length);
+		List<Point2D> thresholded = new ArrayList<>();
+		for (int i = 0; i < pixels.length; i++) {
+			if (pixels[i] >= threshold) {
+				thresholded.add(new Point2D.Double(i % WIDTH, i / WIDTH));
+			}
+		}
+
+		Result result = new Result();
+		BSpline curve = new BSpline(c.filament.getControlPoints(c.noCtrlPts, INITIAL_OFFSET), 1, c.noCtrlPts,
+				c.name, true, DATA_RADIUS, null);
+
+		// Iterates until the error stops decreasing, as KappaFrame.fitCurves does. Only
+		// the fitting iterations are timed, not finding the data points here.
+		double error = Double.MAX_VALUE;
+		double oldError;
+		long nanos = 0;
+		do {
+			oldError = error;
+			List<Point2D> dataPoints = nearCurve(thresholded, curve);
+			List<Double> weights = new ArrayList<>(dataPoints.size());
+			for (Point2D p : dataPoints) {
+				weights.add((double) pixels[(int) p.getY() * WIDTH + (int) p.getX()]);
+			}
+			long start = System.nanoTime();
+			error = curve.fittingIteration(dataPoints, weights, 1,
+					KappaFrame.FITTING_ALGORITHMS[KappaFrame.DEFAULT_FITTING_ALGORITHM]);
+			nanos += System.nanoTime() - start;
+			result.iterations++;
+		} while (oldError > error && result.iterations < MAX_ITERATIONS);
+		result.millis = nanos / 1000000;
+
+		// Compares the curvature at each point of the fitted curve with the true
+		// curvature at the nearest point of the filament, both in um-1
+		List<Double> fitted = new ArrayList<>();
+		List<Double> truth = new ArrayList<>();
+		for (BezierPoint p : curve.getPoints()) {
+			int sample = c.filament.getNearestSample(p.getX(), p.getY());
+			double s = sample / (SyntheticFilament.NO_SAMPLES - 1.0);
+			if (s >= END_FRACTION && s <= 1 - END_FRACTION) {
+				fitted.add(Math.abs(p.k));
+				truth.add(c.filament.getCurvature(sample) / Curve.getMicronPixelFactor());
+			}
+		}
+		double totalError = 0, totalTruth = 0;
+		for (int i = 0; i < fitted.size(); i++) {
+			totalError += Math.abs(fitted.get(i) - truth.get(i));
+			totalTruth += truth.get(i);
+		}
+		result.relativeError = totalError / totalTruth;
+		result.pearsonR = pearsonR(fitted, truth);
+		return result;
+	}
+
+	// The thresholded pixels within the data radius of the curve
+	private static List<Point2D> nearCurve(List<Point2D> pixels, Curve curve) {
+		List<BezierPoint> points = curve.getPoints();
+		List<Point2D> near = new ArrayList<>();
+		for (Point2D p : pixels) {
+			for (BezierPoint q : points) {
+				if (p.distanceSq(q) <= DATA_RADIUS * DATA_RADIUS) {
+					near.add(p);
+					break;
+				}
+			}
+		}
+		return near;
+	}
+
+	private static double pearsonR(List<Double> a, List<Double> b) {
+		double ma = 0, mb = 0;
+		for (int i = 0; i < a.size(); i++) {
+			ma += a.get(i);
+			mb += b.get(i);
+		}
+		ma /= a.size();
+		mb /= b.size();
+		double covariance = 0, va = 0, vb = 0;
+		for (int i = 0; i < a.size(); i++) {
+			covariance += (a.get(i) - ma) * (b.get(i) - mb);
+			va += (a.get(i) - ma) * (a.get(i) - ma);
+			vb += (b.get(i) - mb) * (b.get(i) - mb);
+		}
+		return covariance / Math.sqrt(va * vb);
+	}
+}
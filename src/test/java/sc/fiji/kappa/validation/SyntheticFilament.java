@@ -0,0 +1,223 @@
+/*
+ * #%L
+ * A Fiji plugin for Curvature Analysis.
+ * %%
+ * Copyright (C) 2016 - 2020 Gary Brouhard
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+package sc.fiji.kappa.validation;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A synthetic filament of known shape, with its true curvature along it. It can
+ * be rendered as an image blurred by a Gaussian point spread function, with
+ * Gaussian noise on top, to check how well a fitted curve recovers the
+ * curvature.
+ */
+public abstract class SyntheticFilament {
+
+	// The number of points the filament is sampled at for rendering and for
+	// looking up the true curvature
+	public static final int NO_SAMPLES = 4096;
+
+	private final String name;
+	private final double[] xs = new double[NO_SAMPLES];
+	private final double[] ys = new double[NO_SAMPLES];
+	private final double[] ks = new double[NO_SAMPLES];
+
+	protected SyntheticFilament(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param s
+	 *            The position along the filament, from 0 to 1
+	 * @return The point at s, in pixels
+	 */
+	protected abstract Point2D point(double s);
+
+	/**
+	 * @return The unsigned curvature at s, in pixels-1
+	 */
+	protected abstract double curvature(double s);
+
+	// Called once the subclass is constructed
+	final SyntheticFilament sample() {
+		for (int i = 0; i < NO_SAMPLES; i++) {
+			double s = i / (NO_SAMPLES - 1.0);
+			Point2D p = point(s);
+			xs[i] = p.getX();
+			ys[i] = p.getY();
+			ks[i] = curvature(s);
+		}
+		return this;
+	}
+
+	/**
+	 * y = y0 + amplitude * sin(2 pi x / wavelength), for x from x0 to x1.
+	 */
+	public static SyntheticFilament sine(double x0, double x1, double y0, double amplitude, double wavelength) {
+		double b = 2 * Math.PI / wavelength;
+		return new SyntheticFilament("sine") {
+
+			@Override
+			protected Point2D point(double s) {
+				double x = x0 + s * (x1 - x0);
+				return new Point2D.Double(x, y0 + amplitude * Math.sin(b * x));
+			}
+
+			@Override
+			protected double curvature(double s) {
+				double x = x0 + s * (x1 - x0);
+				double c = amplitude * b * Math.cos(b * x);
+				return Math.abs(amplitude * b * b * Math.sin(b * x)) / Math.pow(1 + c * c, 1.5);
+			}
+		}.sample();
+	}
+
+	/**
+	 * The Archimedean spiral r = r0 + growth * theta around (cx, cy), for theta
+	 * from 0 to turns * 2 pi.
+	 */
+	public static SyntheticFilament spiral(double cx, double cy, double r0, double growth, double turns) {
+		return new SyntheticFilament("spiral") {
+
+			@Override
+			protected Point2D point(double s) {
+				double theta = s * turns * 2 * Math.PI;
+				double r = r0 + growth * theta;
+				return new Point2D.Double(cx + r * Math.cos(theta), cy + r * Math.sin(theta));
+			}
+
+			@Override
+			protected double curvature(double s) {
+				double r = r0 + growth * s * turns * 2 * Math.PI;
+				return (r * r + 2 * growth * growth) / Math.pow(r * r + growth * growth, 1.5);
+			}
+		}.sample();
+	}
+
+	/**
+	 * An arc of the circle of the given radius around (cx, cy), from angle 0 to
+	 * the given angle. A full circle would need a closed curve.
+	 */
+	public static SyntheticFilament circle(double cx, double cy, double radius, double angle) {
+		return new SyntheticFilament("circle") {
+
+			@Override
+			protected Point2D point(double s) {
+				double theta = s * angle;
+				return new Point2D.Double(cx + radius * Math.cos(theta), cy + radius * Math.sin(theta));
+			}
+
+			@Override
+			protected double curvature(double s) {
+				return 1 / radius;
+			}
+		}.sample();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Renders the filament as a line of the given peak contrast over a constant
+	 * background, blurred by a Gaussian point spread function, with Gaussian noise.
+	 * The same seed always gives the same image.
+	 *
+	 * @return The pixel values, row by row
+	 */
+	public float[] render(int width, int height, double psfSigma, double background, double contrast,
+			double noise, long seed) {
+		double[] image = new double[width * height];
+
+		// Each sample contributes its share of a line of constant density, so that
+		// the profile across the filament peaks at the contrast
+		int radius = (int) Math.ceil(4 * psfSigma);
+		double scale = contrast / (Math.sqrt(2 * Math.PI) * psfSigma);
+		for (int i = 0; i < NO_SAMPLES - 1; i++) {
+			double ds = Math.hypot(xs[i + 1] - xs[i], ys[i + 1] - ys[i]);
+			double cx = (xs[i] + xs[i + 1]) / 2;
+			double cy = (ys[i] + ys[i + 1]) / 2;
+			for (int y = (int) cy - radius; y <= (int) cy + radius; y++) {
+				for (int x = (int) cx - radius; x <= (int) cx + radius; x++) {
+					if (x >= 0 && x < width && y >= 0 && y < height) {
+						double d2 = (x - cx) * (x - cx) + (y - cy) * (y - cy);
+						image[y * width + x] += scale * ds * Math.exp(-d2 / (2 * psfSigma * psfSigma));
+					}
+				}
+			}
+		}
+
+		Random random = new Random(seed);
+		float[] pixels = new float[width * height];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = (float) Math.max(0, background + image[i] + noise * random.nextGaussian());
+		}
+		return pixels;
+	}
+
+	/**
+	 * @return n control points spread evenly along the filament, shifted
+	 *         sideways by an offset in pixels, as a rough initial trace would be
+	 */
+	public List<Point2D> getControlPoints(int n, double offset) {
+		List<Point2D> points = new ArrayList<>(n);
+		for (int j = 0; j < n; j++) {
+			int i = (int) Math.round(j * (NO_SAMPLES - 1) / (n - 1.0));
+			int a = Math.max(i - 1, 0), b = Math.min(i + 1, NO_SAMPLES - 1);
+			double tx = xs[b] - xs[a], ty = ys[b] - ys[a];
+			double norm = Math.hypot(tx, ty);
+			points.add(new Point2D.Double(xs[i] - offset * ty / norm, ys[i] + offset * tx / norm));
+		}
+		return points;
+	}
+
+	/**
+	 * @return The index of the sample of the filament nearest to a point
+	 */
+	public int getNearestSample(double x, double y) {
+		int nearest = 0;
+		double minDistance = Double.MAX_VALUE;
+		for (int i = 0; i < NO_SAMPLES; i++) {
+			double d = (xs[i] - x) * (xs[i] - x) + (ys[i] - y) * (ys[i] - y);
+			if (d < minDistance) {
+				minDistance = d;
+				nearest = i;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * @return The true curvature at a sample, in pixels-1
+	 */
+	public double getCurvature(int sample) {
+		return ks[sample];
+	}
+}